@@ -169,7 +169,10 @@ public class ChessBoardController implements Serializable
 
    protected MoveResult performMove(Coordinate aFrom, Coordinate aTo)
    {
-      MoveResult vResult = iChessBoard.performMove(aFrom, aTo);
+      // a legal move is played as generated, the pieces validate the other ones to tell why they are not legal (and
+      // the promotions, to ask for the promoted piece)
+      int vMove = iChessBoard.findLegalMove(aFrom, aTo, null);
+      MoveResult vResult = vMove != 0 ? iChessBoard.performMove(vMove) : iChessBoard.performMove(aFrom, aTo);
       // TO check the string consistency
       // String vDbStr = iChessBoard.toDatabaseString();
       // ChessPosition vChessPosition = ChessPosition.fromDatabaseString(vDbStr);
@@ -54,6 +54,7 @@ import com.pezz.chess.uidata.SearchGameHeaderData;
 import com.pezz.chess.uidata.WhiteBlackStatisticsData;
 import com.pezz.util.itn.ClassInspector;
 import com.pezz.util.itn.SQLConnection;
+import com.pezz.util.itn.SQLConnectionPool;
 
 public class GameController implements Serializable
 {
@@ -111,11 +112,9 @@ public class GameController implements Serializable
    public String checkConnection(int aOperation, String aConnectionName, String aDBUser, String aDBPassword,
          String aJDBCUrl, String aJDBCDriverClassName, String aJDBCJarFiles, boolean aAutoLogon, boolean aDefault)
    {
-      try
+      try (SQLConnection vConnection = new SQLConnection(aDBUser, aDBPassword, aJDBCUrl, aJDBCDriverClassName,
+            aJDBCJarFiles, Connection.TRANSACTION_READ_COMMITTED, false))
       {
-         @SuppressWarnings("resource")
-         SQLConnection vConnection = new SQLConnection(aDBUser, aDBPassword, aJDBCUrl, aJDBCDriverClassName,
-               aJDBCJarFiles, Connection.TRANSACTION_READ_COMMITTED, false);
          vConnection.getConnection();
          return null;
       }
@@ -159,8 +158,9 @@ public class GameController implements Serializable
       try
       {
          iSQLConnection.getConnection().rollback();
-         iSQLConnection.getConnection().close();
+         iSQLConnection.close();
          iSQLConnection = null;
+         SQLConnectionPool.closeAll();
          return true;
       }
       catch (Exception e)
@@ -1072,6 +1072,13 @@ public class GameController implements Serializable
       }
       catch (Exception e)
       {
+         try
+         {
+            iSQLConnection.close();
+         }
+         catch (Exception e1)
+         {
+         }
          iSQLConnection = null;
          vRet = e.getMessage() == null ? e.getClass().getName() : e.getMessage();
       }
@@ -10,7 +10,6 @@ package com.pezz.chess.base;
 
 import java.io.File;
 import java.io.InputStream;
-import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.security.MessageDigest;
@@ -24,11 +23,25 @@ public class Hash
    private static final int BUFFER_SIZE = 8192;
    //
    private static final String ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
-   private static final BigInteger ALPHABET_LENGTH = BigInteger.valueOf(ALPHABET.length());
+   private static final int ALPHABET_LENGTH = ALPHABET.length();
    private static final long ESTIMATED_UNIQUE_STRINGS = Long.MAX_VALUE;
    private static final int BITS_NEEDED = (int) (Math.ceil(Math.log(ESTIMATED_UNIQUE_STRINGS) / Math.log(2)) * 2);
    private static final int BYTES_NEEDED = (int) Math.ceil(BITS_NEEDED / 8.0);
-   private static MessageDigest DIGEST = null;
+   // digits of the biggest value of BYTES_NEEDED bytes in base 62
+   private static final int DIGITS_NEEDED = (int) Math
+         .ceil(BYTES_NEEDED * 8 / (Math.log(ALPHABET_LENGTH) / Math.log(2)));
+   // MessageDigest is not thread safe and pgn files can be read by several threads
+   private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() ->
+   {
+      try
+      {
+         return MessageDigest.getInstance("SHA-256");
+      }
+      catch (Exception e)
+      {
+         throw new RuntimeException(e);
+      }
+   });
 
    private Hash()
    {
@@ -103,25 +116,61 @@ public class Hash
 
    private static String hash(byte[] aBytes) throws Exception
    {
-      if (DIGEST == null)
-      {
-         DIGEST = MessageDigest.getInstance("SHA-256");
-      }
-      byte[] vFull = DIGEST.digest(aBytes);
-      byte[] vTruncated = Arrays.copyOf(vFull, BYTES_NEEDED);
-      return toBase62(vTruncated);
+      return hash(aBytes, 0, aBytes.length);
+   }
+
+   public static String hash(byte[] aBytes, int aOffset, int aLength) throws Exception
+   {
+      MessageDigest vDigest = getDigest();
+      vDigest.update(aBytes, aOffset, aLength);
+      return hash(vDigest);
+   }
+
+   // digest of the current thread, ready to be fed with update() and passed to hash(MessageDigest): the data to hash
+   // does not need to be copied in a single array
+   public static MessageDigest getDigest()
+   {
+      MessageDigest vDigest = DIGEST.get();
+      vDigest.reset();
+      return vDigest;
+   }
+
+   public static String hash(MessageDigest aDigest)
+   {
+      return toBase62(aDigest.digest(), BYTES_NEEDED);
    }
 
-   private static String toBase62(byte[] aBytes)
+   // Base 62 of the unsigned value of the first aLength bytes. The digits are computed in a fixed width buffer by
+   // long division on 32 bit limbs instead of BigInteger; leading zeros are not written, as they never were, so the
+   // hashes already saved in gameheader do not change.
+   private static String toBase62(byte[] aBytes, int aLength)
    {
-      java.math.BigInteger vInt = new java.math.BigInteger(1, aBytes);
-      StringBuilder vSb = new StringBuilder();
-      while (vInt.compareTo(java.math.BigInteger.ZERO) > 0)
+      int vLimbsNr = (aLength + 3) / 4;
+      long[] vLimbs = new long[vLimbsNr];
+      for (int x = 0; x < aLength; x++)
       {
-         int idx = vInt.mod(ALPHABET_LENGTH).intValue();
-         vSb.append(ALPHABET.charAt(idx));
-         vInt = vInt.divide(ALPHABET_LENGTH);
+         int vLimb = vLimbsNr - 1 - (aLength - 1 - x) / 4;
+         vLimbs[vLimb] = (vLimbs[vLimb] << 8) | (aBytes[x] & 0xff);
+      }
+      char[] vDigits = new char[DIGITS_NEEDED];
+      int vPosition = vDigits.length;
+      int vFirstLimb = 0;
+      while (vFirstLimb < vLimbsNr)
+      {
+         if (vLimbs[vFirstLimb] == 0)
+         {
+            vFirstLimb++;
+            continue;
+         }
+         long vRemainder = 0;
+         for (int x = vFirstLimb; x < vLimbsNr; x++)
+         {
+            long vValue = (vRemainder << 32) | vLimbs[x];
+            vLimbs[x] = vValue / ALPHABET_LENGTH;
+            vRemainder = vValue % ALPHABET_LENGTH;
+         }
+         vDigits[--vPosition] = ALPHABET.charAt((int) vRemainder);
       }
-      return vSb.reverse().toString();
+      return new String(vDigits, vPosition, vDigits.length - vPosition);
    }
 }
@@ -0,0 +1,499 @@
+/*
+ * Copyright (c) 2025 Gabriele Pezzini
+ * License: Creative Commons Attribution-NonCommercial 4.0 International (CC BY-NC 4.0)
+ * Full License: https://creativecommons.org/licenses/by-nc/4.0/legalcode
+ * SPDX-License-Identifier: CC-BY-NC-4.0
+ * Non-commercial use only. For commercial licensing, contact the author.
+ */
+package com.pezz.chess.board;
+
+import java.util.Arrays;
+
+import com.pezz.chess.base.ChessColor;
+import com.pezz.chess.pieces.ChessPiece;
+
+public class BitboardPosition
+{
+   // A position on Bitboards with side to move, castling rights and en passant square: generates the legal moves and
+   // makes and unmakes them without allocating. A move is an int: from (bits 0-5) and to (6-11) squares as in
+   // Bitboards, the ordinal of the moved ChessPiece (12-15), of the promoted one + 1 (16-19, 0 none) and of the
+   // captured one + 1 (20-23, 0 none), then the flags.
+   public static final int MAX_MOVES = 256;
+   public static final int FLAG_EN_PASSANT = 1 << 24;
+   public static final int FLAG_CASTLE = 1 << 25;
+   public static final int FLAG_DOUBLE_PUSH = 1 << 26;
+   public static final int WHITE_SHORT = 1;
+   public static final int WHITE_LONG = 2;
+   public static final int BLACK_SHORT = 4;
+   public static final int BLACK_LONG = 8;
+   private static final ChessPiece[] PIECES = ChessPiece.values();
+   private static final long RANK_1 = 0xFFL;
+   private static final long RANK_8 = 0xFFL << 56;
+   // castling rights kept when a piece leaves or reaches the square
+   private static final int[] CASTLING_MASK = new int[64];
+   private final Bitboards iBoards = new Bitboards();
+   private ChessColor iSideToMove = ChessColor.WHITE;
+   private int iCastling;
+   private int iEnPassant = -1;
+   // state before every move made: move, castling rights, en passant square
+   private int[] iUndo = new int[3 * 512];
+   private int iPly;
+   private final int[] iLegalityMoves = new int[MAX_MOVES];
+
+   static
+   {
+      Arrays.fill(CASTLING_MASK, WHITE_SHORT | WHITE_LONG | BLACK_SHORT | BLACK_LONG);
+      CASTLING_MASK[Bitboards.square(4, 0)] &= ~(WHITE_SHORT | WHITE_LONG);
+      CASTLING_MASK[Bitboards.square(7, 0)] &= ~WHITE_SHORT;
+      CASTLING_MASK[Bitboards.square(0, 0)] &= ~WHITE_LONG;
+      CASTLING_MASK[Bitboards.square(4, 7)] &= ~(BLACK_SHORT | BLACK_LONG);
+      CASTLING_MASK[Bitboards.square(7, 7)] &= ~BLACK_SHORT;
+      CASTLING_MASK[Bitboards.square(0, 7)] &= ~BLACK_LONG;
+   }
+
+   public static int getFrom(int aMove)
+   {
+      return aMove & 0x3F;
+   }
+
+   public static int getTo(int aMove)
+   {
+      return (aMove >>> 6) & 0x3F;
+   }
+
+   public static ChessPiece getPieceMoved(int aMove)
+   {
+      return PIECES[(aMove >>> 12) & 0xF];
+   }
+
+   // null if not a promotion
+   public static ChessPiece getPiecePromoted(int aMove)
+   {
+      int vPiece = (aMove >>> 16) & 0xF;
+      return vPiece == 0 ? null : PIECES[vPiece - 1];
+   }
+
+   // null if not a capture
+   public static ChessPiece getPieceCaptured(int aMove)
+   {
+      int vPiece = (aMove >>> 20) & 0xF;
+      return vPiece == 0 ? null : PIECES[vPiece - 1];
+   }
+
+   private static int encode(int aFrom, int aTo, ChessPiece aMoved, ChessPiece aPromoted, ChessPiece aCaptured,
+         int aFlags)
+   {
+      return aFrom | (aTo << 6) | (aMoved.ordinal() << 12) | (aPromoted == null ? 0 : (aPromoted.ordinal() + 1) << 16)
+            | (aCaptured == null ? 0 : (aCaptured.ordinal() + 1) << 20) | aFlags;
+   }
+
+   public void clear()
+   {
+      iBoards.clear();
+      iSideToMove = ChessColor.WHITE;
+      iCastling = 0;
+      iEnPassant = -1;
+      iPly = 0;
+   }
+
+   public void setInitialPosition()
+   {
+      setFen("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1");
+   }
+
+   // Forsyth-Edwards notation: placement, side to move, castling rights and en passant square, the counters are ignored
+   public void setFen(String aFen)
+   {
+      clear();
+      String[] vFields = aFen.trim().split("\\s+");
+      int vX = 0;
+      int vY = 7;
+      for (char vChar : vFields[0].toCharArray())
+      {
+         if (vChar == '/')
+         {
+            vX = 0;
+            vY--;
+         }
+         else if (vChar >= '1' && vChar <= '8')
+         {
+            vX += vChar - '0';
+         }
+         else
+         {
+            iBoards.put(fromFenChar(vChar), Bitboards.square(vX++, vY));
+         }
+      }
+      iSideToMove = vFields.length > 1 && vFields[1].equals("b") ? ChessColor.BLACK : ChessColor.WHITE;
+      String vCastling = vFields.length > 2 ? vFields[2] : "-";
+      iCastling = (vCastling.indexOf('K') >= 0 ? WHITE_SHORT : 0) | (vCastling.indexOf('Q') >= 0 ? WHITE_LONG : 0)
+            | (vCastling.indexOf('k') >= 0 ? BLACK_SHORT : 0) | (vCastling.indexOf('q') >= 0 ? BLACK_LONG : 0);
+      iEnPassant = vFields.length > 3 && !vFields[3].equals("-")
+            ? Bitboards.square(vFields[3].charAt(0) - 'a', vFields[3].charAt(1) - '1')
+            : -1;
+   }
+
+   private static ChessPiece fromFenChar(char aChar)
+   {
+      ChessColor vColor = Character.isUpperCase(aChar) ? ChessColor.WHITE : ChessColor.BLACK;
+      switch (Character.toLowerCase(aChar))
+      {
+         case 'p':
+            return vColor == ChessColor.WHITE ? ChessPiece.PAWN_WHITE : ChessPiece.PAWN_BLACK;
+         case 'r':
+            return vColor == ChessColor.WHITE ? ChessPiece.ROOK_WHITE : ChessPiece.ROOK_BLACK;
+         case 'n':
+            return vColor == ChessColor.WHITE ? ChessPiece.KNIGHT_WHITE : ChessPiece.KNIGHT_BLACK;
+         case 'b':
+            return vColor == ChessColor.WHITE ? ChessPiece.BISHOP_WHITE : ChessPiece.BISHOP_BLACK;
+         case 'q':
+            return vColor == ChessColor.WHITE ? ChessPiece.QUEEN_WHITE : ChessPiece.QUEEN_BLACK;
+         case 'k':
+            return vColor == ChessColor.WHITE ? ChessPiece.KING_WHITE : ChessPiece.KING_BLACK;
+         default:
+            throw new IllegalArgumentException("Invalid FEN piece " + aChar);
+      }
+   }
+
+   // a copy of aBitboards, the moves made before are forgotten
+   public void setPosition(Bitboards aBitboards, ChessColor aSideToMove, int aCastling, int aEnPassant)
+   {
+      iBoards.copyFrom(aBitboards);
+      iSideToMove = aSideToMove;
+      iCastling = aCastling;
+      iEnPassant = aEnPassant;
+      iPly = 0;
+   }
+
+   public Bitboards getBitboards()
+   {
+      return iBoards;
+   }
+
+   public ChessColor getSideToMove()
+   {
+      return iSideToMove;
+   }
+
+   public void setSideToMove(ChessColor aSideToMove)
+   {
+      iSideToMove = aSideToMove;
+   }
+
+   public int getCastling()
+   {
+      return iCastling;
+   }
+
+   public void setCastling(int aCastling)
+   {
+      iCastling = aCastling;
+   }
+
+   // -1 if none
+   public int getEnPassant()
+   {
+      return iEnPassant;
+   }
+
+   public void setEnPassant(int aSquare)
+   {
+      iEnPassant = aSquare;
+   }
+
+   public boolean isInCheck()
+   {
+      return iBoards.countCheckers(iSideToMove) > 0;
+   }
+
+   // the legal moves of the side to move in aMoves (at least MAX_MOVES long), returns their number
+   public int generateLegalMoves(int[] aMoves)
+   {
+      int vCount = generatePseudoLegalMoves(aMoves);
+      int vLegal = 0;
+      for (int i = 0; i < vCount; i++)
+      {
+         if (isLegal(aMoves[i]))
+         {
+            aMoves[vLegal++] = aMoves[i];
+         }
+      }
+      return vLegal;
+   }
+
+   public boolean hasLegalMoves()
+   {
+      int vCount = generatePseudoLegalMoves(iLegalityMoves);
+      for (int i = 0; i < vCount; i++)
+      {
+         if (isLegal(iLegalityMoves[i]))
+         {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   // a pseudo legal move does not leave the own king in check
+   public boolean isLegal(int aMove)
+   {
+      ChessColor vColor = iSideToMove;
+      makeMove(aMove);
+      int vKing = iBoards.getKingSquare(vColor);
+      boolean vLegal = vKing < 0 || !iBoards.isAttacked(vKing, ChessColor.getOppositeColor(vColor));
+      unmakeMove();
+      return vLegal;
+   }
+
+   // moves of the pieces of the side to move without looking at the checks to the own king (the castling moves
+   // excepted: the king does not castle out of, through or into a check)
+   public int generatePseudoLegalMoves(int[] aMoves)
+   {
+      boolean vWhite = iSideToMove == ChessColor.WHITE;
+      ChessColor vOpponent = ChessColor.getOppositeColor(iSideToMove);
+      long vOwn = iBoards.getPieces(iSideToMove);
+      long vEnemy = iBoards.getPieces(vOpponent);
+      long vOccupied = iBoards.getOccupied();
+      int vCount = 0;
+      // pawns
+      ChessPiece vPawn = vWhite ? ChessPiece.PAWN_WHITE : ChessPiece.PAWN_BLACK;
+      int vForward = vWhite ? 8 : -8;
+      long vPawns = iBoards.getPieces(vPawn);
+      while (vPawns != 0)
+      {
+         int vFrom = Long.numberOfTrailingZeros(vPawns);
+         vPawns &= vPawns - 1;
+         int vTo = vFrom + vForward;
+         if ((vOccupied & (1L << vTo)) == 0)
+         {
+            vCount = addPawnMove(aMoves, vCount, vFrom, vTo, vPawn, null, 0);
+            int vRank = vFrom / 8;
+            int vTo2 = vTo + vForward;
+            if ((vWhite ? vRank == 1 : vRank == 6) && (vOccupied & (1L << vTo2)) == 0)
+            {
+               aMoves[vCount++] = encode(vFrom, vTo2, vPawn, null, null, FLAG_DOUBLE_PUSH);
+            }
+         }
+         long vCaptures = Bitboards.getPawnAttacks(iSideToMove, vFrom) & vEnemy;
+         while (vCaptures != 0)
+         {
+            vTo = Long.numberOfTrailingZeros(vCaptures);
+            vCaptures &= vCaptures - 1;
+            vCount = addPawnMove(aMoves, vCount, vFrom, vTo, vPawn, iBoards.getPieceAt(vTo), 0);
+         }
+         if (iEnPassant >= 0 && (Bitboards.getPawnAttacks(iSideToMove, vFrom) & (1L << iEnPassant)) != 0)
+         {
+            aMoves[vCount++] = encode(vFrom, iEnPassant, vPawn, null, vWhite ? ChessPiece.PAWN_BLACK
+                  : ChessPiece.PAWN_WHITE, FLAG_EN_PASSANT);
+         }
+      }
+      // pieces
+      vCount = addPieceMoves(aMoves, vCount, vWhite ? ChessPiece.KNIGHT_WHITE : ChessPiece.KNIGHT_BLACK, vOwn);
+      vCount = addPieceMoves(aMoves, vCount, vWhite ? ChessPiece.BISHOP_WHITE : ChessPiece.BISHOP_BLACK, vOwn);
+      vCount = addPieceMoves(aMoves, vCount, vWhite ? ChessPiece.ROOK_WHITE : ChessPiece.ROOK_BLACK, vOwn);
+      vCount = addPieceMoves(aMoves, vCount, vWhite ? ChessPiece.QUEEN_WHITE : ChessPiece.QUEEN_BLACK, vOwn);
+      vCount = addPieceMoves(aMoves, vCount, vWhite ? ChessPiece.KING_WHITE : ChessPiece.KING_BLACK, vOwn);
+      // castling
+      ChessPiece vKing = vWhite ? ChessPiece.KING_WHITE : ChessPiece.KING_BLACK;
+      int vKingSquare = Bitboards.square(4, vWhite ? 0 : 7);
+      if ((iCastling & (vWhite ? WHITE_SHORT | WHITE_LONG : BLACK_SHORT | BLACK_LONG)) != 0
+            && (iBoards.getPieces(vKing) & (1L << vKingSquare)) != 0 && !iBoards.isAttacked(vKingSquare, vOpponent))
+      {
+         ChessPiece vRook = vWhite ? ChessPiece.ROOK_WHITE : ChessPiece.ROOK_BLACK;
+         if ((iCastling & (vWhite ? WHITE_SHORT : BLACK_SHORT)) != 0
+               && (iBoards.getPieces(vRook) & (1L << (vKingSquare + 3))) != 0
+               && iBoards.isLineFree(vKingSquare, vKingSquare + 3) && !iBoards.isAttacked(vKingSquare + 1, vOpponent)
+               && !iBoards.isAttacked(vKingSquare + 2, vOpponent))
+         {
+            aMoves[vCount++] = encode(vKingSquare, vKingSquare + 2, vKing, null, null, FLAG_CASTLE);
+         }
+         if ((iCastling & (vWhite ? WHITE_LONG : BLACK_LONG)) != 0
+               && (iBoards.getPieces(vRook) & (1L << (vKingSquare - 4))) != 0
+               && iBoards.isLineFree(vKingSquare, vKingSquare - 4) && !iBoards.isAttacked(vKingSquare - 1, vOpponent)
+               && !iBoards.isAttacked(vKingSquare - 2, vOpponent))
+         {
+            aMoves[vCount++] = encode(vKingSquare, vKingSquare - 2, vKing, null, null, FLAG_CASTLE);
+         }
+      }
+      return vCount;
+   }
+
+   private int addPawnMove(int[] aMoves, int aCount, int aFrom, int aTo, ChessPiece aPawn, ChessPiece aCaptured,
+         int aFlags)
+   {
+      int vCount = aCount;
+      if (((1L << aTo) & (RANK_1 | RANK_8)) != 0)
+      {
+         boolean vWhite = aPawn == ChessPiece.PAWN_WHITE;
+         aMoves[vCount++] = encode(aFrom, aTo, aPawn, vWhite ? ChessPiece.QUEEN_WHITE : ChessPiece.QUEEN_BLACK,
+               aCaptured, aFlags);
+         aMoves[vCount++] = encode(aFrom, aTo, aPawn, vWhite ? ChessPiece.ROOK_WHITE : ChessPiece.ROOK_BLACK,
+               aCaptured, aFlags);
+         aMoves[vCount++] = encode(aFrom, aTo, aPawn, vWhite ? ChessPiece.BISHOP_WHITE : ChessPiece.BISHOP_BLACK,
+               aCaptured, aFlags);
+         aMoves[vCount++] = encode(aFrom, aTo, aPawn, vWhite ? ChessPiece.KNIGHT_WHITE : ChessPiece.KNIGHT_BLACK,
+               aCaptured, aFlags);
+      }
+      else
+      {
+         aMoves[vCount++] = encode(aFrom, aTo, aPawn, null, aCaptured, aFlags);
+      }
+      return vCount;
+   }
+
+   private int addPieceMoves(int[] aMoves, int aCount, ChessPiece aPiece, long aOwn)
+   {
+      int vCount = aCount;
+      long vPieces = iBoards.getPieces(aPiece);
+      while (vPieces != 0)
+      {
+         int vFrom = Long.numberOfTrailingZeros(vPieces);
+         vPieces &= vPieces - 1;
+         long vTargets = getAttacks(aPiece, vFrom) & ~aOwn;
+         while (vTargets != 0)
+         {
+            int vTo = Long.numberOfTrailingZeros(vTargets);
+            vTargets &= vTargets - 1;
+            aMoves[vCount++] = encode(vFrom, vTo, aPiece, null, iBoards.getPieceAt(vTo), 0);
+         }
+      }
+      return vCount;
+   }
+
+   private long getAttacks(ChessPiece aPiece, int aSquare)
+   {
+      switch (aPiece.getSimpleChessPiece())
+      {
+         case KNIGHT:
+            return Bitboards.getKnightAttacks(aSquare);
+         case BISHOP:
+            return Bitboards.getBishopAttacks(aSquare, iBoards.getOccupied());
+         case ROOK:
+            return Bitboards.getRookAttacks(aSquare, iBoards.getOccupied());
+         case QUEEN:
+            return Bitboards.getBishopAttacks(aSquare, iBoards.getOccupied())
+                  | Bitboards.getRookAttacks(aSquare, iBoards.getOccupied());
+         case KING:
+            return Bitboards.getKingAttacks(aSquare);
+         default:
+            return 0;
+      }
+   }
+
+   public void makeMove(int aMove)
+   {
+      if (iPly * 3 == iUndo.length)
+      {
+         iUndo = Arrays.copyOf(iUndo, iUndo.length * 2);
+      }
+      iUndo[iPly * 3] = aMove;
+      iUndo[iPly * 3 + 1] = iCastling;
+      iUndo[iPly * 3 + 2] = iEnPassant;
+      iPly++;
+      int vFrom = getFrom(aMove);
+      int vTo = getTo(aMove);
+      ChessPiece vMoved = getPieceMoved(aMove);
+      ChessPiece vCaptured = getPieceCaptured(aMove);
+      ChessPiece vPromoted = getPiecePromoted(aMove);
+      if (vCaptured != null)
+      {
+         iBoards.remove(vCaptured, getCaptureSquare(aMove));
+      }
+      iBoards.move(vMoved, vFrom, vTo);
+      if (vPromoted != null)
+      {
+         iBoards.remove(vMoved, vTo);
+         iBoards.put(vPromoted, vTo);
+      }
+      if ((aMove & FLAG_CASTLE) != 0)
+      {
+         moveCastlingRook(vMoved, vTo);
+      }
+      iCastling &= CASTLING_MASK[vFrom] & CASTLING_MASK[vTo];
+      iEnPassant = (aMove & FLAG_DOUBLE_PUSH) != 0 ? (vFrom + vTo) / 2 : -1;
+      iSideToMove = ChessColor.getOppositeColor(iSideToMove);
+   }
+
+   public void unmakeMove()
+   {
+      iPly--;
+      int vMove = iUndo[iPly * 3];
+      iCastling = iUndo[iPly * 3 + 1];
+      iEnPassant = iUndo[iPly * 3 + 2];
+      iSideToMove = ChessColor.getOppositeColor(iSideToMove);
+      int vFrom = getFrom(vMove);
+      int vTo = getTo(vMove);
+      ChessPiece vMoved = getPieceMoved(vMove);
+      ChessPiece vCaptured = getPieceCaptured(vMove);
+      ChessPiece vPromoted = getPiecePromoted(vMove);
+      if ((vMove & FLAG_CASTLE) != 0)
+      {
+         moveCastlingRook(vMoved, vTo);
+      }
+      if (vPromoted != null)
+      {
+         iBoards.remove(vPromoted, vTo);
+         iBoards.put(vMoved, vTo);
+      }
+      iBoards.move(vMoved, vTo, vFrom);
+      if (vCaptured != null)
+      {
+         iBoards.put(vCaptured, getCaptureSquare(vMove));
+      }
+   }
+
+   // moves made and not unmade
+   public int getPly()
+   {
+      return iPly;
+   }
+
+   // forgets the moves made: they can not be unmade any more
+   public void resetPly()
+   {
+      iPly = 0;
+   }
+
+   private static int getCaptureSquare(int aMove)
+   {
+      if ((aMove & FLAG_EN_PASSANT) == 0)
+      {
+         return getTo(aMove);
+      }
+      // the pawn captured en passant is beside the pawn moved
+      return (getFrom(aMove) & ~7) | (getTo(aMove) & 7);
+   }
+
+   // the rook of a castle moves from the corner to the square crossed by the king, and back (the same xor)
+   private void moveCastlingRook(ChessPiece aKing, int aKingTo)
+   {
+      ChessPiece vRook = aKing == ChessPiece.KING_WHITE ? ChessPiece.ROOK_WHITE : ChessPiece.ROOK_BLACK;
+      if ((aKingTo & 7) == 6)
+      {
+         iBoards.move(vRook, aKingTo + 1, aKingTo - 1);
+      }
+      else
+      {
+         iBoards.move(vRook, aKingTo - 2, aKingTo + 1);
+      }
+   }
+
+   // leaf nodes of the tree of the legal moves aDepth plies deep, aBuffers[ply] holds the moves of every ply
+   public long perft(int aDepth, int[][] aBuffers)
+   {
+      int[] vMoves = aBuffers[aDepth - 1];
+      int vCount = generateLegalMoves(vMoves);
+      if (aDepth == 1)
+      {
+         return vCount;
+      }
+      long vNodes = 0;
+      for (int i = 0; i < vCount; i++)
+      {
+         makeMove(vMoves[i]);
+         vNodes += perft(aDepth - 1, aBuffers);
+         unmakeMove();
+      }
+      return vNodes;
+   }
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2025 Gabriele Pezzini
+ * License: Creative Commons Attribution-NonCommercial 4.0 International (CC BY-NC 4.0)
+ * Full License: https://creativecommons.org/licenses/by-nc/4.0/legalcode
+ * SPDX-License-Identifier: CC-BY-NC-4.0
+ * Non-commercial use only. For commercial licensing, contact the author.
+ */
+package com.pezz.chess.board;
+
+import com.pezz.chess.base.ChessColor;
+import com.pezz.chess.pieces.ChessPiece;
+
+public class Bitboards
+{
+   // The pieces of a position as 64 bits masks, one for every ChessPiece (ordinal) and one for every color
+   // (ChessColor.getValue), bit n = square n = y * 8 + x (a1 0, b1 1 ... h8 63) as in Coordinate.valueOf(int).
+   // The attacks of knights, kings and pawns are read from tables, the ones of the sliding pieces follow the rays
+   // of the square up to the first piece met (classical approach: a table of rays and a bit scan).
+   public static final int NORTH = 0;
+   public static final int EAST = 1;
+   public static final int NORTH_EAST = 2;
+   public static final int NORTH_WEST = 3;
+   public static final int SOUTH = 4;
+   public static final int WEST = 5;
+   public static final int SOUTH_WEST = 6;
+   public static final int SOUTH_EAST = 7;
+   private static final int[][] DIRECTIONS = { { 0, 1 }, { 1, 0 }, { 1, 1 }, { -1, 1 }, { 0, -1 }, { -1, 0 },
+         { -1, -1 }, { 1, -1 } };
+   private static final long[][] RAYS = new long[8][64];
+   private static final long[] KNIGHT_ATTACKS = new long[64];
+   private static final long[] KING_ATTACKS = new long[64];
+   // [ChessColor.getValue()][square]: squares attacked by a pawn of the color
+   private static final long[][] PAWN_ATTACKS = new long[2][64];
+   // squares strictly between two squares on the same line, 0 if not on a line
+   private static final long[][] BETWEEN = new long[64][64];
+   private static final ChessPiece[] PIECES = ChessPiece.values();
+   private final long[] iPieces = new long[PIECES.length];
+   private final long[] iColors = new long[2];
+   private long iOccupied;
+
+   static
+   {
+      int[][] vKnightSteps = { { 1, 2 }, { 2, 1 }, { 2, -1 }, { 1, -2 }, { -1, -2 }, { -2, -1 }, { -2, 1 }, { -1, 2 } };
+      for (int vSquare = 0; vSquare < 64; vSquare++)
+      {
+         int vX = vSquare % 8;
+         int vY = vSquare / 8;
+         for (int vDir = 0; vDir < 8; vDir++)
+         {
+            long vRay = 0;
+            int x = vX + DIRECTIONS[vDir][0];
+            int y = vY + DIRECTIONS[vDir][1];
+            while (isOnBoard(x, y))
+            {
+               vRay |= bit(x, y);
+               x += DIRECTIONS[vDir][0];
+               y += DIRECTIONS[vDir][1];
+            }
+            RAYS[vDir][vSquare] = vRay;
+            if (isOnBoard(vX + DIRECTIONS[vDir][0], vY + DIRECTIONS[vDir][1]))
+            {
+               KING_ATTACKS[vSquare] |= bit(vX + DIRECTIONS[vDir][0], vY + DIRECTIONS[vDir][1]);
+            }
+            if (isOnBoard(vX + vKnightSteps[vDir][0], vY + vKnightSteps[vDir][1]))
+            {
+               KNIGHT_ATTACKS[vSquare] |= bit(vX + vKnightSteps[vDir][0], vY + vKnightSteps[vDir][1]);
+            }
+         }
+         for (int vDx = -1; vDx <= 1; vDx += 2)
+         {
+            if (isOnBoard(vX + vDx, vY + 1))
+            {
+               PAWN_ATTACKS[ChessColor.WHITE.getValue()][vSquare] |= bit(vX + vDx, vY + 1);
+            }
+            if (isOnBoard(vX + vDx, vY - 1))
+            {
+               PAWN_ATTACKS[ChessColor.BLACK.getValue()][vSquare] |= bit(vX + vDx, vY - 1);
+            }
+         }
+      }
+      for (int vFrom = 0; vFrom < 64; vFrom++)
+      {
+         for (int vDir = 0; vDir < 8; vDir++)
+         {
+            long vRay = RAYS[vDir][vFrom];
+            while (vRay != 0)
+            {
+               int vTo = Long.numberOfTrailingZeros(vRay);
+               vRay &= vRay - 1;
+               BETWEEN[vFrom][vTo] = RAYS[vDir][vFrom] & ~RAYS[vDir][vTo] & ~(1L << vTo);
+            }
+         }
+      }
+   }
+
+   public static int square(int aX, int aY)
+   {
+      return aY * 8 + aX;
+   }
+
+   private static boolean isOnBoard(int aX, int aY)
+   {
+      return aX >= 0 && aX < 8 && aY >= 0 && aY < 8;
+   }
+
+   private static long bit(int aX, int aY)
+   {
+      return 1L << square(aX, aY);
+   }
+
+   public void clear()
+   {
+      for (int i = 0; i < iPieces.length; i++)
+      {
+         iPieces[i] = 0;
+      }
+      iColors[0] = 0;
+      iColors[1] = 0;
+      iOccupied = 0;
+   }
+
+   public void copyFrom(Bitboards aBitboards)
+   {
+      System.arraycopy(aBitboards.iPieces, 0, iPieces, 0, iPieces.length);
+      iColors[0] = aBitboards.iColors[0];
+      iColors[1] = aBitboards.iColors[1];
+      iOccupied = aBitboards.iOccupied;
+   }
+
+   // the square must be empty
+   public void put(ChessPiece aChessPiece, int aSquare)
+   {
+      long vBit = 1L << aSquare;
+      iPieces[aChessPiece.ordinal()] |= vBit;
+      iColors[aChessPiece.getColor().getValue()] |= vBit;
+      iOccupied |= vBit;
+   }
+
+   // the square must hold aChessPiece
+   public void remove(ChessPiece aChessPiece, int aSquare)
+   {
+      long vBit = ~(1L << aSquare);
+      iPieces[aChessPiece.ordinal()] &= vBit;
+      iColors[aChessPiece.getColor().getValue()] &= vBit;
+      iOccupied &= vBit;
+   }
+
+   // empties the square, whatever it holds
+   public void remove(int aSquare)
+   {
+      long vBit = ~(1L << aSquare);
+      for (int i = 0; i < iPieces.length; i++)
+      {
+         iPieces[i] &= vBit;
+      }
+      iColors[0] &= vBit;
+      iColors[1] &= vBit;
+      iOccupied &= vBit;
+   }
+
+   public void move(ChessPiece aChessPiece, int aFrom, int aTo)
+   {
+      long vBits = (1L << aFrom) | (1L << aTo);
+      iPieces[aChessPiece.ordinal()] ^= vBits;
+      iColors[aChessPiece.getColor().getValue()] ^= vBits;
+      iOccupied ^= vBits;
+   }
+
+   public ChessPiece getPieceAt(int aSquare)
+   {
+      long vBit = 1L << aSquare;
+      if ((iOccupied & vBit) == 0)
+      {
+         return null;
+      }
+      for (int i = 0; i < iPieces.length; i++)
+      {
+         if ((iPieces[i] & vBit) != 0)
+         {
+            return PIECES[i];
+         }
+      }
+      return null;
+   }
+
+   public long getPieces(ChessPiece aChessPiece)
+   {
+      return iPieces[aChessPiece.ordinal()];
+   }
+
+   public long getPieces(ChessColor aColor)
+   {
+      return iColors[aColor.getValue()];
+   }
+
+   public long getOccupied()
+   {
+      return iOccupied;
+   }
+
+   // -1 if the color has no king
+   public int getKingSquare(ChessColor aColor)
+   {
+      long vKing = iPieces[(aColor == ChessColor.WHITE ? ChessPiece.KING_WHITE : ChessPiece.KING_BLACK).ordinal()];
+      return vKing == 0 ? -1 : Long.numberOfTrailingZeros(vKing);
+   }
+
+   // pieces of aColor attacking aSquare with the pieces in aOccupied blocking the sliding pieces
+   public long getAttackers(int aSquare, ChessColor aColor, long aOccupied)
+   {
+      boolean vWhite = aColor == ChessColor.WHITE;
+      long vRooks = iPieces[(vWhite ? ChessPiece.ROOK_WHITE : ChessPiece.ROOK_BLACK).ordinal()];
+      long vBishops = iPieces[(vWhite ? ChessPiece.BISHOP_WHITE : ChessPiece.BISHOP_BLACK).ordinal()];
+      long vQueens = iPieces[(vWhite ? ChessPiece.QUEEN_WHITE : ChessPiece.QUEEN_BLACK).ordinal()];
+      long vKnights = iPieces[(vWhite ? ChessPiece.KNIGHT_WHITE : ChessPiece.KNIGHT_BLACK).ordinal()];
+      long vKings = iPieces[(vWhite ? ChessPiece.KING_WHITE : ChessPiece.KING_BLACK).ordinal()];
+      long vPawns = iPieces[(vWhite ? ChessPiece.PAWN_WHITE : ChessPiece.PAWN_BLACK).ordinal()];
+      // a pawn of aColor attacks aSquare if a pawn of the other color on aSquare would attack it
+      return (PAWN_ATTACKS[ChessColor.getOppositeColor(aColor).getValue()][aSquare] & vPawns)
+            | (KNIGHT_ATTACKS[aSquare] & vKnights) | (KING_ATTACKS[aSquare] & vKings)
+            | (getRookAttacks(aSquare, aOccupied) & (vRooks | vQueens))
+            | (getBishopAttacks(aSquare, aOccupied) & (vBishops | vQueens));
+   }
+
+   public long getAttackers(int aSquare, ChessColor aColor)
+   {
+      return getAttackers(aSquare, aColor, iOccupied);
+   }
+
+   public boolean isAttacked(int aSquare, ChessColor aColor)
+   {
+      return getAttackers(aSquare, aColor, iOccupied) != 0;
+   }
+
+   // number of pieces of the other color giving check to the king of aColor
+   public int countCheckers(ChessColor aColor)
+   {
+      int vKing = getKingSquare(aColor);
+      return vKing < 0 ? 0 : Long.bitCount(getAttackers(vKing, ChessColor.getOppositeColor(aColor), iOccupied));
+   }
+
+   public boolean isLineFree(int aFrom, int aTo)
+   {
+      return (BETWEEN[aFrom][aTo] & iOccupied) == 0;
+   }
+
+   public static long getBetween(int aFrom, int aTo)
+   {
+      return BETWEEN[aFrom][aTo];
+   }
+
+   public static long getKnightAttacks(int aSquare)
+   {
+      return KNIGHT_ATTACKS[aSquare];
+   }
+
+   public static long getKingAttacks(int aSquare)
+   {
+      return KING_ATTACKS[aSquare];
+   }
+
+   public static long getPawnAttacks(ChessColor aColor, int aSquare)
+   {
+      return PAWN_ATTACKS[aColor.getValue()][aSquare];
+   }
+
+   public static long getRookAttacks(int aSquare, long aOccupied)
+   {
+      return getRayAttacks(NORTH, aSquare, aOccupied) | getRayAttacks(EAST, aSquare, aOccupied)
+            | getRayAttacks(SOUTH, aSquare, aOccupied) | getRayAttacks(WEST, aSquare, aOccupied);
+   }
+
+   public static long getBishopAttacks(int aSquare, long aOccupied)
+   {
+      return getRayAttacks(NORTH_EAST, aSquare, aOccupied) | getRayAttacks(NORTH_WEST, aSquare, aOccupied)
+            | getRayAttacks(SOUTH_EAST, aSquare, aOccupied) | getRayAttacks(SOUTH_WEST, aSquare, aOccupied);
+   }
+
+   // the ray up to the first piece met, included: the nearest piece is the lowest bit on the rays going up
+   // (NORTH, EAST, NORTH_EAST, NORTH_WEST) and the highest one on the others
+   private static long getRayAttacks(int aDirection, int aSquare, long aOccupied)
+   {
+      long vRay = RAYS[aDirection][aSquare];
+      long vBlockers = vRay & aOccupied;
+      if (vBlockers == 0)
+      {
+         return vRay;
+      }
+      int vFirst = aDirection < SOUTH ? Long.numberOfTrailingZeros(vBlockers)
+            : 63 - Long.numberOfLeadingZeros(vBlockers);
+      return vRay & ~RAYS[aDirection][vFirst];
+   }
+}
@@ -38,7 +38,7 @@ import com.pezz.chess.uidata.ChessBoardHeaderData;
 import com.pezz.chess.uidata.PositionNoteData;
 import com.pezz.util.itn.SQLConnection;
 
-public class ChessBoard implements Cloneable
+public class ChessBoard implements Cloneable, LegalMoveBoard
 {
    private ChessPosition iChessPosition;
    private AvailablePieces iAvailablePieces;
@@ -50,6 +50,12 @@ public class ChessBoard implements Cloneable
    private Coordinate iLastCoordFrom;
    private Coordinate iLastCoordTo;
    private boolean iIsPgn;
+   // square crossed by a pawn just moved by two squares, null if none: set by updateMoveState
+   private Coordinate iEnPassantCoordinate;
+   // BitboardPosition castling flags of the kings and rooks not moved: set by updateMoveState
+   private int iCastlingRights;
+   private final BitboardPosition iMoveGenerator = new BitboardPosition();
+   private final int[] iLegalMoves = new int[BitboardPosition.MAX_MOVES];
 
    public ChessBoard(GameController aController)
    {
@@ -83,6 +89,7 @@ public class ChessBoard implements Cloneable
    {
       clear();
       fillInitialPosition();
+      updateMoveState(null);
       iGameHistory.setInitialPosition(toDatabaseValue());
    }
 
@@ -106,6 +113,7 @@ public class ChessBoard implements Cloneable
       iGameHistory.setInitialMoveNr(1);
       iColorToMove = ChessColor.WHITE;
       iGameHistory.setInitialColorToMove(ChessColor.WHITE);
+      updateMoveState(null);
    }
 
    public void fillInitialPosition()
@@ -179,53 +187,90 @@ public class ChessBoard implements Cloneable
       {
          return vResult;
       }
-      iLastCoordFrom = aFrom;
-      iLastCoordTo = aTo;
-      MoveType vMoveType = vResult.getMoveType();
+      return performValidMove(vResult, vFrom, aPromotedPiece);
+   }
+
+   // aLegalMove: one of the moves of generateLegalMoves, the pieces do not validate it again
+   public MoveResult performMove(int aLegalMove)
+   {
+      Coordinate vFrom = Coordinate.valueOf(BitboardPosition.getFrom(aLegalMove));
+      Coordinate vTo = Coordinate.valueOf(BitboardPosition.getTo(aLegalMove));
+      ChessPiece vCaptured = BitboardPosition.getPieceCaptured(aLegalMove);
+      ChessPiece vPromoted = BitboardPosition.getPiecePromoted(aLegalMove);
+      MoveType vMoveType = MoveType.NORMAL;
+      if ((aLegalMove & BitboardPosition.FLAG_CASTLE) != 0)
+      {
+         vMoveType = vTo.getX() == 6 ? MoveType.SHORT_CASTLE : MoveType.LONG_CASTLE;
+      }
+      else if ((aLegalMove & BitboardPosition.FLAG_EN_PASSANT) != 0)
+      {
+         vMoveType = MoveType.CAPTURE_EP;
+      }
+      else if (vPromoted != null)
+      {
+         vMoveType = vCaptured == null ? MoveType.PROMOTE : MoveType.PROMOTE_AND_CAPTURE;
+      }
+      else if (vCaptured != null)
+      {
+         vMoveType = MoveType.CAPTURE;
+      }
+      MoveResult vResult = new MoveResult(BitboardPosition.getPieceMoved(aLegalMove), vFrom, vTo, vMoveType,
+            vMoveType == MoveType.SHORT_CASTLE, vMoveType == MoveType.LONG_CASTLE,
+            vCaptured == null ? null : vCaptured.getSimpleChessPiece());
+      addAdditionalMoveInfo(vResult);
+      return performValidMove(vResult, getChessBoardPiece(vFrom), vPromoted);
+   }
+
+   private MoveResult performValidMove(MoveResult aResult, ChessBoardPiece aPiece, ChessPiece aPromotedPiece)
+   {
+      iLastCoordFrom = aResult.getCoordinateFrom();
+      iLastCoordTo = aResult.getCoordinateTo();
+      MoveType vMoveType = aResult.getMoveType();
       if ((vMoveType == MoveType.PROMOTE || vMoveType == MoveType.PROMOTE_AND_CAPTURE) && aPromotedPiece == null)
       {
          iGameController.performPromote();
-         return vResult;
+         return aResult;
       }
       if (aPromotedPiece != null)
       {
-         vResult.setPiecePromoted(aPromotedPiece.getSimpleChessPiece());
+         aResult.setPiecePromoted(aPromotedPiece.getSimpleChessPiece());
       }
-      vFrom.setMoved(true);
+      aPiece.setMoved(true);
       switch (vMoveType)
       {
          case NORMAL:
-            performNormalMove(vResult, vFrom);
+            performNormalMove(aResult, aPiece);
             break;
          case PROMOTE:
-            performPromoteMove(vResult, vFrom);
+            performPromoteMove(aResult, aPiece);
             break;
          case CAPTURE:
-            performCaptureMove(vResult, vFrom);
+            performCaptureMove(aResult, aPiece);
             break;
          case CAPTURE_EP:
-            performCaptureMoveEP(vResult, vFrom);
+            performCaptureMoveEP(aResult, aPiece);
             break;
          case PROMOTE_AND_CAPTURE:
-            performPromoteAndCaptureMove(vResult, vFrom, getChessBoardPiece(vResult.getCoordinateTo()));
+            performPromoteAndCaptureMove(aResult, aPiece, getChessBoardPiece(aResult.getCoordinateTo()));
             break;
          case SHORT_CASTLE:
-            performShortCastle(vResult, vFrom);
+            performShortCastle(aResult, aPiece);
             break;
          case LONG_CASTLE:
-            performLongCastle(vResult, vFrom);
+            performLongCastle(aResult, aPiece);
             break;
       }
-      ChessColor vMovedColor = vResult.getPieceMoved().getColor();
-      vResult.setCheck(isKingInCheck(ChessColor.getOppositeColor(vMovedColor)));
-      vResult.setChessBoardDatabaseValue(toDatabaseValue());
-      iGameHistory.add(vResult);
+      ChessColor vMovedColor = aResult.getPieceMoved().getColor();
+      aResult.setCheck(isKingInCheck(ChessColor.getOppositeColor(vMovedColor)));
+      aResult.setChessBoardDatabaseValue(toDatabaseValue());
+      iGameHistory.add(aResult);
       iColorToMove = ChessColor.getOppositeColor(vMovedColor);
       if (iColorToMove == ChessColor.WHITE)
       {
          iMoveNr++;
       }
-      return vResult;
+      updateMoveState(aResult);
+      return aResult;
    }
 
    protected void performNormalMove(MoveResult aMoveResult, ChessBoardPiece aPiece)
@@ -325,7 +370,6 @@ public class ChessBoard implements Cloneable
          return new MoveResult(InvalidMoveCause.SQUARE_FROM_WITHOUT_PIECE);
       }
       ChessBoardPiece vPieceToCapture = null;
-      ChessBoardPiece vPromotedPiece = null;
       MoveResult vMoveResult = vPieceFrom.validateMove(aTo, this);
       if (!vMoveResult.isValid())
       {
@@ -345,45 +389,21 @@ public class ChessBoard implements Cloneable
          }
       }
       vPieceToCapture = iChessPosition.getPieceAt(vX, vY);
+      // the move is tried on the bitboards only: the promoted piece blocks the same lines as the pawn
+      Bitboards vBitboards = iChessPosition.getBitboards();
+      int vSquareFrom = Bitboards.square(aFrom.getX(), aFrom.getY());
+      int vSquareTo = Bitboards.square(aTo.getX(), aTo.getY());
+      int vSquareCaptured = Bitboards.square(vX, vY);
       if (vPieceToCapture != null)
       {
-         iAvailablePieces.removePiece(vPieceToCapture);
-         iChessPosition.removePiece(vPieceToCapture);
-      }
-      SimpleChessPiece vSimplePromotedPiece = vMoveResult.getPiecePromoted();
-      if (vSimplePromotedPiece != null)
-      {
-         vPromotedPiece = ChessBoardPiece.valueOf(ChessPiece.valueOf(vSimplePromotedPiece, getColorToMove()));
-      }
-      iAvailablePieces.removePiece(vPieceFrom);
-      iChessPosition.removePiece(vPieceFrom);
-      if (vPromotedPiece == null)
-      {
-         iChessPosition.setPiece(vPieceFrom, aTo.getX(), aTo.getY());
-         iAvailablePieces.addPiece(vPieceFrom);
-      }
-      else
-      {
-         iChessPosition.setPiece(vPromotedPiece, aTo.getX(), aTo.getY());
-         iAvailablePieces.addPiece(vPromotedPiece);
+         vBitboards.remove(vPieceToCapture.getChessPiece(), vSquareCaptured);
       }
+      vBitboards.move(vPieceFrom.getChessPiece(), vSquareFrom, vSquareTo);
       MoveResult vPartial = additionalMoveValidation(vPieceFrom, aTo);
-      if (vPromotedPiece == null)
-      {
-         iAvailablePieces.removePiece(vPieceFrom);
-         iChessPosition.removePiece(vPieceFrom);
-      }
-      else
-      {
-         iAvailablePieces.removePiece(vPromotedPiece);
-         iChessPosition.removePiece(vPromotedPiece);
-      }
-      iChessPosition.setPiece(vPieceFrom, aFrom.getX(), aFrom.getY());
-      iAvailablePieces.addPiece(vPieceFrom);
+      vBitboards.move(vPieceFrom.getChessPiece(), vSquareTo, vSquareFrom);
       if (vPieceToCapture != null)
       {
-         iChessPosition.setPiece(vPieceToCapture, vX, vY);
-         iAvailablePieces.addPiece(vPieceToCapture);
+         vBitboards.put(vPieceToCapture.getChessPiece(), vSquareCaptured);
       }
       if (vPartial != null)
       {
@@ -407,6 +427,8 @@ public class ChessBoard implements Cloneable
       }
       Coordinate vFrom = aMoveResult.getCoordinateFrom();
       Coordinate vTo = aMoveResult.getCoordinateTo();
+      // all the pieces are checked, the result does not depend on the order of the list: the row is the same when
+      // any of the other pieces going to the same square is on the row of the moved piece (see ReplayBoard)
       for (ChessBoardPiece vPiece : iAvailablePieces.getListOf(vSimplePieceMoved, vPieceMoved.getColor()))
       {
          Coordinate vPieceCoord = vPiece.getCoordinate();
@@ -416,8 +438,10 @@ public class ChessBoard implements Cloneable
             if (vRes.isValid())
             {
                aMoveResult.setOtherPieceCanGoTo(true);
-               aMoveResult.setOtherPieceSameRow(vPieceCoord.getY() == vFrom.getY());
-               break;
+               if (vPieceCoord.getY() == vFrom.getY())
+               {
+                  aMoveResult.setOtherPieceSameRow(true);
+               }
             }
          }
       }
@@ -446,8 +470,7 @@ public class ChessBoard implements Cloneable
 
    protected MoveResult additionalMoveValidation(ChessBoardPiece aPieceFrom, Coordinate aCoordTo)
    {
-      return aPieceFrom.getChessPiece().getSimpleChessPiece() != SimpleChessPiece.KING
-            && isKingInCheck(aPieceFrom.getChessPiece().getColor()) > 0
+      return isKingInCheck(aPieceFrom.getChessPiece().getColor()) > 0
                   ? new MoveResult(InvalidMoveCause.KING_IS_IN_CHECK, aPieceFrom.getChessPiece(),
                         aPieceFrom.getCoordinate().getX(), aPieceFrom.getCoordinate().getY(), aCoordTo.getX(),
                         aCoordTo.getY())
@@ -456,19 +479,7 @@ public class ChessBoard implements Cloneable
 
    public int isKingInCheck(ChessColor aColor)
    {
-      ChessBoardPiece vKing = aColor == ChessColor.WHITE ? iAvailablePieces.getKingWhite()
-            : iAvailablePieces.getKingBlack();
-      int vRet = 0;
-      ChessColor vOppositeColor = ChessColor.getOppositeColor(aColor);
-      for (ChessBoardPiece vPiece : iAvailablePieces.getListOf(vOppositeColor))
-      {
-         MoveResult vRes = vPiece.validateMove(vKing.getCoordinate(), this);
-         if (!vRes.isValid() && vRes.getInvalidMoveCause() == InvalidMoveCause.CAN_NOT_CAPTURE_KING)
-         {
-            vRet++;
-         }
-      }
-      return vRet;
+      return iChessPosition.getBitboards().countCheckers(aColor);
    }
 
    public ChessBoardPiece getChessBoardPiece(Coordinate aCoordinate)
@@ -524,6 +535,8 @@ public class ChessBoard implements Cloneable
       vChessBoard.iAvailablePieces = (AvailablePieces) iAvailablePieces.clone();
       vChessBoard.iMoveNr = iMoveNr;
       vChessBoard.iColorToMove = iColorToMove;
+      vChessBoard.iEnPassantCoordinate = iEnPassantCoordinate;
+      vChessBoard.iCastlingRights = iCastlingRights;
       vChessBoard.iGameHistory = (GameHistory) iGameHistory.clone();
       return vChessBoard;
    }
@@ -535,89 +548,18 @@ public class ChessBoard implements Cloneable
 
    public boolean thereIsOnePieceInHorizontal(int aY, int aFromX, int aToX)
    {
-      int vFromX = aFromX <= aToX ? aFromX : aToX;
-      int vToX = aToX >= aFromX ? aToX : aFromX;
-      vFromX++;
-      for (int x = vFromX; x < vToX; x++)
-      {
-         if (getChessBoardPiece(x, aY) != null)
-         {
-            return true;
-         }
-      }
-      return false;
+      return !iChessPosition.getBitboards().isLineFree(Bitboards.square(aFromX, aY), Bitboards.square(aToX, aY));
    }
 
    public boolean thereIsOnePieceInVertical(int aX, int aFromY, int aToY)
    {
-      int vFromY = aFromY <= aToY ? aFromY : aToY;
-      int vToY = aToY >= aFromY ? aToY : aFromY;
-      vFromY++;
-      for (int y = vFromY; y < vToY; y++)
-      {
-         if (getChessBoardPiece(aX, y) != null)
-         {
-            return true;
-         }
-      }
-      return false;
+      return !iChessPosition.getBitboards().isLineFree(Bitboards.square(aX, aFromY), Bitboards.square(aX, aToY));
    }
 
    public boolean thereIsOnePieceInDiagonal(int aFromX, int aFromY, int aToX, int aToY)
    {
-      if (aFromX < aToX && aFromY < aToY)
-      {
-         // dal basso in alto verso destra
-         int y = aFromY + 1;
-         for (int x = aFromX + 1; x < aToX; x++)
-         {
-            if (getChessBoardPiece(x, y) != null)
-            {
-               return true;
-            }
-            y++;
-         }
-      }
-      else if (aFromX < aToX && aFromY > aToY)
-      {
-         // dall'alto in basso verso destra
-         int y = aFromY - 1;
-         for (int x = aFromX + 1; x < aToX; x++)
-         {
-            if (getChessBoardPiece(x, y) != null)
-            {
-               return true;
-            }
-            y--;
-         }
-      }
-      else if (aFromX > aToX && aFromY < aToY)
-      {
-         // dal basso in alto verso sinistra
-         int y = aFromY + 1;
-         for (int x = aFromX - 1; x >= aToX + 1; x--)
-         {
-            if (getChessBoardPiece(x, y) != null)
-            {
-               return true;
-            }
-            y++;
-         }
-      }
-      else if (aFromX > aToX && aFromY > aToY)
-      {
-         // dall'alto in basso verso sinistra
-         int y = aToY + 1;
-         for (int x = aToX + 1; x < aFromX; x++)
-         {
-            if (getChessBoardPiece(x, y) != null)
-            {
-               return true;
-            }
-            y++;
-         }
-      }
-      return false;
+      return !iChessPosition.getBitboards().isLineFree(Bitboards.square(aFromX, aFromY),
+            Bitboards.square(aToX, aToY));
    }
 
    public boolean canDoShortCastle(King aChessBoardPiece)
@@ -634,21 +576,13 @@ public class ChessBoard implements Cloneable
             {
                return false;
             }
-            for (ChessBoardPiece vOppositePiece : iAvailablePieces
-                  .getAllList(ChessColor.getOppositeColor(aChessBoardPiece.getChessPiece().getColor())))
+            // the king does not cross or reach an attacked square
+            ChessColor vOppositeColor = ChessColor.getOppositeColor(aChessBoardPiece.getChessPiece().getColor());
+            Bitboards vBitboards = iChessPosition.getBitboards();
+            if (vBitboards.isAttacked(Bitboards.square(5, vFromY), vOppositeColor)
+                  || vBitboards.isAttacked(Bitboards.square(6, vFromY), vOppositeColor))
             {
-               Coordinate vCoordinateTo = vFromY == 0 ? Coordinate.F1 : Coordinate.F8;
-               MoveResult vRes = vOppositePiece.validateMove(vCoordinateTo, this);
-               if (vRes.isValid())
-               {
-                  return false;
-               }
-               vCoordinateTo = vFromY == 0 ? Coordinate.G1 : Coordinate.G8;
-               vRes = vOppositePiece.validateMove(vCoordinateTo, this);
-               if (vRes.isValid())
-               {
-                  return false;
-               }
+               return false;
             }
             return true;
          }
@@ -671,21 +605,13 @@ public class ChessBoard implements Cloneable
             {
                return false;
             }
-            for (ChessBoardPiece vOppositePiece : iAvailablePieces
-                  .getAllList(ChessColor.getOppositeColor(aChessBoardPiece.getChessPiece().getColor())))
+            // the king does not cross or reach an attacked square, the rook crosses b1 or b8 even if attacked
+            ChessColor vOppositeColor = ChessColor.getOppositeColor(aChessBoardPiece.getChessPiece().getColor());
+            Bitboards vBitboards = iChessPosition.getBitboards();
+            if (vBitboards.isAttacked(Bitboards.square(3, vFromY), vOppositeColor)
+                  || vBitboards.isAttacked(Bitboards.square(2, vFromY), vOppositeColor))
             {
-               Coordinate vCoordinateTo = vFromY == 0 ? Coordinate.C1 : Coordinate.C8;
-               MoveResult vRes = vOppositePiece.validateMove(vCoordinateTo, this);
-               if (vRes.isValid())
-               {
-                  return false;
-               }
-               vCoordinateTo = vFromY == 0 ? Coordinate.D1 : Coordinate.D8;
-               vOppositePiece.validateMove(vCoordinateTo, this);
-               if (vRes.isValid())
-               {
-                  return false;
-               }
+               return false;
             }
             return true;
          }
@@ -704,6 +630,73 @@ public class ChessBoard implements Cloneable
       return iChessPosition.toDatabaseValue();
    }
 
+   // aLastMove: the move that led to the position, null for an initial position. The castling rights are the ones of
+   // the kings and rooks not moved on their squares, the en passant square the one crossed by a pawn just moved by two
+   // squares.
+   private void updateMoveState(MoveResult aLastMove)
+   {
+      int vCastling = 0;
+      if (isNotMoved(4, 0, ChessPiece.KING_WHITE))
+      {
+         vCastling |= isNotMoved(7, 0, ChessPiece.ROOK_WHITE) ? BitboardPosition.WHITE_SHORT : 0;
+         vCastling |= isNotMoved(0, 0, ChessPiece.ROOK_WHITE) ? BitboardPosition.WHITE_LONG : 0;
+      }
+      if (isNotMoved(4, 7, ChessPiece.KING_BLACK))
+      {
+         vCastling |= isNotMoved(7, 7, ChessPiece.ROOK_BLACK) ? BitboardPosition.BLACK_SHORT : 0;
+         vCastling |= isNotMoved(0, 7, ChessPiece.ROOK_BLACK) ? BitboardPosition.BLACK_LONG : 0;
+      }
+      iCastlingRights = vCastling;
+      iEnPassantCoordinate = null;
+      if (aLastMove != null && aLastMove.getPieceMoved().getSimpleChessPiece() == SimpleChessPiece.PAWN
+            && Math.abs(aLastMove.getCoordinateTo().getY() - aLastMove.getCoordinateFrom().getY()) == 2)
+      {
+         iEnPassantCoordinate = Coordinate.valueOf(aLastMove.getCoordinateTo().getX(),
+               (aLastMove.getCoordinateTo().getY() + aLastMove.getCoordinateFrom().getY()) / 2);
+      }
+   }
+
+   // the square a pawn can capture en passant, null if none
+   public Coordinate getEnPassantCoordinate()
+   {
+      return iEnPassantCoordinate;
+   }
+
+   // the legal moves of the color to move in aMoves (at least BitboardPosition.MAX_MOVES long), returns their number
+   @Override
+   public int generateLegalMoves(int[] aMoves)
+   {
+      Coordinate vEnPassant = iEnPassantCoordinate;
+      iMoveGenerator.setPosition(iChessPosition.getBitboards(), iColorToMove, iCastlingRights,
+            vEnPassant == null ? -1 : Bitboards.square(vEnPassant.getX(), vEnPassant.getY()));
+      return iMoveGenerator.generateLegalMoves(aMoves);
+   }
+
+   // the legal move from aFrom to aTo promoting to aPromotedPiece (null if not a promotion), 0 if none
+   public int findLegalMove(Coordinate aFrom, Coordinate aTo, SimpleChessPiece aPromotedPiece)
+   {
+      int vCount = generateLegalMoves(iLegalMoves);
+      int vFrom = Bitboards.square(aFrom.getX(), aFrom.getY());
+      int vTo = Bitboards.square(aTo.getX(), aTo.getY());
+      for (int i = 0; i < vCount; i++)
+      {
+         int vMove = iLegalMoves[i];
+         ChessPiece vPromoted = BitboardPosition.getPiecePromoted(vMove);
+         if (BitboardPosition.getFrom(vMove) == vFrom && BitboardPosition.getTo(vMove) == vTo
+               && (vPromoted == null ? aPromotedPiece == null : vPromoted.getSimpleChessPiece() == aPromotedPiece))
+         {
+            return vMove;
+         }
+      }
+      return 0;
+   }
+
+   private boolean isNotMoved(int aX, int aY, ChessPiece aChessPiece)
+   {
+      ChessBoardPiece vPiece = iChessPosition.getPieceAt(aX, aY);
+      return vPiece != null && vPiece.getChessPiece() == aChessPiece && !vPiece.isMoved();
+   }
+
    public void validatePositionForSetup(ChessColor aColorToMove, int aMoveNr) throws Exception
    {
       if (!iAvailablePieces.isValid())
@@ -721,6 +714,7 @@ public class ChessBoard implements Cloneable
       iGameHistory.setInitialMoveNr(aMoveNr);
       iGameHistory.setInitialColorToMove(iColorToMove);
       iAvailablePieces.resetIsMoved();
+      updateMoveState(null);
    }
 
    public void insertPiece(ChessBoardPiece aPiece)
@@ -739,6 +733,7 @@ public class ChessBoard implements Cloneable
       }
    }
 
+   @Override
    public ChessColor getColorToMove()
    {
       return iColorToMove;
@@ -779,6 +774,19 @@ public class ChessBoard implements Cloneable
       return aColor == ChessColor.BLACK ? iAvailablePieces.getKingBlack() : iAvailablePieces.getKingWhite();
    }
 
+   @Override
+   public Coordinate getKingCoordinate(ChessColor aColor)
+   {
+      return getKing(aColor).getCoordinate();
+   }
+
+   @Override
+   public ChessPiece getChessPieceAt(int aX, int aY)
+   {
+      ChessBoardPiece vPiece = getChessBoardPiece(aX, aY);
+      return vPiece == null ? null : vPiece.getChessPiece();
+   }
+
    @Override
    public String toString()
    {
@@ -792,13 +800,6 @@ public class ChessBoard implements Cloneable
       return iGameHistory.persistGame(iChessBoardHeaderData, aConnection);
    }
 
-   public void persistPgnGame(String aGameHash, int aGameNr, SQLConnection aConnection) throws Exception
-   {
-      iChessBoardHeaderData.setGameHash(aGameHash);
-      iChessBoardHeaderData.setGameNr(aGameNr);
-      iGameHistory.persistPgnGame(iChessBoardHeaderData, aConnection);
-   }
-
    public boolean isChanged()
    {
       return iGameHistory.isChanged();
@@ -821,6 +822,7 @@ public class ChessBoard implements Cloneable
          {
             iMoveNr--;
          }
+         updateMoveState(vResult);
       }
    }
 
@@ -935,6 +937,7 @@ public class ChessBoard implements Cloneable
             }
          }
       }
+      updateMoveState(iGameHistory.getActualMoveResult());
    }
 
    public boolean canDoBack()
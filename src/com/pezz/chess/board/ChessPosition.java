@@ -8,9 +8,7 @@
 package com.pezz.chess.board;
 
 import java.math.BigInteger;
-import java.util.Arrays;
 
-import com.pezz.chess.base.Binary;
 import com.pezz.chess.base.ChessLogger;
 import com.pezz.chess.base.Coordinate;
 import com.pezz.chess.pieces.ChessBoardPiece;
@@ -19,6 +17,10 @@ import com.pezz.chess.pieces.SimpleChessPiece;
 public class ChessPosition implements Cloneable
 {
    private Square[][] iChessPosition;
+   // Zobrist key of the pieces, updated by setPiece and removePiece
+   private long iZobristKey;
+   // the same pieces by kind and color, updated by setPiece and removePiece
+   private final Bitboards iBitboards = new Bitboards();
 
    public ChessPosition()
    {
@@ -37,10 +39,14 @@ public class ChessPosition implements Cloneable
          }
       }
       iChessPosition = null;
+      iZobristKey = 0;
+      iBitboards.clear();
    }
 
    public void clear()
    {
+      iZobristKey = 0;
+      iBitboards.clear();
       for (int x = 0; x < 64; x++)
       {
          try
@@ -62,6 +68,13 @@ public class ChessPosition implements Cloneable
 
    public void setPiece(ChessBoardPiece aPiece, int aX, int aY)
    {
+      updateZobristKey(iChessPosition[aX][aY].getChessBoardPiece(), aX, aY);
+      updateZobristKey(aPiece, aX, aY);
+      iBitboards.remove(Bitboards.square(aX, aY));
+      if (aPiece != null)
+      {
+         iBitboards.put(aPiece.getChessPiece(), Bitboards.square(aX, aY));
+      }
       iChessPosition[aX][aY].setChessBoardPiece(aPiece);
    }
 
@@ -77,9 +90,24 @@ public class ChessPosition implements Cloneable
 
    public void removePiece(int aX, int aY)
    {
+      updateZobristKey(iChessPosition[aX][aY].getChessBoardPiece(), aX, aY);
+      iBitboards.remove(Bitboards.square(aX, aY));
       iChessPosition[aX][aY].setChessBoardPiece(null);
    }
 
+   private void updateZobristKey(ChessBoardPiece aPiece, int aX, int aY)
+   {
+      if (aPiece != null)
+      {
+         iZobristKey ^= Zobrist.pieceKey(aPiece.getChessPiece(), aX, aY);
+      }
+   }
+
+   public Bitboards getBitboards()
+   {
+      return iBitboards;
+   }
+
    public ChessBoardPiece getPieceAt(Coordinate aCoordinate)
    {
       return getPieceAt(aCoordinate.getX(), aCoordinate.getY());
@@ -111,16 +139,15 @@ public class ChessPosition implements Cloneable
             vChessPosition.iChessPosition[x][y] = (Square) iChessPosition[x][y].clone();
          }
       }
+      vChessPosition.iZobristKey = iZobristKey;
+      vChessPosition.iBitboards.copyFrom(iBitboards);
       return vChessPosition;
    }
 
    @Override
    public int hashCode()
    {
-      final int vPrime = 31;
-      int vResult = 1;
-      vResult = vPrime * vResult + Arrays.deepHashCode(iChessPosition);
-      return vResult;
+      return Long.hashCode(iZobristKey);
    }
 
    // @Override
@@ -165,56 +192,25 @@ public class ChessPosition implements Cloneable
       return true;
    }
 
+   // see PositionCodec for the layout of the bits
    public BigInteger toDatabaseValue()
    {
-      int vPiecesIdx = 64;
-      char[] vChars = new char[192];
-      int vSquaresIdx = 0;
-      for (int x = 0; x < 8; x++)
-      {
-         for (int y = 0; y < 8; y++)
-         {
-            ChessBoardPiece vPiece = iChessPosition[x][y].getChessBoardPiece();
-            if (vPiece == null)
-            {
-               vChars[vSquaresIdx] = '0';
-            }
-            else
-            {
-               vChars[vSquaresIdx] = '1';
-               System.arraycopy(vPiece.getChessPiece().asBoolean(), 0, vChars, vPiecesIdx, 4);
-               vPiecesIdx += 4;
-            }
-            vSquaresIdx++;
-         }
-      }
-      for (int x = vPiecesIdx; x < 192; x++)
-      {
-         vChars[x] = '0';
-      }
-      return Binary.fromBinaryStringToBigInteger(new String(vChars));
+      return PositionCodec.toBigInteger(toPackedValue());
+   }
+
+   public long[] toPackedValue()
+   {
+      return PositionCodec.encode(this);
    }
 
    public static ChessPosition fromDatabaseValue(BigInteger aDatabaseString)
    {
-      ChessPosition vPosition = new ChessPosition();
-      String vFullPosition = Binary.fromBigIntegerToBinaryString(aDatabaseString, 192);
-      char[] vFullPositionChars = vFullPosition.toCharArray();
-      char[] vChars = new char[4];
-      int vPiecesIdx = 64;
-      for (int x = 0; x < 64; x++)
-      {
-         if (vFullPositionChars[x] == '1')
-         {
-            int vRow = x / 8;
-            int vCol = x % 8;
-            System.arraycopy(vFullPositionChars, vPiecesIdx, vChars, 0, 4);
-            ChessBoardPiece vPiece = ChessBoardPiece.valueOf(vChars);
-            vPiecesIdx += 4;
-            vPosition.setPiece(vPiece, vRow, vCol);
-         }
-      }
-      return vPosition;
+      return fromPackedValue(PositionCodec.fromBigInteger(aDatabaseString));
+   }
+
+   public static ChessPosition fromPackedValue(long[] aPackedValue)
+   {
+      return PositionCodec.decode(aPackedValue);
    }
 
    public void dump(String aMessage)
@@ -148,13 +148,6 @@ public class GameHistory implements Cloneable, Serializable
       vPersistable.endSaveGames(aConnection);
       return vRet;
    }
-
-   public void persistPgnGame(ChessBoardHeaderData aChessBoardHeaderData, SQLConnection aConnection) throws Exception
-   {
-      Persistable vPersistable = SQLConnection.getDBPersistance();
-      vPersistable.persistGame(aChessBoardHeaderData, iInitialPosition, iInitialMoveNr, iInitialColorToMove,
-            iMoveResults, iPositionNotes, true, aConnection);
-   }
    // beginp4 com.pezz.chess.board.GameHistory
    // endp4 com.pezz.chess.board.GameHistory
    // beginp5
@@ -488,6 +481,14 @@ public class GameHistory implements Cloneable, Serializable
       return iActualSemiMoveNumber;
    }
 
+   // the move of the position shown, null for the initial position
+   public MoveResult getActualMoveResult()
+   {
+      return iActualSemiMoveNumber >= 0 && iActualSemiMoveNumber < iMoveResults.size()
+            ? iMoveResults.get(iActualSemiMoveNumber)
+            : null;
+   }
+
    public ChessColor getActualColorMoved()
    {
       return iActualColorMoved;
@@ -0,0 +1,24 @@
+/*
+ * Copyright (c) 2025 Gabriele Pezzini
+ * License: Creative Commons Attribution-NonCommercial 4.0 International (CC BY-NC 4.0)
+ * Full License: https://creativecommons.org/licenses/by-nc/4.0/legalcode
+ * SPDX-License-Identifier: CC-BY-NC-4.0
+ * Non-commercial use only. For commercial licensing, contact the author.
+ */
+package com.pezz.chess.board;
+
+import com.pezz.chess.base.ChessColor;
+import com.pezz.chess.base.Coordinate;
+import com.pezz.chess.pieces.ChessPiece;
+
+// what a raw move needs to be resolved among the legal moves of a board (see RawMove)
+public interface LegalMoveBoard
+{
+   public ChessColor getColorToMove();
+
+   public ChessPiece getChessPieceAt(int aX, int aY);
+
+   public Coordinate getKingCoordinate(ChessColor aColor);
+
+   public int generateLegalMoves(int[] aMoves);
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2025 Gabriele Pezzini
+ * License: Creative Commons Attribution-NonCommercial 4.0 International (CC BY-NC 4.0)
+ * Full License: https://creativecommons.org/licenses/by-nc/4.0/legalcode
+ * SPDX-License-Identifier: CC-BY-NC-4.0
+ * Non-commercial use only. For commercial licensing, contact the author.
+ */
+package com.pezz.chess.board;
+
+import java.math.BigInteger;
+
+import com.pezz.chess.pieces.ChessBoardPiece;
+import com.pezz.chess.pieces.ChessPiece;
+
+public class PositionCodec
+{
+   // The database value of a position (positionuid) is a number of 192 bits, from the most significant one:
+   // 64 bits, one for every square (x * 8 + y), set if the square holds a piece, then the 4 bits code of every piece
+   // (ChessPiece.asInt) in the order of its square, then zeros. Packed in three longs: [0] the squares, [1] the codes
+   // of the first 16 pieces, [2] the codes of the others, from the most significant bits.
+   public static final int BITS = 192;
+   public static final int BYTES = BITS / 8;
+   private static final int MAX_PIECES = 32;
+
+   private PositionCodec()
+   {
+   }
+
+   public static long[] encode(ChessPosition aPosition)
+   {
+      long[] vWords = new long[3];
+      encode(aPosition.getBitboards(), vWords, 0);
+      return vWords;
+   }
+
+   // the three longs of the position in aWords from aOffset, nothing is allocated (see ReplayBoard)
+   public static void encode(Bitboards aBitboards, long[] aWords, int aOffset)
+   {
+      long vSquares = 0;
+      long vFirstCodes = 0;
+      long vOtherCodes = 0;
+      int vPieces = 0;
+      for (int x = 0; x < 8; x++)
+      {
+         for (int y = 0; y < 8; y++)
+         {
+            ChessPiece vPiece = aBitboards.getPieceAt(Bitboards.square(x, y));
+            if (vPiece != null)
+            {
+               if (vPieces == MAX_PIECES)
+               {
+                  throw new IllegalStateException("PositionCodec: more than " + MAX_PIECES + " pieces");
+               }
+               vSquares |= 1L << (63 - (x * 8 + y));
+               if (vPieces < 16)
+               {
+                  vFirstCodes |= (long) vPiece.asInt() << (60 - 4 * vPieces);
+               }
+               else
+               {
+                  vOtherCodes |= (long) vPiece.asInt() << (60 - 4 * (vPieces - 16));
+               }
+               vPieces++;
+            }
+         }
+      }
+      aWords[aOffset] = vSquares;
+      aWords[aOffset + 1] = vFirstCodes;
+      aWords[aOffset + 2] = vOtherCodes;
+   }
+
+   public static ChessPosition decode(long[] aWords)
+   {
+      ChessPosition vPosition = new ChessPosition();
+      long vSquares = aWords[0];
+      int vPieces = 0;
+      while (vSquares != 0)
+      {
+         int vSquare = Long.numberOfLeadingZeros(vSquares);
+         vSquares &= ~(1L << (63 - vSquare));
+         int vCode = (int) (aWords[1 + (vPieces >>> 4)] >>> (60 - 4 * (vPieces & 15))) & 0xF;
+         vPieces++;
+         ChessPiece vChessPiece = ChessPiece.valueOf(vCode);
+         if (vChessPiece == null)
+         {
+            throw new IllegalArgumentException("PositionCodec: invalid piece code " + vCode);
+         }
+         vPosition.setPiece(ChessBoardPiece.valueOf(vChessPiece), vSquare / 8, vSquare % 8);
+      }
+      return vPosition;
+   }
+
+   public static BigInteger toBigInteger(long[] aWords)
+   {
+      return toBigInteger(aWords, 0);
+   }
+
+   // the position in the three longs of aWords from aOffset
+   public static BigInteger toBigInteger(long[] aWords, int aOffset)
+   {
+      byte[] vBytes = new byte[BYTES];
+      for (int i = 0; i < BYTES; i++)
+      {
+         vBytes[i] = (byte) (aWords[aOffset + (i >>> 3)] >>> (56 - 8 * (i & 7)));
+      }
+      return new BigInteger(1, vBytes);
+   }
+
+   public static long[] fromBigInteger(BigInteger aValue)
+   {
+      if (aValue.signum() < 0 || aValue.bitLength() > BITS)
+      {
+         throw new IllegalArgumentException("PositionCodec: invalid position " + aValue);
+      }
+      // big endian, with a leading sign byte when the first bit is set
+      byte[] vBytes = aValue.toByteArray();
+      long[] vWords = new long[3];
+      int vOffset = BYTES - vBytes.length;
+      for (int i = Math.max(0, -vOffset); i < vBytes.length; i++)
+      {
+         int vByte = i + vOffset;
+         vWords[vByte >>> 3] |= (vBytes[i] & 0xFFL) << (56 - 8 * (vByte & 7));
+      }
+      return vWords;
+   }
+
+   public static byte[] toBytes(long[] aWords)
+   {
+      byte[] vBytes = new byte[BYTES];
+      for (int i = 0; i < BYTES; i++)
+      {
+         vBytes[i] = (byte) (aWords[i >>> 3] >>> (56 - 8 * (i & 7)));
+      }
+      return vBytes;
+   }
+
+   public static long[] fromBytes(byte[] aBytes)
+   {
+      long[] vWords = new long[3];
+      for (int i = 0; i < BYTES; i++)
+      {
+         vWords[i >>> 3] |= (aBytes[i] & 0xFFL) << (56 - 8 * (i & 7));
+      }
+      return vWords;
+   }
+}
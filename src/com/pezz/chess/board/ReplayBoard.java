@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2025 Gabriele Pezzini
+ * License: Creative Commons Attribution-NonCommercial 4.0 International (CC BY-NC 4.0)
+ * Full License: https://creativecommons.org/licenses/by-nc/4.0/legalcode
+ * SPDX-License-Identifier: CC-BY-NC-4.0
+ * Non-commercial use only. For commercial licensing, contact the author.
+ */
+package com.pezz.chess.board;
+
+import java.util.Arrays;
+
+import com.pezz.chess.base.Binary;
+import com.pezz.chess.base.ChessColor;
+import com.pezz.chess.base.Coordinate;
+import com.pezz.chess.base.MoveType;
+import com.pezz.chess.pieces.ChessPiece;
+import com.pezz.chess.pieces.SimpleChessPiece;
+
+// The board replaying the games of a pgn import. The moves are resolved and played on the bitboards and of every half
+// move only what is saved is kept: the database value of the move (see MoveResult.toDatabaseValue) and the three
+// longs of the position reached (see PositionCodec). A board is used by one thread only and reused for all its games
+// (see newGame): once the arrays fit the longest game nothing is allocated any more.
+public class ReplayBoard implements LegalMoveBoard
+{
+   // the bits of the database value of a move, see MoveResult.toDatabaseValue
+   private static final int CAPTUREABLE_PIECES_LIKE_CAPTURED_PIECE = 1 << 31;
+   private static final int PIECE_MOVED_SHIFT = 27;
+   private static final int PIECE_CAPTURED_SHIFT = 24;
+   private static final int OTHER_PIECE_CAN_GO_TO = 1 << 23;
+   private static final int COORDINATE_FROM_SHIFT = 17;
+   private static final int CHECK = 1 << 15;
+   private static final int COORDINATE_TO_SHIFT = 9;
+   private static final int OTHER_PIECE_SAME_ROW = 1 << 8;
+   private static final int MOVE_TYPE_SHIFT = 5;
+   private static final int PIECE_PROMOTED_SHIFT = 2;
+   private static final int SHORT_CASTLE = 1 << 1;
+   private static final int LONG_CASTLE = 1;
+   private static final int[] SIMPLE_PIECE_VALUES = new int[SimpleChessPiece.values().length];
+   private static final int[] MOVE_TYPE_VALUES = new int[MoveType.values().length];
+   private static final int INITIAL_PLIES = 256;
+   // copied by newGame, never changed
+   private static final Bitboards INITIAL_BITBOARDS = new Bitboards();
+   //
+   private final BitboardPosition iPosition = new BitboardPosition();
+   private final long[] iInitialPosition = new long[3];
+   private int[] iMoveValues = new int[INITIAL_PLIES];
+   private long[] iPositions = new long[INITIAL_PLIES * 3];
+   private int iPlies;
+
+   static
+   {
+      for (SimpleChessPiece vPiece : SimpleChessPiece.values())
+      {
+         SIMPLE_PIECE_VALUES[vPiece.ordinal()] = Binary.toInt(vPiece.asBoolean());
+      }
+      for (MoveType vMoveType : MoveType.values())
+      {
+         MOVE_TYPE_VALUES[vMoveType.ordinal()] = Binary.toInt(vMoveType.asBoolean());
+      }
+      BitboardPosition vInitial = new BitboardPosition();
+      vInitial.setInitialPosition();
+      INITIAL_BITBOARDS.copyFrom(vInitial.getBitboards());
+   }
+
+   // the initial position, with white to move and no move played
+   public void newGame()
+   {
+      iPosition.setPosition(INITIAL_BITBOARDS, ChessColor.WHITE, BitboardPosition.WHITE_SHORT
+            | BitboardPosition.WHITE_LONG | BitboardPosition.BLACK_SHORT | BitboardPosition.BLACK_LONG, -1);
+      iPlies = 0;
+      PositionCodec.encode(iPosition.getBitboards(), iInitialPosition, 0);
+   }
+
+   @Override
+   public ChessColor getColorToMove()
+   {
+      return iPosition.getSideToMove();
+   }
+
+   @Override
+   public ChessPiece getChessPieceAt(int aX, int aY)
+   {
+      return iPosition.getBitboards().getPieceAt(Bitboards.square(aX, aY));
+   }
+
+   @Override
+   public Coordinate getKingCoordinate(ChessColor aColor)
+   {
+      return Coordinate.valueOf(iPosition.getBitboards().getKingSquare(aColor));
+   }
+
+   @Override
+   public int generateLegalMoves(int[] aMoves)
+   {
+      return iPosition.generateLegalMoves(aMoves);
+   }
+
+   // plays aLegalMove, one of the moves of generateLegalMoves
+   public void performMove(int aLegalMove)
+   {
+      int vMoveValue = toDatabaseValue(aLegalMove);
+      iPosition.makeMove(aLegalMove);
+      // the moves are never unmade
+      iPosition.resetPly();
+      if (iPosition.isInCheck())
+      {
+         vMoveValue |= CHECK;
+      }
+      if (iPlies == iMoveValues.length)
+      {
+         iMoveValues = Arrays.copyOf(iMoveValues, iPlies * 2);
+         iPositions = Arrays.copyOf(iPositions, iPlies * 6);
+      }
+      // as Binary.toInt, that adds (int) Math.pow(2, 31), Integer.MAX_VALUE, for the first bit
+      iMoveValues[iPlies] = (vMoveValue & CAPTUREABLE_PIECES_LIKE_CAPTURED_PIECE) == 0 ? vMoveValue
+            : (vMoveValue & Integer.MAX_VALUE) + Integer.MAX_VALUE;
+      PositionCodec.encode(iPosition.getBitboards(), iPositions, iPlies * 3);
+      iPlies++;
+   }
+
+   // the database value of aLegalMove but the check, from the position before the move
+   private int toDatabaseValue(int aLegalMove)
+   {
+      int vFrom = BitboardPosition.getFrom(aLegalMove);
+      int vTo = BitboardPosition.getTo(aLegalMove);
+      ChessPiece vMoved = BitboardPosition.getPieceMoved(aLegalMove);
+      ChessPiece vCaptured = BitboardPosition.getPieceCaptured(aLegalMove);
+      ChessPiece vPromoted = BitboardPosition.getPiecePromoted(aLegalMove);
+      MoveType vMoveType;
+      if ((aLegalMove & BitboardPosition.FLAG_CASTLE) != 0)
+      {
+         vMoveType = vTo % 8 == 6 ? MoveType.SHORT_CASTLE : MoveType.LONG_CASTLE;
+      }
+      else if (vPromoted != null)
+      {
+         vMoveType = vCaptured == null ? MoveType.PROMOTE : MoveType.PROMOTE_AND_CAPTURE;
+      }
+      else if ((aLegalMove & BitboardPosition.FLAG_EN_PASSANT) != 0)
+      {
+         vMoveType = MoveType.CAPTURE_EP;
+      }
+      else
+      {
+         vMoveType = vCaptured == null ? MoveType.NORMAL : MoveType.CAPTURE;
+      }
+      int vRet = vMoved.asInt() << PIECE_MOVED_SHIFT | toCoordinateValue(vFrom) << COORDINATE_FROM_SHIFT
+            | toCoordinateValue(vTo) << COORDINATE_TO_SHIFT | MOVE_TYPE_VALUES[vMoveType.ordinal()] << MOVE_TYPE_SHIFT;
+      if (vCaptured != null)
+      {
+         vRet |= SIMPLE_PIECE_VALUES[vCaptured.getSimpleChessPiece().ordinal()] << PIECE_CAPTURED_SHIFT;
+      }
+      if (vPromoted != null)
+      {
+         vRet |= SIMPLE_PIECE_VALUES[vPromoted.getSimpleChessPiece().ordinal()] << PIECE_PROMOTED_SHIFT;
+      }
+      if (vMoveType == MoveType.SHORT_CASTLE)
+      {
+         vRet |= SHORT_CASTLE;
+      }
+      else if (vMoveType == MoveType.LONG_CASTLE)
+      {
+         vRet |= LONG_CASTLE;
+      }
+      SimpleChessPiece vSimpleMoved = vMoved.getSimpleChessPiece();
+      if (vSimpleMoved == SimpleChessPiece.KING || (vSimpleMoved == SimpleChessPiece.PAWN && vCaptured == null))
+      {
+         return vRet;
+      }
+      // the other pieces like the moved one that could go to the same square, ignoring pins as the ChessBoard does:
+      // the row is the same when any of them is on the row of the moved piece (see ChessBoard.addAdditionalMoveInfo)
+      Bitboards vBitboards = iPosition.getBitboards();
+      long vOthers = vBitboards.getAttackers(vTo, vMoved.getColor()) & vBitboards.getPieces(vMoved) & ~(1L << vFrom);
+      if (vOthers != 0)
+      {
+         vRet |= OTHER_PIECE_CAN_GO_TO;
+         if ((vOthers & 0xFFL << (vFrom & ~7)) != 0)
+         {
+            vRet |= OTHER_PIECE_SAME_ROW;
+         }
+      }
+      if (vCaptured != null && (vBitboards.getPieces(vCaptured) & ~(1L << vTo)) != 0)
+      {
+         vRet |= CAPTUREABLE_PIECES_LIKE_CAPTURED_PIECE;
+      }
+      return vRet;
+   }
+
+   // the value of a square in the database value of a move, see Coordinate.toBinary
+   private static int toCoordinateValue(int aSquare)
+   {
+      return (aSquare % 8) * 8 + aSquare / 8;
+   }
+
+   public int getPlies()
+   {
+      return iPlies;
+   }
+
+   // the database values of the moves played, getPlies of them
+   public int[] getMoveValues()
+   {
+      return iMoveValues;
+   }
+
+   // the positions reached by the moves played, three longs for every one of them (see PositionCodec)
+   public long[] getPositions()
+   {
+      return iPositions;
+   }
+
+   public long[] getInitialPosition()
+   {
+      return iInitialPosition;
+   }
+}
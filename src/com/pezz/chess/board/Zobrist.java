@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2025 Gabriele Pezzini
+ * License: Creative Commons Attribution-NonCommercial 4.0 International (CC BY-NC 4.0)
+ * Full License: https://creativecommons.org/licenses/by-nc/4.0/legalcode
+ * SPDX-License-Identifier: CC-BY-NC-4.0
+ * Non-commercial use only. For commercial licensing, contact the author.
+ */
+package com.pezz.chess.board;
+
+import java.util.SplittableRandom;
+
+import com.pezz.chess.pieces.ChessPiece;
+
+public class Zobrist
+{
+   // Random keys of the Zobrist hashing: the key of a position is the xor of the keys of its pieces on their squares,
+   // so moving a piece costs two xor. The seed is fixed: the keys of a position are the same in every run.
+   private static final long[] PIECE_SQUARE = new long[ChessPiece.values().length * 64];
+
+   static
+   {
+      SplittableRandom vRandom = new SplittableRandom(0x5EED_C0DE_2025L);
+      for (int i = 0; i < PIECE_SQUARE.length; i++)
+      {
+         PIECE_SQUARE[i] = vRandom.nextLong();
+      }
+   }
+
+   private Zobrist()
+   {
+   }
+
+   public static long pieceKey(ChessPiece aChessPiece, int aX, int aY)
+   {
+      return PIECE_SQUARE[aChessPiece.ordinal() * 64 + aX * 8 + aY];
+   }
+}
@@ -13,13 +13,19 @@ import java.sql.DatabaseMetaData;
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.Savepoint;
 import java.sql.Statement;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 
 import com.pezz.chess.base.ChessColor;
@@ -29,6 +35,7 @@ import com.pezz.chess.base.ChessResources;
 import com.pezz.chess.base.GameResult;
 import com.pezz.chess.base.MoveResult;
 import com.pezz.chess.base.NoteType;
+import com.pezz.chess.board.PositionCodec;
 import com.pezz.chess.db.bean.BoardPositionBean;
 import com.pezz.chess.db.bean.ChessEcoBean;
 import com.pezz.chess.db.bean.CombinationBean;
@@ -41,7 +48,7 @@ import com.pezz.chess.db.bean.PlayerBean;
 import com.pezz.chess.db.bean.PositionNoteBean;
 import com.pezz.chess.db.table.Player;
 import com.pezz.chess.pgn.PgnExportGameDetailData;
-import com.pezz.chess.pgn.PgnFileParserStatistics;
+import com.pezz.chess.pgn.PgnImportSettings;
 import com.pezz.chess.uidata.ChessBoardHeaderData;
 import com.pezz.chess.uidata.PagingBeanList;
 import com.pezz.chess.uidata.PlayerBeanList;
@@ -60,6 +67,23 @@ public abstract class ANSIDBPersistence implements Persistable
    private static FuturePositionCache iFuturePositionCache = new FuturePositionCache(100_000);
    private static PlayerCache iPlayerCache = new PlayerCache(5000);
    private static ChessEcoCache iChessEcoCache = new ChessEcoCache(5000);
+   private static GameHashFilter iGameHashFilter = new GameHashFilter();
+   private static SingleFlightLoader<String> iPlayerLoader = new SingleFlightLoader<>("Player cache", iPlayerCache);
+   private static SingleFlightLoader<String> iChessEcoLoader = new SingleFlightLoader<>("ChessEco cache",
+         iChessEcoCache);
+   private static volatile boolean iSavingPgnGames;
+   // rows of a single multi row statement
+   protected static final int BULK_ROWS = 500;
+   private static IdBlockAllocator iBoardPositionIds = new IdBlockAllocator("boardposition");
+   private static IdBlockAllocator iFuturePositionIds = new IdBlockAllocator("futureposition");
+   private static IdBlockAllocator iGameHeaderIds = new IdBlockAllocator("gameheader");
+   // ids inserted by the transaction of the thread and not committed yet
+   private static ThreadLocal<PendingIds<BigInteger>> iPendingBoardPositionIds = ThreadLocal
+         .withInitial(PendingIds::new);
+   private static ThreadLocal<PendingIds<FuturePositionRecord>> iPendingFuturePositionIds = ThreadLocal
+         .withInitial(PendingIds::new);
+   private static ThreadLocal<PendingIds<String>> iPendingPlayerIds = ThreadLocal.withInitial(PendingIds::new);
+   private static ThreadLocal<PendingIds<String>> iPendingChessEcoIds = ThreadLocal.withInitial(PendingIds::new);
 
    protected String normalizePlayerFullName(String aFullName)
    {
@@ -142,29 +166,208 @@ public abstract class ANSIDBPersistence implements Persistable
 
    @Override
    public void beginSaveGames(SQLConnection aConnection) throws Exception
+   {
+      beginSaveGames(aConnection, false);
+   }
+
+   // a pgn import syncs the id sequences and loads the hashes of the games already saved, see isKnownGameHash
+   @Override
+   public void beginSaveGames(SQLConnection aConnection, boolean aIsPgn) throws Exception
    {
       clearCache();
-      iBoardPositionCache.startCache();
-      iFuturePositionCache.startCache();
-      iPlayerCache.startCache();
-      iChessEcoCache.startCache();
+      iSavingPgnGames = aIsPgn;
+      if (aIsPgn)
+      {
+         syncIdSequences(aConnection);
+         iBoardPositionCache.getCounters().reset();
+         iFuturePositionCache.getCounters().reset();
+         iPlayerCache.getCounters().reset();
+         iChessEcoCache.getCounters().reset();
+         iPlayerLoader.resetCounters();
+         iChessEcoLoader.resetCounters();
+         long vStart = System.currentTimeMillis();
+         iGameHashFilter.load(getSqlGameHeaderHashes(), PgnImportSettings.getHashFilterMaxGames(), aConnection);
+         ChessLogger.getInstance()
+               .log("Game hash filter: " + (iGameHashFilter.isLoaded() ? iGameHashFilter.size() + " games" : "not used")
+                     + " in " + (System.currentTimeMillis() - vStart) + " ms");
+         warmUpCaches(PgnImportSettings.getWarmCachePositions(), PgnImportSettings.getWarmCacheMaxTablePositions(),
+               aConnection);
+      }
+   }
+
+   // The first games of an import share their openings: the ids of the aPositions positions with most games and of
+   // their moves are loaded before the writers start. No index covers the games of a position, so the ranking sorts
+   // the whole boardposition: it is skipped when the table has more than aMaxTablePositions rows (its highest id is
+   // the estimate, read from the primary key). The moves are read by the ids ranked, through the unique key of
+   // futureposition. The positions are cached from the least played one, so that the most played ones are the last
+   // evicted. A failure only leaves the caches empty.
+   protected void warmUpCaches(int aPositions, int aMaxTablePositions, SQLConnection aConnection)
+   {
+      if (aPositions <= 0)
+      {
+         return;
+      }
+      long vStart = System.currentTimeMillis();
+      int vLimit = Math.min(aPositions, iBoardPositionCache.getMaxEntries());
+      try
+      {
+         try (PreparedStatement vPs = aConnection.prepareStatement(getSqlBoardPositionMaxId());
+               ResultSet vRs = vPs.executeQuery())
+         {
+            int vTablePositions = vRs.next() ? vRs.getInt(1) : 0;
+            if (vTablePositions > aMaxTablePositions)
+            {
+               ChessLogger.getInstance().log("Cache warm up skipped: about " + vTablePositions + " positions");
+               return;
+            }
+         }
+         ArrayList<BigInteger> vPositions = new ArrayList<>();
+         ArrayList<Integer> vPositionIds = new ArrayList<>();
+         try (PreparedStatement vPs = aConnection.prepareStatement(getSqlMostPlayedBoardPositions()))
+         {
+            vPs.setInt(1, vLimit);
+            try (ResultSet vRs = vPs.executeQuery())
+            {
+               while (vRs.next())
+               {
+                  vPositionIds.add(vRs.getInt(1));
+                  vPositions.add(getBoardPositionUID(vRs, 2));
+               }
+            }
+         }
+         for (int i = vPositions.size() - 1; i >= 0; i--)
+         {
+            iBoardPositionCache.putIfAbsent(vPositions.get(i), vPositionIds.get(i));
+         }
+         int vMoves = 0;
+         for (int vFrom = 0; vFrom < vPositionIds.size(); vFrom += BULK_ROWS)
+         {
+            List<Integer> vChunk = vPositionIds.subList(vFrom, Math.min(vFrom + BULK_ROWS, vPositionIds.size()));
+            int vRows = getInListSize(vChunk.size());
+            try (PreparedStatement vPs = aConnection.prepareStatement(getSqlFuturePositionIdsByPositionFrom(vRows)))
+            {
+               for (int x = 0; x < vRows; x++)
+               {
+                  vPs.setInt(x + 1, vChunk.get(Math.min(x, vChunk.size() - 1)));
+               }
+               try (ResultSet vRs = vPs.executeQuery())
+               {
+                  while (vRs.next())
+                  {
+                     iFuturePositionCache.putIfAbsent(new FuturePositionRecord(vRs.getInt(2), vRs.getInt(3)),
+                           new CacheEntry(vRs.getInt(1)));
+                     vMoves++;
+                  }
+               }
+            }
+         }
+         ChessLogger.getInstance().log("Cache warm up: " + vPositions.size() + " positions, " + vMoves + " moves in "
+               + (System.currentTimeMillis() - vStart) + " ms");
+      }
+      catch (Exception e)
+      {
+         ChessLogger.getInstance().log("Cache warm up failed", e);
+         iBoardPositionCache.clear();
+         iFuturePositionCache.clear();
+         try
+         {
+            // postgres refuses the next statements of a transaction with an error
+            if (!aConnection.getConnection().getAutoCommit())
+            {
+               aConnection.getConnection().rollback();
+            }
+         }
+         catch (Exception ex)
+         {
+            ChessLogger.getInstance().log(ex);
+         }
+      }
+   }
+
+   @Override
+   public boolean isKnownGameHash(String aGameHash)
+   {
+      return iGameHashFilter.contains(aGameHash);
    }
 
    @Override
    public void endSaveGames(SQLConnection aConnection) throws Exception
    {
+      if (iSavingPgnGames)
+      {
+         ChessLogger.getInstance()
+               .log(iBoardPositionCache.getSummary() + "\n" + iFuturePositionCache.getSummary() + "\n"
+                     + iPlayerCache.getSummary() + "\n" + iChessEcoCache.getSummary() + "\n"
+                     + iPlayerLoader.getSummary() + "\n" + iChessEcoLoader.getSummary());
+         iSavingPgnGames = false;
+      }
       clearCache();
    }
 
+   // the ids inserted by the transaction are shared with the other threads only once committed, see PendingIds
+   @Override
+   public void commitGames(SQLConnection aConnection) throws Exception
+   {
+      aConnection.getConnection().commit();
+      iPendingBoardPositionIds.get().commit(iBoardPositionCache::putIfAbsent);
+      iPendingFuturePositionIds.get().commit((k, id) -> iFuturePositionCache.putIfAbsent(k, new CacheEntry(id)));
+      iPendingPlayerIds.get().commit((k, id) -> iPlayerCache.putIfAbsent(k, new CacheEntry(id)));
+      iPendingChessEcoIds.get().commit((k, id) -> iChessEcoCache.putIfAbsent(k, new CacheEntry(id)));
+   }
+
+   // the caches hold only committed ids, the ones inserted by the transaction are dropped
+   @Override
+   public void rollbackGames(SQLConnection aConnection) throws Exception
+   {
+      try
+      {
+         aConnection.getConnection().rollback();
+      }
+      finally
+      {
+         iPendingBoardPositionIds.get().rollback();
+         iPendingFuturePositionIds.get().rollback();
+         iPendingPlayerIds.get().rollback();
+         iPendingChessEcoIds.get().rollback();
+      }
+   }
+
+   protected Savepoint setSavepoint(SQLConnection aConnection) throws Exception
+   {
+      Savepoint vSavepoint = aConnection.getConnection().setSavepoint();
+      iPendingBoardPositionIds.get().savepoint();
+      iPendingFuturePositionIds.get().savepoint();
+      iPendingPlayerIds.get().savepoint();
+      iPendingChessEcoIds.get().savepoint();
+      return vSavepoint;
+   }
+
+   // fails when the database has rolled back the whole transaction (e.g. a deadlock on MariaDB)
+   protected void rollbackToSavepoint(Savepoint aSavepoint, SQLConnection aConnection) throws Exception
+   {
+      aConnection.getConnection().rollback(aSavepoint);
+      iPendingBoardPositionIds.get().rollbackToSavepoint();
+      iPendingFuturePositionIds.get().rollbackToSavepoint();
+      iPendingPlayerIds.get().rollbackToSavepoint();
+      iPendingChessEcoIds.get().rollbackToSavepoint();
+   }
+
+   // the ids inserted since aSavepoint stay pending until the next savepoint or the end of the transaction
+   protected void releaseSavepoint(Savepoint aSavepoint, SQLConnection aConnection) throws Exception
+   {
+      aConnection.getConnection().releaseSavepoint(aSavepoint);
+   }
+
    private void clearCache()
    {
       iPlayersCleanedFullNamesCache.clear();
       iPlayersNormalizedFullNamesCache.clear();
       iTruncatedString.clear();
-      iBoardPositionCache.stopCache();
-      iFuturePositionCache.stopCache();
-      iPlayerCache.stopCache();
-      iChessEcoCache.stopCache();
+      iBoardPositionCache.clear();
+      iFuturePositionCache.clear();
+      iPlayerCache.clear();
+      iChessEcoCache.clear();
+      iGameHashFilter.clear();
    }
 
    /////////////////////////////////////////////////////////////////////////
@@ -225,6 +428,17 @@ public abstract class ANSIDBPersistence implements Persistable
    //
    private static String iSqlGetBoardPositionByID = "SELECT * FROM boardposition WHERE id = ?";
    //
+   private static String iSqlMostPlayedBoardPositions = """
+         SELECT id, positionuid FROM boardposition
+         ORDER BY winwhite + numdraw + winblack DESC
+         LIMIT ?
+         """;
+   //
+   private static String iSqlBoardPositionMaxId = "SELECT MAX(id) FROM boardposition";
+   //
+   // followed by the list of the ids, see getSqlFuturePositionIdsByPositionFrom
+   private static String iSqlFuturePositionIdsByPositionFrom = "SELECT id, positionfrom, movestr FROM futureposition WHERE positionfrom IN (";
+   //
    // chesseco
    //
    private static String iSqlChessEcoByCode = "SELECT * FROM chesseco WHERE code = ?";
@@ -346,6 +560,7 @@ public abstract class ANSIDBPersistence implements Persistable
    private static String iSqlGameHeaderInsert = """
          INSERT INTO gameheader
          (
+            id,
             whiteplayerid,
             whiteelo,
             blackplayerid,
@@ -378,6 +593,7 @@ public abstract class ANSIDBPersistence implements Persistable
             ?,
             ?,
             ?,
+            ?,
             ?
          )
          """;
@@ -405,6 +621,8 @@ public abstract class ANSIDBPersistence implements Persistable
    //
    private static String iSqlExistsGameHeaderWithHash = "SELECT id FROM gameheader WHERE gamehash = ?";
    //
+   private static String iSqlGameHeaderHashes = "SELECT gamehash FROM gameheader";
+   //
    private static String iSqlExistsGameHeaderForChessECO = "SELECT id FROM gameheader WHERE chessecoid = ?";
    //
    private static String iSqlGetGameHeaderById = "SELECT * FROM gameheader WHERE id  = ?";
@@ -498,6 +716,127 @@ public abstract class ANSIDBPersistence implements Persistable
          ChessColor aInitialColorToMove, ArrayList<MoveResult> aMoveResults,
          HashMap<BigInteger, PositionNoteData> aPositionNotes, boolean aIsPgn, SQLConnection aConnection)
          throws Exception
+   {
+      int vMovesNr = aMoveResults.size();
+      ArrayList<BigInteger> vPositions = new ArrayList<>(vMovesNr);
+      int[] vMoveValues = new int[vMovesNr];
+      for (int x = 0; x < vMovesNr; x++)
+      {
+         vPositions.add(aMoveResults.get(x).getChessBoardDatabaseValue());
+         vMoveValues[x] = aMoveResults.get(x).toDatabaseValue();
+      }
+      return persistGameImpl(aChessBoardHeaderData, aInitialPosition, aInitialMoveNr, aInitialColorToMove, vPositions,
+            vMoveValues, aMoveResults, aPositionNotes, aIsPgn, aConnection);
+   }
+
+   // The games of a transaction of a pgn import, committed by the writer (see PgnRawGameWriterThread). The rows shared
+   // by the games (eco codes, players, positions and moves) are inserted first for all of them, every kind sorted by
+   // its unique key, so that the writers lock them always in the same order and do not deadlock; then every game is
+   // written under a savepoint, a game in error is rolled back alone. An exception means that the transaction is lost.
+   @Override
+   public boolean[] persistPgnGames(List<PgnGameRecord> aGames, SQLConnection aConnection) throws Exception
+   {
+      // the three longs of every position (see PositionCodec) are turned into the values of the database only here
+      ArrayList<List<BigInteger>> vPositions = new ArrayList<>(aGames.size());
+      for (PgnGameRecord vGame : aGames)
+      {
+         int vMovesNr = vGame.moveValues().length;
+         ArrayList<BigInteger> vGamePositions = new ArrayList<>(vMovesNr);
+         for (int x = 0; x < vMovesNr; x++)
+         {
+            vGamePositions.add(PositionCodec.toBigInteger(vGame.positions(), x * 3));
+         }
+         vPositions.add(vGamePositions);
+      }
+      Savepoint vSavepoint = setSavepoint(aConnection);
+      try
+      {
+         insertSharedRows(aGames, vPositions, aConnection);
+      }
+      catch (Exception e)
+      {
+         // every game inserts its own rows
+         ChessLogger.getInstance().log("Rows shared by the games not inserted", e);
+         rollbackToSavepoint(vSavepoint, aConnection);
+      }
+      releaseSavepoint(vSavepoint, aConnection);
+      ArrayList<Integer> vOrder = new ArrayList<>(aGames.size());
+      for (int x = 0; x < aGames.size(); x++)
+      {
+         vOrder.add(x);
+      }
+      vOrder.sort(Comparator.comparing(x -> aGames.get(x).headerData().getGameHash()));
+      boolean[] vSaved = new boolean[aGames.size()];
+      for (int vIdx : vOrder)
+      {
+         PgnGameRecord vGame = aGames.get(vIdx);
+         vSavepoint = setSavepoint(aConnection);
+         try
+         {
+            persistGameImpl(vGame.headerData(), vGame.initialPosition(), 1, ChessColor.WHITE, vPositions.get(vIdx),
+                  vGame.moveValues(), null, null, true, aConnection);
+            vSaved[vIdx] = true;
+         }
+         catch (Exception e)
+         {
+            rollbackToSavepoint(vSavepoint, aConnection);
+         }
+         releaseSavepoint(vSavepoint, aConnection);
+      }
+      return vSaved;
+   }
+
+   // no limit, see PostgresDBPersistence
+   @Override
+   public int getMaxPgnGamesPerTransaction()
+   {
+      return Integer.MAX_VALUE;
+   }
+
+   protected void insertSharedRows(List<PgnGameRecord> aGames, List<List<BigInteger>> aPositions,
+         SQLConnection aConnection) throws Exception
+   {
+      TreeSet<String> vEcoCodes = new TreeSet<>();
+      // cleaned names by normalized name, the unique key of player
+      TreeMap<String, String> vPlayers = new TreeMap<>();
+      ArrayList<BigInteger> vPositions = new ArrayList<>();
+      for (int x = 0; x < aGames.size(); x++)
+      {
+         ChessBoardHeaderData vHeaderData = aGames.get(x).headerData();
+         vEcoCodes.add(vHeaderData.getECO());
+         for (String vFullName : new String[] { vHeaderData.getWhitePlayer(), vHeaderData.getBlackPlayer() })
+         {
+            String vPlayerCleanedFullName = cleanPlayerFullName(vFullName);
+            vPlayers.putIfAbsent(normalizePlayerFullName(vPlayerCleanedFullName), vPlayerCleanedFullName);
+         }
+         vPositions.add(aGames.get(x).initialPosition());
+         vPositions.addAll(aPositions.get(x));
+      }
+      for (String vEcoCode : vEcoCodes)
+      {
+         insertChessEcoImpl(vEcoCode, aConnection);
+      }
+      for (Map.Entry<String, String> vPlayer : vPlayers.entrySet())
+      {
+         insertPlayerImpl(vPlayer.getValue(), 0, 0, vPlayer.getKey(), aConnection);
+      }
+      HashMap<BigInteger, Integer> vPositionIds = resolveBoardPositionIds(vPositions, aConnection);
+      ArrayList<FuturePositionRecord> vMoves = new ArrayList<>();
+      HashMap<FuturePositionRecord, Integer> vPositionTo = new HashMap<>();
+      for (int x = 0; x < aGames.size(); x++)
+      {
+         PgnGameRecord vGame = aGames.get(x);
+         addMoves(vPositionIds.get(vGame.initialPosition()), aPositions.get(x), vGame.moveValues(), vPositionIds,
+               vMoves, vPositionTo);
+      }
+      resolveFuturePositionIds(vMoves, vPositionTo, aConnection);
+   }
+
+   // aMoveResults, null for a replayed pgn game, are set as saved once committed
+   protected int persistGameImpl(ChessBoardHeaderData aChessBoardHeaderData, BigInteger aInitialPosition,
+         int aInitialMoveNr, ChessColor aInitialColorToMove, List<BigInteger> aPositions, int[] aMoveValues,
+         ArrayList<MoveResult> aMoveResults, HashMap<BigInteger, PositionNoteData> aPositionNotes, boolean aIsPgn,
+         SQLConnection aConnection) throws Exception
    {
       try
       {
@@ -521,25 +860,28 @@ public abstract class ANSIDBPersistence implements Persistable
                aChessBoardHeaderData.getEvent(), aChessBoardHeaderData.getSite(), aChessBoardHeaderData.getDateAsDate(),
                aChessBoardHeaderData.getRound(), vChessECOId, vInitialPositionId, aInitialMoveNr, aInitialColorToMove,
                aChessBoardHeaderData.getGameHash(), aConnection);
-         persistGameHistory(vGameHeaderBean, vGameResult, vInitialPositionId, aMoveResults, aConnection);
+         persistGameHistory(vGameHeaderBean, vGameResult, vInitialPositionId, aPositions, aMoveValues, aConnection);
          persistPositionNotes(aPositionNotes, aConnection);
+         // the games of a pgn import are committed in groups by the writer (see PgnRawGameWriterThread)
          if (!aIsPgn)
          {
-            for (MoveResult vRes : aMoveResults)
+            if (aMoveResults != null)
             {
-               vRes.setSaved(true);
+               for (MoveResult vRes : aMoveResults)
+               {
+                  vRes.setSaved(true);
+               }
             }
+            commitGames(aConnection);
          }
-         aConnection.getConnection().commit();
          return vGameHeaderBean.getId();
       }
       catch (Exception e)
       {
-         if (aIsPgn)
+         if (!aIsPgn)
          {
-            PgnFileParserStatistics.incrementGamesInError();
+            rollbackGames(aConnection);
          }
-         aConnection.getConnection().rollback();
          if (!(e instanceof ChessException))
          {
             e.printStackTrace();
@@ -551,28 +893,291 @@ public abstract class ANSIDBPersistence implements Persistable
       }
    }
 
+   // the position reached and the database value of every half move (see MoveResult.toDatabaseValue)
    protected void persistGameHistory(GameHeaderBean aGameHeader, GameResult aGameResult, int aBoardPositionId,
-         ArrayList<MoveResult> aMoveResults, SQLConnection aConnection) throws Exception
+         List<BigInteger> aPositions, int[] aMoveValues, SQLConnection aConnection) throws Exception
    {
       // beginp1
+      // the positions and the moves of the whole game are resolved with a few set based statements instead of an
+      // insert for every half move
+      int vMovesNr = aMoveValues.length;
+      HashMap<BigInteger, Integer> vPositionIds = resolveBoardPositionIds(aPositions, aConnection);
+      ArrayList<FuturePositionRecord> vMoves = new ArrayList<>(vMovesNr);
+      HashMap<FuturePositionRecord, Integer> vPositionTo = new HashMap<>();
+      addMoves(aBoardPositionId, aPositions, aMoveValues, vPositionIds, vMoves, vPositionTo);
+      HashMap<FuturePositionRecord, Integer> vFuturePositionIds = resolveFuturePositionIds(vMoves, vPositionTo,
+            aConnection);
+      ArrayList<Integer> vList = new ArrayList<>(vMovesNr);
+      for (FuturePositionRecord vMove : vMoves)
+      {
+         vList.add(vFuturePositionIds.get(vMove));
+      }
+      insertGameDetailImplBatch(aGameHeader.getId(), vList, aConnection);
+      // endp1
+   }
+
+   // the moves of a game starting from the position aBoardPositionId, with the position they reach in aPositionTo
+   protected void addMoves(int aBoardPositionId, List<BigInteger> aPositions, int[] aMoveValues,
+         HashMap<BigInteger, Integer> aPositionIds, List<FuturePositionRecord> aMoves,
+         HashMap<FuturePositionRecord, Integer> aPositionTo)
+   {
       int vBegPositionId = aBoardPositionId;
-      ArrayList<Integer> vList = new ArrayList<>();
-      for (MoveResult vMoveResult : aMoveResults)
+      for (int x = 0; x < aMoveValues.length; x++)
       {
-         int vBoardPositionId = insertBoardPositionImpl(vMoveResult.getChessBoardDatabaseValue(), aConnection).getId();
-         int vFuturePositionId = insertFuturePositionImpl(vBegPositionId, vMoveResult.toDatabaseValue(),
-               vBoardPositionId, aConnection).getId();
-         vList.add(vFuturePositionId);
+         int vBoardPositionId = aPositionIds.get(aPositions.get(x));
+         FuturePositionRecord vMove = new FuturePositionRecord(vBegPositionId, aMoveValues[x]);
+         aMoves.add(vMove);
+         aPositionTo.put(vMove, vBoardPositionId);
          vBegPositionId = vBoardPositionId;
       }
-      insertGameDetailImplBatch(aGameHeader.getId(), vList, aConnection);
-      // endp1
+   }
+
+   // Ids of the positions: cached ones (and the ones inserted by the transaction, see PendingIds) first, then a single
+   // select for the others and a multi row insert of the positions still missing, with ids taken from the block of
+   // the thread (see IdBlockAllocator). Concurrent inserts of the same position are not an error (see
+   // getSqlBoardPositionBulkInsert): only when a statement did not insert all its rows (or when the count is not
+   // exact) the ids of those rows are read back. The positions are inserted sorted so that the writers lock the rows
+   // always in the same order.
+   protected HashMap<BigInteger, Integer> resolveBoardPositionIds(List<BigInteger> aPositions,
+         SQLConnection aConnection) throws Exception
+   {
+      HashMap<BigInteger, Integer> vIds = new HashMap<>();
+      TreeSet<BigInteger> vMissing = new TreeSet<>();
+      PendingIds<BigInteger> vPendingIds = iPendingBoardPositionIds.get();
+      for (BigInteger vPosition : aPositions)
+      {
+         int vCachedId = iBoardPositionCache.get(vPosition);
+         Integer vPendingId;
+         if (vCachedId > 0)
+         {
+            vIds.put(vPosition, vCachedId);
+         }
+         else if ((vPendingId = vPendingIds.get(vPosition)) != null)
+         {
+            vIds.put(vPosition, vPendingId);
+         }
+         else
+         {
+            vMissing.add(vPosition);
+         }
+      }
+      if (vMissing.isEmpty())
+      {
+         return vIds;
+      }
+      ArrayList<BigInteger> vResolved = new ArrayList<>(vMissing);
+      HashMap<BigInteger, Integer> vInsertedIds = new HashMap<>();
+      selectBoardPositionIds(vMissing, vIds, aConnection);
+      vMissing.removeAll(vIds.keySet());
+      if (!vMissing.isEmpty())
+      {
+         ArrayList<BigInteger> vToInsert = new ArrayList<>(vMissing);
+         ArrayList<BigInteger> vToSelect = new ArrayList<>();
+         for (int vFrom = 0; vFrom < vToInsert.size(); vFrom += BULK_ROWS)
+         {
+            List<BigInteger> vChunk = vToInsert.subList(vFrom, Math.min(vFrom + BULK_ROWS, vToInsert.size()));
+            HashMap<BigInteger, Integer> vNewIds = new HashMap<>();
+            try (PreparedStatement vPs = aConnection.prepareStatement(getSqlBoardPositionBulkInsert(vChunk.size())))
+            {
+               int vIdx = 1;
+               for (BigInteger vPosition : vChunk)
+               {
+                  int vId = nextId(iBoardPositionIds, aConnection);
+                  vNewIds.put(vPosition, vId);
+                  vPs.setInt(vIdx++, vId);
+                  setBoardPositionUID(vPs, vIdx++, vPosition);
+               }
+               vInsertedIds.putAll(vNewIds);
+               int vInserted = vPs.executeUpdate();
+               if (isBulkInsertCountExact() && vInserted == vChunk.size())
+               {
+                  vIds.putAll(vNewIds);
+               }
+               else
+               {
+                  vToSelect.addAll(vChunk);
+               }
+            }
+         }
+         if (!vToSelect.isEmpty())
+         {
+            selectBoardPositionIds(vToSelect, vIds, aConnection);
+         }
+      }
+      for (BigInteger vPosition : vResolved)
+      {
+         Integer vId = vIds.get(vPosition);
+         if (vId == null)
+         {
+            throw new Exception("BoardPosition: position not found after insert");
+         }
+         // a row read back may have been inserted by this transaction too
+         if (vId.equals(vInsertedIds.get(vPosition)))
+         {
+            vPendingIds.put(vPosition, vId);
+         }
+         else
+         {
+            iBoardPositionCache.putIfAbsent(vPosition, vId);
+         }
+      }
+      return vIds;
+   }
+
+   protected void selectBoardPositionIds(Collection<BigInteger> aPositions, HashMap<BigInteger, Integer> aIds,
+         SQLConnection aConnection) throws Exception
+   {
+      ArrayList<BigInteger> vPositions = new ArrayList<>(aPositions);
+      for (int vFrom = 0; vFrom < vPositions.size(); vFrom += BULK_ROWS)
+      {
+         List<BigInteger> vChunk = vPositions.subList(vFrom, Math.min(vFrom + BULK_ROWS, vPositions.size()));
+         int vRows = getInListSize(vChunk.size());
+         try (PreparedStatement vPs = aConnection.prepareStatement(getSqlBoardPositionIdsByUID(vRows)))
+         {
+            for (int x = 0; x < vRows; x++)
+            {
+               setBoardPositionUID(vPs, x + 1, vChunk.get(Math.min(x, vChunk.size() - 1)));
+            }
+            try (ResultSet vRs = vPs.executeQuery())
+            {
+               while (vRs.next())
+               {
+                  aIds.put(getBoardPositionUID(vRs, 2), vRs.getInt(1));
+               }
+            }
+         }
+      }
+   }
+
+   // true when the update count of the bulk inserts is the number of the rows really inserted, see
+   // getSqlBoardPositionBulkInsert
+   protected boolean isBulkInsertCountExact()
+   {
+      return true;
+   }
+
+   // same as resolveBoardPositionIds for the moves (positionfrom, movestr) of a game
+   protected HashMap<FuturePositionRecord, Integer> resolveFuturePositionIds(List<FuturePositionRecord> aMoves,
+         HashMap<FuturePositionRecord, Integer> aPositionTo, SQLConnection aConnection) throws Exception
+   {
+      HashMap<FuturePositionRecord, Integer> vIds = new HashMap<>();
+      TreeSet<FuturePositionRecord> vMissing = new TreeSet<>(
+            Comparator.comparingInt(FuturePositionRecord::positionFrom).thenComparingInt(FuturePositionRecord::moveStr));
+      PendingIds<FuturePositionRecord> vPendingIds = iPendingFuturePositionIds.get();
+      for (FuturePositionRecord vMove : aMoves)
+      {
+         CacheEntry vEntry = iFuturePositionCache.get(vMove);
+         Integer vPendingId;
+         if (vEntry != null)
+         {
+            vIds.put(vMove, vEntry.getId());
+         }
+         else if ((vPendingId = vPendingIds.get(vMove)) != null)
+         {
+            vIds.put(vMove, vPendingId);
+         }
+         else
+         {
+            vMissing.add(vMove);
+         }
+      }
+      if (vMissing.isEmpty())
+      {
+         return vIds;
+      }
+      ArrayList<FuturePositionRecord> vResolved = new ArrayList<>(vMissing);
+      HashMap<FuturePositionRecord, Integer> vInsertedIds = new HashMap<>();
+      selectFuturePositionIds(vMissing, vIds, aConnection);
+      vMissing.removeAll(vIds.keySet());
+      if (!vMissing.isEmpty())
+      {
+         ArrayList<FuturePositionRecord> vToInsert = new ArrayList<>(vMissing);
+         ArrayList<FuturePositionRecord> vToSelect = new ArrayList<>();
+         for (int vFrom = 0; vFrom < vToInsert.size(); vFrom += BULK_ROWS)
+         {
+            List<FuturePositionRecord> vChunk = vToInsert.subList(vFrom,
+                  Math.min(vFrom + BULK_ROWS, vToInsert.size()));
+            HashMap<FuturePositionRecord, Integer> vNewIds = new HashMap<>();
+            try (PreparedStatement vPs = aConnection.prepareStatement(getSqlFuturePositionBulkInsert(vChunk.size())))
+            {
+               int vIdx = 1;
+               for (FuturePositionRecord vMove : vChunk)
+               {
+                  int vId = nextId(iFuturePositionIds, aConnection);
+                  vNewIds.put(vMove, vId);
+                  vPs.setInt(vIdx++, vId);
+                  vPs.setInt(vIdx++, vMove.positionFrom());
+                  vPs.setInt(vIdx++, vMove.moveStr());
+                  vPs.setInt(vIdx++, aPositionTo.get(vMove));
+               }
+               vInsertedIds.putAll(vNewIds);
+               int vInserted = vPs.executeUpdate();
+               if (isBulkInsertCountExact() && vInserted == vChunk.size())
+               {
+                  vIds.putAll(vNewIds);
+               }
+               else
+               {
+                  vToSelect.addAll(vChunk);
+               }
+            }
+         }
+         if (!vToSelect.isEmpty())
+         {
+            selectFuturePositionIds(vToSelect, vIds, aConnection);
+         }
+      }
+      for (FuturePositionRecord vMove : vResolved)
+      {
+         Integer vId = vIds.get(vMove);
+         if (vId == null)
+         {
+            throw new Exception("FuturePosition: move not found after insert");
+         }
+         if (vId.equals(vInsertedIds.get(vMove)))
+         {
+            vPendingIds.put(vMove, vId);
+         }
+         else
+         {
+            iFuturePositionCache.putIfAbsent(vMove, new CacheEntry(vId));
+         }
+      }
+      return vIds;
+   }
+
+   protected void selectFuturePositionIds(Collection<FuturePositionRecord> aMoves,
+         HashMap<FuturePositionRecord, Integer> aIds, SQLConnection aConnection) throws Exception
+   {
+      ArrayList<FuturePositionRecord> vMoves = new ArrayList<>(aMoves);
+      for (int vFrom = 0; vFrom < vMoves.size(); vFrom += BULK_ROWS)
+      {
+         List<FuturePositionRecord> vChunk = vMoves.subList(vFrom, Math.min(vFrom + BULK_ROWS, vMoves.size()));
+         int vRows = getInListSize(vChunk.size());
+         try (PreparedStatement vPs = aConnection.prepareStatement(getSqlFuturePositionIdsByMove(vRows)))
+         {
+            int vIdx = 1;
+            for (int x = 0; x < vRows; x++)
+            {
+               FuturePositionRecord vMove = vChunk.get(Math.min(x, vChunk.size() - 1));
+               vPs.setInt(vIdx++, vMove.positionFrom());
+               vPs.setInt(vIdx++, vMove.moveStr());
+            }
+            try (ResultSet vRs = vPs.executeQuery())
+            {
+               while (vRs.next())
+               {
+                  aIds.put(new FuturePositionRecord(vRs.getInt(2), vRs.getInt(3)), vRs.getInt(1));
+               }
+            }
+         }
+      }
    }
 
    protected void insertGameDetailImplBatch(int aGameHeaderId, ArrayList<Integer> aFuturePositionIds,
          SQLConnection aConnection) throws Exception
    {
-      try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(getSqlGameDetailInsert()))
+      try (PreparedStatement vPs = aConnection.prepareStatement(getSqlGameDetailInsert()))
       {
          for (Integer vFuturePositionId : aFuturePositionIds)
          {
@@ -627,8 +1232,7 @@ public abstract class ANSIDBPersistence implements Persistable
    public FuturePositionBean getFuturePositionByPositionFromAndMove(int aPositionFrom, int aMoveStr,
          SQLConnection aConnection) throws Exception
    {
-      try (PreparedStatement vPs = aConnection.getConnection()
-            .prepareStatement(getSqlFuturePositionByPositionFromAndMove()))
+      try (PreparedStatement vPs = aConnection.prepareStatement(getSqlFuturePositionByPositionFromAndMove()))
       {
          vPs.setInt(1, aPositionFrom);
          vPs.setInt(2, aMoveStr);
@@ -653,7 +1257,7 @@ public abstract class ANSIDBPersistence implements Persistable
    public PlayerBean getRealPlayerByNormalizedName(String aFullName, SQLConnection aConnection) throws Exception
    {
       PlayerBean vPlayerBean = null;
-      try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(getSqlGetPlayerByNormalizedName()))
+      try (PreparedStatement vPs = aConnection.prepareStatement(getSqlGetPlayerByNormalizedName()))
       {
          vPs.setString(1, aFullName);
          try (ResultSet vRS = vPs.executeQuery())
@@ -682,7 +1286,7 @@ public abstract class ANSIDBPersistence implements Persistable
    @Override
    public boolean existsPlayer(int aId, SQLConnection aConnection) throws Exception
    {
-      try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(getSqlGetPlayerById()))
+      try (PreparedStatement vPs = aConnection.prepareStatement(getSqlGetPlayerById()))
       {
          vPs.setInt(1, aId);
          try (ResultSet vRS = vPs.executeQuery())
@@ -731,12 +1335,12 @@ public abstract class ANSIDBPersistence implements Persistable
          insertPlayerImpl(ChessResources.RESOURCES.getString("Unknown"), 0, 0,
                ChessResources.RESOURCES.getString("Unknown"), aConnection);
          insertChessEcoImpl(ChessEcoBean.UNKNOWN, aConnection);
-         aConnection.getConnection().commit();
+         commitGames(aConnection);
       }
       catch (Exception e)
       {
          ChessLogger.getInstance().log(e);
-         aConnection.getConnection().rollback();
+         rollbackGames(aConnection);
          throw e;
       }
    }
@@ -752,70 +1356,71 @@ public abstract class ANSIDBPersistence implements Persistable
          return vPlayerBean;
       }
       int vId = insertPlayerImpl(vPlayerCleanedFullName, aPlayerBean.getHigherElo(), aPlayerBean.getRealPlayerId(),
-            aPlayerBean.getNormalizedName(), aConnection).getId();
+            vPlayerNormalizedFullName, aConnection).getId();
       aPlayerBean.setId(vId);
       return aPlayerBean;
    }
 
+   // A player committed by another transaction is put in the cache, one inserted by this transaction is pending until
+   // the commit (see PendingIds). The players are keyed by normalized name, their unique key: a thread waiting for
+   // the loader of a name (see SingleFlightLoader) cannot hold the lock of its row.
    protected CacheEntry insertPlayerImpl(String aPlayerCleanedFullName, int aHigherElo, int aRealPlayerId,
          String aPlayerNormalizedFullName, SQLConnection aConnection) throws Exception
    {
-      CacheEntry vEntry = iPlayerCache.get(aPlayerCleanedFullName);
-      if (vEntry != null && vEntry != CacheEntry.iLoadingEntry)
+      PendingIds<String> vPendingIds = iPendingPlayerIds.get();
+      Integer vPendingId = vPendingIds.get(aPlayerNormalizedFullName);
+      if (vPendingId != null)
       {
-         vEntry.incrementAccess();
-         return vEntry;
+         return new CacheEntry(vPendingId);
       }
-      vEntry = iPlayerCache.putIfAbsent(aPlayerCleanedFullName, CacheEntry.iLoadingEntry);
-      if (vEntry == null)
+      return iPlayerLoader.get(aPlayerNormalizedFullName, () ->
       {
-         try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(getSqlPlayerInsert(),
-               PreparedStatement.RETURN_GENERATED_KEYS))
+         int vId = selectId(getSqlGetPlayerByNormalizedName(), aPlayerNormalizedFullName, aConnection);
+         if (vId > 0)
          {
-            vPs.setString(1, aPlayerCleanedFullName);
-            vPs.setInt(2, aHigherElo);
-            vPs.setInt(3, 0);
-            vPs.setInt(4, 0);
-            vPs.setInt(5, 0);
-            vPs.setInt(6, aRealPlayerId);
-            vPs.setString(7, aPlayerNormalizedFullName);
-            vPs.executeUpdate();
-            try (ResultSet vRS = vPs.getGeneratedKeys())
-            {
-               if (vRS.next())
-               {
-                  vEntry = new CacheEntry(vRS.getInt(1));
-                  iPlayerCache.put(aPlayerCleanedFullName, vEntry);
-                  return vEntry;
-               }
-               else
-               {
-                  throw new RuntimeException("Player: no generated keys");
-               }
-            }
+            return new SingleFlightLoader.Loaded(new CacheEntry(vId), true);
          }
-         catch (Exception e)
+         vId = insertPlayerRow(aPlayerCleanedFullName, aHigherElo, aRealPlayerId, aPlayerNormalizedFullName,
+               aConnection);
+         vPendingIds.put(aPlayerNormalizedFullName, vId);
+         return new SingleFlightLoader.Loaded(new CacheEntry(vId), false);
+      });
+   }
+
+   // the id of the row of aKey read by aSql, 0 if it does not exist
+   protected int selectId(String aSql, String aKey, SQLConnection aConnection) throws Exception
+   {
+      try (PreparedStatement vPs = aConnection.prepareStatement(aSql))
+      {
+         vPs.setString(1, aKey);
+         try (ResultSet vRS = vPs.executeQuery())
          {
-            iPlayerCache.remove(aPlayerCleanedFullName, CacheEntry.iLoadingEntry);
-            throw new RuntimeException(e);
+            return vRS.next() ? vRS.getInt(1) : 0;
          }
       }
-      else
+   }
+
+   protected int insertPlayerRow(String aPlayerCleanedFullName, int aHigherElo, int aRealPlayerId,
+         String aPlayerNormalizedFullName, SQLConnection aConnection) throws Exception
+   {
+      try (PreparedStatement vPs = aConnection.prepareStatement(getSqlPlayerInsert(),
+            PreparedStatement.RETURN_GENERATED_KEYS))
       {
-         CacheEntry vEntry2;
-         while (true)
+         vPs.setString(1, aPlayerCleanedFullName);
+         vPs.setInt(2, aHigherElo);
+         vPs.setInt(3, 0);
+         vPs.setInt(4, 0);
+         vPs.setInt(5, 0);
+         vPs.setInt(6, aRealPlayerId);
+         vPs.setString(7, aPlayerNormalizedFullName);
+         vPs.executeUpdate();
+         try (ResultSet vRS = vPs.getGeneratedKeys())
          {
-            vEntry2 = iPlayerCache.get(aPlayerCleanedFullName);
-            if (vEntry2 == null)
-            {
-               return insertPlayerImpl(aPlayerCleanedFullName, aHigherElo, aRealPlayerId, aPlayerNormalizedFullName,
-                     aConnection);
-            }
-            if (vEntry2 != CacheEntry.iLoadingEntry)
+            if (vRS.next())
             {
-               vEntry2.incrementAccess();
-               return vEntry2;
+               return vRS.getInt(1);
             }
+            throw new RuntimeException("Player: no generated keys");
          }
       }
    }
@@ -908,7 +1513,7 @@ public abstract class ANSIDBPersistence implements Persistable
          vSql.append(" ORDER BY ").append(aOrderField);
       }
       ArrayList<PlayerBean> vRet = new ArrayList<>();
-      try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(vSql.toString()))
+      try (PreparedStatement vPs = aConnection.prepareStatement(vSql.toString()))
       {
          vPs.setString(1, "%" + cleanPlayerFullName(aPartialFullName).toLowerCase() + "%");
          if (aIdsToExclude != null && aIdsToExclude.length > 0)
@@ -934,7 +1539,7 @@ public abstract class ANSIDBPersistence implements Persistable
    public PlayerBeanList getLinkedPlayerData(int aPlayerId, SQLConnection aConnection) throws Exception
    {
       PlayerBeanList vList = new PlayerBeanList();
-      try (PreparedStatement vStmt = aConnection.getConnection().prepareStatement(getSqlGetLinkedPlayerData()))
+      try (PreparedStatement vStmt = aConnection.prepareStatement(getSqlGetLinkedPlayerData()))
       {
          vStmt.setInt(1, aPlayerId);
          try (ResultSet vRes = vStmt.executeQuery())
@@ -952,8 +1557,7 @@ public abstract class ANSIDBPersistence implements Persistable
    @Override
    public boolean isPlayerFullNameInOthersPlayer(int aId, String aFullName, SQLConnection aConnection) throws Exception
    {
-      try (PreparedStatement vStmt = aConnection.getConnection()
-            .prepareStatement(getSqlIsPLayerFullNameInOthersPlayer()))
+      try (PreparedStatement vStmt = aConnection.prepareStatement(getSqlIsPLayerFullNameInOthersPlayer()))
       {
          vStmt.setString(1, cleanPlayerFullName(aFullName));
          vStmt.setInt(2, aId);
@@ -974,60 +1578,12 @@ public abstract class ANSIDBPersistence implements Persistable
 
    protected CacheEntry insertBoardPositionImpl(BigInteger aPosition, SQLConnection aConnection) throws Exception
    {
-      CacheEntry vEntry = iBoardPositionCache.get(aPosition);
-      if (vEntry != null && vEntry != CacheEntry.iLoadingEntry)
-      {
-         vEntry.incrementAccess();
-         return vEntry;
-      }
-      CacheEntry vPrev = iBoardPositionCache.putIfAbsent(aPosition, CacheEntry.iLoadingEntry);
-      if (vPrev == null)
-      {
-         try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(getSqlBoardPositionInsert(),
-               PreparedStatement.RETURN_GENERATED_KEYS))
-         {
-            setBoardPositionUID(vPs, 1, aPosition);
-            vPs.setInt(2, 0);
-            vPs.setInt(3, 0);
-            vPs.setInt(4, 0);
-            vPs.executeUpdate();
-            try (ResultSet vRS = vPs.getGeneratedKeys())
-            {
-               if (vRS.next())
-               {
-                  CacheEntry vNewEntry = new CacheEntry(vRS.getInt(1));
-                  iBoardPositionCache.put(aPosition, vNewEntry);
-                  return vNewEntry;
-               }
-               throw new RuntimeException("BoardPosition: No generated keys");
-            }
-         }
-         catch (Exception e)
-         {
-            iBoardPositionCache.remove(aPosition, CacheEntry.iLoadingEntry);
-            throw new RuntimeException(e);
-         }
-      }
-      else
+      int vCachedId = iBoardPositionCache.get(aPosition);
+      if (vCachedId > 0)
       {
-         while (true)
-         {
-            CacheEntry vEntry2;
-            while (true)
-            {
-               vEntry2 = iBoardPositionCache.get(aPosition);
-               if (vEntry2 == null)
-               {
-                  return insertBoardPositionImpl(aPosition, aConnection);
-               }
-               if (vEntry2 != CacheEntry.iLoadingEntry)
-               {
-                  vEntry2.incrementAccess();
-                  return vEntry2;
-               }
-            }
-         }
+         return new CacheEntry(vCachedId);
       }
+      return new CacheEntry(resolveBoardPositionIds(List.of(aPosition), aConnection).get(aPosition));
    }
 
    @Override
@@ -1044,64 +1600,20 @@ public abstract class ANSIDBPersistence implements Persistable
    {
       FuturePositionRecord vFuturePositionRecord = new FuturePositionRecord(aPositionFrom, aMoveStr);
       CacheEntry vEntry = iFuturePositionCache.get(vFuturePositionRecord);
-      if (vEntry != null && vEntry != CacheEntry.iLoadingEntry)
+      if (vEntry != null)
       {
-         vEntry.incrementAccess();
          return vEntry;
       }
-      vEntry = iFuturePositionCache.putIfAbsent(vFuturePositionRecord, CacheEntry.iLoadingEntry);
-      if (vEntry == null)
-      {
-         try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(getSqlFuturePositionInsert(),
-               PreparedStatement.RETURN_GENERATED_KEYS))
-         {
-            vPs.setInt(1, aPositionFrom);
-            vPs.setInt(2, aMoveStr);
-            vPs.setInt(3, aPositionTo);
-            vPs.executeUpdate();
-            try (ResultSet vRS = vPs.getGeneratedKeys())
-            {
-               if (vRS.next())
-               {
-                  vEntry = new CacheEntry(vRS.getInt(1));
-                  iFuturePositionCache.put(vFuturePositionRecord, vEntry);
-                  return vEntry;
-               }
-               else
-               {
-                  throw new Exception("FuturePosition: no generated keys");
-               }
-            }
-         }
-         catch (Exception e)
-         {
-            iFuturePositionCache.remove(vFuturePositionRecord, CacheEntry.iLoadingEntry);
-            throw new RuntimeException(e);
-         }
-      }
-      else
-      {
-         CacheEntry vEntry2;
-         while (true)
-         {
-            vEntry2 = iFuturePositionCache.get(vFuturePositionRecord);
-            if (vEntry2 == null)
-            {
-               return insertFuturePositionImpl(aPositionFrom, aMoveStr, aPositionTo, aConnection);
-            }
-            if (vEntry2 != CacheEntry.iLoadingEntry)
-            {
-               vEntry2.incrementAccess();
-               return vEntry2;
-            }
-         }
-      }
+      HashMap<FuturePositionRecord, Integer> vPositionTo = new HashMap<>();
+      vPositionTo.put(vFuturePositionRecord, aPositionTo);
+      return new CacheEntry(
+            resolveFuturePositionIds(List.of(vFuturePositionRecord), vPositionTo, aConnection).get(vFuturePositionRecord));
    }
 
    @Override
    public void updateBoardPosition(BoardPositionBean aBean, SQLConnection aConnection) throws Exception
    {
-      try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(getSqlBoardPositionUpdate()))
+      try (PreparedStatement vPs = aConnection.prepareStatement(getSqlBoardPositionUpdate()))
       {
          vPs.setInt(1, aBean.getWinWhite());
          vPs.setInt(2, aBean.getNumDraw());
@@ -1129,7 +1641,7 @@ public abstract class ANSIDBPersistence implements Persistable
    @Override
    public ChessEcoBean getChessEcoByCode(String aCode, SQLConnection aSQLConnection) throws Exception
    {
-      try (PreparedStatement vPs = aSQLConnection.getConnection().prepareStatement(getSqlChessEcoByCode()))
+      try (PreparedStatement vPs = aSQLConnection.prepareStatement(getSqlChessEcoByCode()))
       {
          vPs.setString(1, aCode);
          try (ResultSet vRs = vPs.executeQuery())
@@ -1158,7 +1670,7 @@ public abstract class ANSIDBPersistence implements Persistable
       {
          vSql.append(" ORDER BY ").append(aOrderField);
       }
-      try (PreparedStatement vPs = aSQLConnection.getConnection().prepareStatement(vSql.toString()))
+      try (PreparedStatement vPs = aSQLConnection.prepareStatement(vSql.toString()))
       {
          vPs.setString(1, "%" + aPartialCode + "%");
          try (ResultSet vRs = vPs.executeQuery())
@@ -1182,7 +1694,7 @@ public abstract class ANSIDBPersistence implements Persistable
    @Override
    public BoardPositionBean getBoardPositionById(int aId, SQLConnection aSQLConnection) throws Exception
    {
-      try (PreparedStatement vStat = aSQLConnection.getConnection().prepareStatement(getSqlGetBoardPositionByID()))
+      try (PreparedStatement vStat = aSQLConnection.prepareStatement(getSqlGetBoardPositionByID()))
       {
          vStat.setInt(1, aId);
          try (ResultSet vRs = vStat.executeQuery())
@@ -1205,7 +1717,7 @@ public abstract class ANSIDBPersistence implements Persistable
    @Override
    public BoardPositionBean getBoardPositionByUID(BigInteger aPositionUID, SQLConnection aConnection) throws Exception
    {
-      try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(getSqlGetBoardPositionByUID()))
+      try (PreparedStatement vPs = aConnection.prepareStatement(getSqlGetBoardPositionByUID()))
       {
          setBoardPositionUID(vPs, 1, aPositionUID);
          try (ResultSet vRs = vPs.executeQuery())
@@ -1228,7 +1740,7 @@ public abstract class ANSIDBPersistence implements Persistable
    @Override
    public boolean existsBoardPosition(int aId, SQLConnection aConnection) throws Exception
    {
-      try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(getSqlGetBoardPositionByID()))
+      try (PreparedStatement vPs = aConnection.prepareStatement(getSqlGetBoardPositionByID()))
       {
          vPs.setInt(1, aId);
          try (ResultSet vRS = vPs.executeQuery())
@@ -1246,60 +1758,45 @@ public abstract class ANSIDBPersistence implements Persistable
       return aBean;
    }
 
+   // same as insertPlayerImpl
    protected CacheEntry insertChessEcoImpl(String aEcoCode, SQLConnection aConnection) throws Exception
    {
-      CacheEntry vEntry = iChessEcoCache.get(aEcoCode);
-      if (vEntry != null && vEntry != CacheEntry.iLoadingEntry)
+      PendingIds<String> vPendingIds = iPendingChessEcoIds.get();
+      Integer vPendingId = vPendingIds.get(aEcoCode);
+      if (vPendingId != null)
       {
-         vEntry.incrementAccess();
-         return vEntry;
+         return new CacheEntry(vPendingId);
       }
-      vEntry = iChessEcoCache.putIfAbsent(aEcoCode, CacheEntry.iLoadingEntry);
-      if (vEntry == null)
+      return iChessEcoLoader.get(aEcoCode, () ->
       {
-         try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(getSqlChessEcoInsert(),
-               PreparedStatement.RETURN_GENERATED_KEYS))
-         {
-            vPs.setString(1, aEcoCode);
-            vPs.setInt(2, 0);
-            vPs.setInt(3, 0);
-            vPs.setInt(4, 0);
-            vPs.executeUpdate();
-            try (ResultSet vRS = vPs.getGeneratedKeys())
-            {
-               if (vRS.next())
-               {
-                  vEntry = new CacheEntry(vRS.getInt(1));
-                  iChessEcoCache.put(aEcoCode, vEntry);
-                  return vEntry;
-               }
-               else
-               {
-                  throw new RuntimeException("ChessEco: No generated keys");
-               }
-            }
-         }
-         catch (Exception e)
+         int vId = selectId(getSqlChessEcoByCode(), aEcoCode, aConnection);
+         if (vId > 0)
          {
-            iChessEcoCache.remove(aEcoCode, CacheEntry.iLoadingEntry);
-            throw new RuntimeException(e);
+            return new SingleFlightLoader.Loaded(new CacheEntry(vId), true);
          }
-      }
-      else
+         vId = insertChessEcoRow(aEcoCode, aConnection);
+         vPendingIds.put(aEcoCode, vId);
+         return new SingleFlightLoader.Loaded(new CacheEntry(vId), false);
+      });
+   }
+
+   protected int insertChessEcoRow(String aEcoCode, SQLConnection aConnection) throws Exception
+   {
+      try (PreparedStatement vPs = aConnection.prepareStatement(getSqlChessEcoInsert(),
+            PreparedStatement.RETURN_GENERATED_KEYS))
       {
-         CacheEntry vEntry2;
-         while (true)
+         vPs.setString(1, aEcoCode);
+         vPs.setInt(2, 0);
+         vPs.setInt(3, 0);
+         vPs.setInt(4, 0);
+         vPs.executeUpdate();
+         try (ResultSet vRS = vPs.getGeneratedKeys())
          {
-            vEntry2 = iChessEcoCache.get(aEcoCode);
-            if (vEntry2 == null)
-            {
-               return insertChessEcoImpl(aEcoCode, aConnection);
-            }
-            if (vEntry2 != CacheEntry.iLoadingEntry)
+            if (vRS.next())
             {
-               vEntry2.incrementAccess();
-               return vEntry2;
+               return vRS.getInt(1);
             }
+            throw new RuntimeException("ChessEco: No generated keys");
          }
       }
    }
@@ -1307,7 +1804,7 @@ public abstract class ANSIDBPersistence implements Persistable
    @Override
    public void updateChessEco(ChessEcoBean aBean, SQLConnection aConnection) throws Exception
    {
-      try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(getSqlChessEcoUpdate()))
+      try (PreparedStatement vPs = aConnection.prepareStatement(getSqlChessEcoUpdate()))
       {
          vPs.setInt(1, aBean.getWinWhite());
          vPs.setInt(2, aBean.getNumDraw());
@@ -1335,7 +1832,7 @@ public abstract class ANSIDBPersistence implements Persistable
    @Override
    public FavoritesGamesBean insertFavoritesGames(FavoritesGamesBean aBean, SQLConnection aConnection) throws Exception
    {
-      try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(getSqlFavoritesGamesInsert()))
+      try (PreparedStatement vPs = aConnection.prepareStatement(getSqlFavoritesGamesInsert()))
       {
          vPs.setInt(1, aBean.getId());
          vPs.setInt(2, aBean.getValuationRate());
@@ -1347,7 +1844,7 @@ public abstract class ANSIDBPersistence implements Persistable
    @Override
    public void updateFavoritesGames(FavoritesGamesBean aBean, SQLConnection aConnection) throws Exception
    {
-      try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(getSqlFavoritesGamesUpdate()))
+      try (PreparedStatement vPs = aConnection.prepareStatement(getSqlFavoritesGamesUpdate()))
       {
          vPs.setInt(1, aBean.getValuationRate());
          vPs.setInt(2, aBean.getId());
@@ -1373,7 +1870,7 @@ public abstract class ANSIDBPersistence implements Persistable
    @Override
    public void updateFuturePosition(FuturePositionBean aBean, SQLConnection aConnection) throws Exception
    {
-      try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(getSqlFuturePositionUpdate()))
+      try (PreparedStatement vPs = aConnection.prepareStatement(getSqlFuturePositionUpdate()))
       {
          vPs.setInt(1, aBean.getPositionFrom());
          vPs.setInt(2, aBean.getMoveValue());
@@ -1413,7 +1910,7 @@ public abstract class ANSIDBPersistence implements Persistable
       {
          vStmt += " ORDER BY " + aOrderField;
       }
-      try (PreparedStatement vStatement = aConnection.getConnection().prepareStatement(vStmt))
+      try (PreparedStatement vStatement = aConnection.prepareStatement(vStmt))
       {
          vStatement.setInt(1, vBoardPositionBean.getId());
          try (ResultSet vResultSet = vStatement.executeQuery())
@@ -1443,7 +1940,7 @@ public abstract class ANSIDBPersistence implements Persistable
    protected GameDetailBean insertGameDetailImpl(int aGameHeaderId, int aFuturePositionId, SQLConnection aConnection)
          throws Exception
    {
-      try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(getSqlGameDetailInsert(),
+      try (PreparedStatement vPs = aConnection.prepareStatement(getSqlGameDetailInsert(),
             PreparedStatement.RETURN_GENERATED_KEYS))
       {
          vPs.setInt(1, aGameHeaderId);
@@ -1472,7 +1969,7 @@ public abstract class ANSIDBPersistence implements Persistable
    @Override
    public void updateGameDetail(GameDetailBean aBean, SQLConnection aConnection) throws Exception
    {
-      try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(getSqlGameDetailUpdate()))
+      try (PreparedStatement vPs = aConnection.prepareStatement(getSqlGameDetailUpdate()))
       {
          vPs.setInt(1, aBean.getGameHeaderId());
          vPs.setInt(2, aBean.getFuturePositionId());
@@ -1530,7 +2027,7 @@ public abstract class ANSIDBPersistence implements Persistable
          throws Exception
    {
       ArrayList<PgnExportGameDetailData> vRet = new ArrayList<>();
-      try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(getSqlGetPgnExportGameDetailData()))
+      try (PreparedStatement vPs = aConnection.prepareStatement(getSqlGetPgnExportGameDetailData()))
       {
          vPs.setInt(1, aGameHeaderId);
          try (ResultSet vRs = vPs.executeQuery())
@@ -1560,49 +2057,46 @@ public abstract class ANSIDBPersistence implements Persistable
          int aStartingPositionId, int aStartingMoveNr, ChessColor aStartingColorToMove, String aGameHash,
          SQLConnection aConnection) throws Exception
    {
-      try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(getSqlGameHeaderInsert(),
-            PreparedStatement.RETURN_GENERATED_KEYS))
-      {
-         vPs.setInt(1, aWhitePlayerId);
-         vPs.setInt(2, aWhiteElo);
-         vPs.setInt(3, aBlackPlayerId);
-         vPs.setInt(4, aBlackElo);
-         vPs.setInt(5, aFinalResult);
-         vPs.setString(6, truncateString(aEventName, 30));
-         vPs.setString(7, truncateString(aSiteName, 30));
-         vPs.setDate(8, aEventDate);
-         vPs.setString(9, truncateString(aRoundNr, 8));
-         vPs.setInt(10, aChessEcoId);
-         vPs.setInt(11, aStartingPositionId);
-         vPs.setInt(12, aStartingMoveNr);
-         vPs.setInt(13, aStartingColorToMove.getValue());
-         vPs.setString(14, aGameHash);
-         vPs.setInt(15, 0);
-         vPs.executeUpdate();
-         try (ResultSet vRS = vPs.getGeneratedKeys())
+      try (PreparedStatement vPs = aConnection.prepareStatement(getSqlGameHeaderInsert()))
+      {
+         int vId = nextId(iGameHeaderIds, aConnection);
+         vPs.setInt(1, vId);
+         vPs.setInt(2, aWhitePlayerId);
+         vPs.setInt(3, aWhiteElo);
+         vPs.setInt(4, aBlackPlayerId);
+         vPs.setInt(5, aBlackElo);
+         vPs.setInt(6, aFinalResult);
+         vPs.setString(7, truncateString(aEventName, 30));
+         vPs.setString(8, truncateString(aSiteName, 30));
+         vPs.setDate(9, aEventDate);
+         vPs.setString(10, truncateString(aRoundNr, 8));
+         vPs.setInt(11, aChessEcoId);
+         vPs.setInt(12, aStartingPositionId);
+         vPs.setInt(13, aStartingMoveNr);
+         vPs.setInt(14, aStartingColorToMove.getValue());
+         vPs.setString(15, aGameHash);
+         vPs.setInt(16, 0);
+         if (vPs.executeUpdate() == 1)
          {
-            if (vRS.next())
-            {
-               GameHeaderBean vBean = new GameHeaderBean();
-               vBean.setId(vRS.getInt(1));
-               vBean.setWhitePlayerId(aWhitePlayerId);
-               vBean.setWhiteElo(aWhiteElo);
-               vBean.setBlackPlayerId(aBlackPlayerId);
-               vBean.setBlackElo(aBlackElo);
-               vBean.setFinalResult(aFinalResult);
-               vBean.setEventName(aEventName);
-               vBean.setSiteName(aSiteName);
-               vBean.setEventDate(aEventDate);
-               vBean.setRoundNr(aRoundNr);
-               vBean.setChessEcoId(aChessEcoId);
-               vBean.setStartingPositionId(aStartingPositionId);
-               vBean.setStartingMoveNr(aStartingMoveNr);
-               vBean.setStartingColorToMove(aStartingColorToMove);
-               vBean.setGameHash(aGameHash);
-               return vBean;
-            }
-            return null;
+            GameHeaderBean vBean = new GameHeaderBean();
+            vBean.setId(vId);
+            vBean.setWhitePlayerId(aWhitePlayerId);
+            vBean.setWhiteElo(aWhiteElo);
+            vBean.setBlackPlayerId(aBlackPlayerId);
+            vBean.setBlackElo(aBlackElo);
+            vBean.setFinalResult(aFinalResult);
+            vBean.setEventName(aEventName);
+            vBean.setSiteName(aSiteName);
+            vBean.setEventDate(aEventDate);
+            vBean.setRoundNr(aRoundNr);
+            vBean.setChessEcoId(aChessEcoId);
+            vBean.setStartingPositionId(aStartingPositionId);
+            vBean.setStartingMoveNr(aStartingMoveNr);
+            vBean.setStartingColorToMove(aStartingColorToMove);
+            vBean.setGameHash(aGameHash);
+            return vBean;
          }
+         return null;
       }
       catch (Exception e)
       {
@@ -1614,7 +2108,7 @@ public abstract class ANSIDBPersistence implements Persistable
    @Override
    public void updateGameHeader(GameHeaderBean aBean, SQLConnection aConnection) throws Exception
    {
-      try (PreparedStatement vPS = aConnection.getConnection().prepareStatement(getSqlGameHeaderUpdate()))
+      try (PreparedStatement vPS = aConnection.prepareStatement(getSqlGameHeaderUpdate()))
       {
          vPS.setInt(1, aBean.getWhitePlayerId());
          vPS.setInt(2, aBean.getBlackPlayerId());
@@ -1658,7 +2152,7 @@ public abstract class ANSIDBPersistence implements Persistable
       {
          vSql.append(" ORDER BY ").append(aOrderField).toString();
       }
-      try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(vSql.toString()))
+      try (PreparedStatement vPs = aConnection.prepareStatement(vSql.toString()))
       {
          vPs.setInt(1, aPlayerId);
          vPs.setInt(2, aPlayerId);
@@ -1691,7 +2185,7 @@ public abstract class ANSIDBPersistence implements Persistable
    @Override
    public int getGameIdWithHash(String aGameHash, SQLConnection aConnection) throws Exception
    {
-      try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(getSqlExistsGameHeaderWithHash()))
+      try (PreparedStatement vPs = aConnection.prepareStatement(getSqlExistsGameHeaderWithHash()))
       {
          vPs.setString(1, aGameHash);
          try (ResultSet vRS = vPs.executeQuery())
@@ -1708,7 +2202,7 @@ public abstract class ANSIDBPersistence implements Persistable
    @Override
    public boolean existsGameHeaderWithChessECO(int aChessEcoId, SQLConnection aConnection) throws Exception
    {
-      try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(getSqlExistsGameHeaderForChessECO()))
+      try (PreparedStatement vPs = aConnection.prepareStatement(getSqlExistsGameHeaderForChessECO()))
       {
          vPs.setInt(1, aChessEcoId);
          try (ResultSet vRS = vPs.executeQuery())
@@ -2423,7 +2917,7 @@ public abstract class ANSIDBPersistence implements Persistable
    public PlayerAliasBean insertPlayerAlias(PlayerAliasBean aPlayerAliasBean, SQLConnection aConnection)
          throws Exception
    {
-      try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(getSqlPlayerAliasInsert()))
+      try (PreparedStatement vPs = aConnection.prepareStatement(getSqlPlayerAliasInsert()))
       {
          vPs.setInt(1, aPlayerAliasBean.getId());
          vPs.setInt(2, aPlayerAliasBean.getNumWin());
@@ -2437,7 +2931,7 @@ public abstract class ANSIDBPersistence implements Persistable
    @Override
    public void updatePlayerAlias(PlayerAliasBean aBean, SQLConnection aConnection) throws Exception
    {
-      try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(getSqlPlayerAliasUpdate()))
+      try (PreparedStatement vPs = aConnection.prepareStatement(getSqlPlayerAliasUpdate()))
       {
          vPs.setInt(1, aBean.getNumWin());
          vPs.setInt(2, aBean.getNumDraw());
@@ -2473,7 +2967,7 @@ public abstract class ANSIDBPersistence implements Persistable
    protected PositionNoteBean insertPositionNoteImpl(int aId, int aNoteType, String aNoteCnt, SQLConnection aConnection)
          throws Exception
    {
-      try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(getSqlPositionNoteInsert(),
+      try (PreparedStatement vPs = aConnection.prepareStatement(getSqlPositionNoteInsert(),
             PreparedStatement.RETURN_GENERATED_KEYS))
       {
          vPs.setInt(1, aId);
@@ -2504,7 +2998,7 @@ public abstract class ANSIDBPersistence implements Persistable
    public void updatePositionNoteImpl(int aNoteType, String aNoteCnt, int aId, SQLConnection aConnection)
          throws Exception
    {
-      try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(getSqlPositionNoteUpdate()))
+      try (PreparedStatement vPs = aConnection.prepareStatement(getSqlPositionNoteUpdate()))
       {
          vPs.setInt(1, aNoteType);
          vPs.setString(2, aNoteCnt);
@@ -2546,7 +3040,7 @@ public abstract class ANSIDBPersistence implements Persistable
          throws Exception
    {
       String vSQL = "SELECT positionid, notetype, notecnt FROM positionnote WHERE positionid = ?";
-      try (PreparedStatement vStmt = aConnection.getConnection().prepareStatement(vSQL))
+      try (PreparedStatement vStmt = aConnection.prepareStatement(vSQL))
       {
          vStmt.setInt(1, aPositionId);
          try (ResultSet vRes = vStmt.executeQuery())
@@ -2589,7 +3083,7 @@ public abstract class ANSIDBPersistence implements Persistable
    @Override
    public ChessEcoBean getChessEcoById(int aId, SQLConnection aConnection) throws Exception
    {
-      try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(getSqlChessEcoById()))
+      try (PreparedStatement vPs = aConnection.prepareStatement(getSqlChessEcoById()))
       {
          vPs.setInt(1, aId);
          try (ResultSet vRs = vPs.executeQuery())
@@ -2612,7 +3106,7 @@ public abstract class ANSIDBPersistence implements Persistable
    @Override
    public boolean existsChessEco(int aId, SQLConnection aConnection) throws Exception
    {
-      try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(getSqlChessEcoById()))
+      try (PreparedStatement vPs = aConnection.prepareStatement(getSqlChessEcoById()))
       {
          vPs.setInt(1, aId);
          try (ResultSet vRs = vPs.executeQuery())
@@ -2625,7 +3119,7 @@ public abstract class ANSIDBPersistence implements Persistable
    @Override
    public FavoritesGamesBean getFavoriteGameByGameHeaderId(int aId, SQLConnection aConnection) throws Exception
    {
-      try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(getSqlGetFavoriteGameByGameHeaderId()))
+      try (PreparedStatement vPs = aConnection.prepareStatement(getSqlGetFavoriteGameByGameHeaderId()))
       {
          vPs.setInt(1, aId);
          try (ResultSet vRs = vPs.executeQuery())
@@ -2645,7 +3139,7 @@ public abstract class ANSIDBPersistence implements Persistable
    @Override
    public boolean existsFavoriteGame(int aId, SQLConnection aConnection) throws Exception
    {
-      try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(getSqlGetFavoriteGameByGameHeaderId()))
+      try (PreparedStatement vPs = aConnection.prepareStatement(getSqlGetFavoriteGameByGameHeaderId()))
       {
          vPs.setInt(1, aId);
          try (ResultSet vRs = vPs.executeQuery())
@@ -2685,7 +3179,7 @@ public abstract class ANSIDBPersistence implements Persistable
    @Override
    public boolean existsFuturePosition(int aId, SQLConnection aConnection) throws Exception
    {
-      try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(getSqlGetFuturePositionById()))
+      try (PreparedStatement vPs = aConnection.prepareStatement(getSqlGetFuturePositionById()))
       {
          vPs.setInt(1, aId);
          try (ResultSet vRs = vPs.executeQuery())
@@ -2698,7 +3192,7 @@ public abstract class ANSIDBPersistence implements Persistable
    @Override
    public GameDetailBean getGameDetailById(int aId, SQLConnection aConnection) throws Exception
    {
-      try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(getSqlGetGameDetail()))
+      try (PreparedStatement vPs = aConnection.prepareStatement(getSqlGetGameDetail()))
       {
          vPs.setInt(1, aId);
          try (ResultSet vRs = vPs.executeQuery())
@@ -2719,7 +3213,7 @@ public abstract class ANSIDBPersistence implements Persistable
    @Override
    public boolean existsGameDetail(int aId, SQLConnection aConnection) throws Exception
    {
-      try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(getSqlGetGameDetail()))
+      try (PreparedStatement vPs = aConnection.prepareStatement(getSqlGetGameDetail()))
       {
          vPs.setInt(1, aId);
          try (ResultSet vRs = vPs.executeQuery())
@@ -2732,7 +3226,7 @@ public abstract class ANSIDBPersistence implements Persistable
    @Override
    public GameHeaderBean getGameHeaderById(int aId, SQLConnection aConnection) throws Exception
    {
-      try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(getSqlGetGameHeaderById()))
+      try (PreparedStatement vPs = aConnection.prepareStatement(getSqlGetGameHeaderById()))
       {
          vPs.setInt(1, aId);
          try (ResultSet vRs = vPs.executeQuery())
@@ -2766,7 +3260,7 @@ public abstract class ANSIDBPersistence implements Persistable
    @Override
    public boolean existsGameHeader(int aId, SQLConnection aConnection) throws Exception
    {
-      try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(getSqlGetGameHeaderById()))
+      try (PreparedStatement vPs = aConnection.prepareStatement(getSqlGetGameHeaderById()))
       {
          vPs.setInt(1, aId);
          try (ResultSet vRs = vPs.executeQuery())
@@ -2806,7 +3300,7 @@ public abstract class ANSIDBPersistence implements Persistable
    @Override
    public boolean existsPlayerAlias(int aId, SQLConnection aConnection) throws Exception
    {
-      try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(getSqlGetPlayerAliasById()))
+      try (PreparedStatement vPs = aConnection.prepareStatement(getSqlGetPlayerAliasById()))
       {
          vPs.setInt(1, aId);
          try (ResultSet vRs = vPs.executeQuery())
@@ -2819,7 +3313,7 @@ public abstract class ANSIDBPersistence implements Persistable
    @Override
    public PositionNoteBean getPositionNoteById(int aId, SQLConnection aConnection) throws Exception
    {
-      try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(getSqlGetPlayerAliasById()))
+      try (PreparedStatement vPs = aConnection.prepareStatement(getSqlGetPlayerAliasById()))
       {
          vPs.setInt(1, aId);
          try (ResultSet vRs = vPs.executeQuery())
@@ -2840,7 +3334,7 @@ public abstract class ANSIDBPersistence implements Persistable
    @Override
    public boolean existsPositionNote(int aId, SQLConnection aConnection) throws Exception
    {
-      try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(getSqlGetPlayerAliasById()))
+      try (PreparedStatement vPs = aConnection.prepareStatement(getSqlGetPlayerAliasById()))
       {
          vPs.setInt(1, aId);
          try (ResultSet vRs = vPs.executeQuery())
@@ -2906,7 +3400,7 @@ public abstract class ANSIDBPersistence implements Persistable
 
    protected int maxIdGeneric(String aTableName, SQLConnection aConnection) throws Exception
    {
-      try (PreparedStatement vStmt = aConnection.getConnection().prepareStatement("SELECT MAX(ID) FROM " + aTableName);
+      try (PreparedStatement vStmt = aConnection.prepareStatement("SELECT MAX(ID) FROM " + aTableName);
             ResultSet vRs = vStmt.executeQuery())
       {
          return vRs.next() ? vRs.getInt(1) : 0;
@@ -2915,7 +3409,7 @@ public abstract class ANSIDBPersistence implements Persistable
 
    protected int recordCountGeneric(String aTableName, SQLConnection aConnection) throws Exception
    {
-      try (PreparedStatement vStmt = aConnection.getConnection().prepareStatement("SELECT COUNT(*) FROM " + aTableName);
+      try (PreparedStatement vStmt = aConnection.prepareStatement("SELECT COUNT(*) FROM " + aTableName);
             ResultSet vRs = vStmt.executeQuery())
       {
          return vRs.next() ? vRs.getInt(1) : 0;
@@ -2935,6 +3429,7 @@ public abstract class ANSIDBPersistence implements Persistable
             aConnection.getConnection().commit();
             createDefaultData(aConnection);
          }
+         syncIdSequences(aConnection);
          aConnection.getConnection().commit();
       }
       catch (Exception aE)
@@ -3022,46 +3517,6 @@ public abstract class ANSIDBPersistence implements Persistable
             """;
    }
 
-   @Override
-   public String getSqlBoardPositionInsert()
-   {
-      return """
-             INSERT INTO boardposition
-             (
-                positionuid,
-                winwhite,
-                numdraw,
-                winblack
-             )
-             VALUES
-             (
-               ?,
-               ?,
-               ?,
-               ?
-             )
-            """;
-   }
-
-   @Override
-   public String getSqlFuturePositionInsert()
-   {
-      return """
-            INSERT INTO futureposition
-            (
-               positionfrom,
-               movestr,
-               positionto
-            )
-            VALUES
-            (
-               ?,
-               ?,
-               ?
-            )
-            """;
-   }
-
    @Override
    public String getSqlChessEcoInsert()
    {
@@ -3219,6 +3674,141 @@ public abstract class ANSIDBPersistence implements Persistable
       return iSqlGameDetailInsert;
    }
 
+   public String getSqlBoardPositionIdsByUID(int aRows)
+   {
+      return appendRows(new StringBuilder("SELECT id, positionuid FROM boardposition WHERE positionuid IN ("), aRows,
+            "?").append(')').toString();
+   }
+
+   public String getSqlFuturePositionIdsByMove(int aRows)
+   {
+      return appendRows(
+            new StringBuilder("SELECT id, positionfrom, movestr FROM futureposition WHERE (positionfrom, movestr) IN ("),
+            aRows, "(?, ?)").append(')').toString();
+   }
+
+   // the dialects add the clause that ignores the rows inserted in the meantime by another connection
+   public String getSqlBoardPositionBulkInsert(int aRows)
+   {
+      return appendRows(
+            new StringBuilder("INSERT INTO boardposition (id, positionuid, winwhite, numdraw, winblack) VALUES "),
+            aRows, "(?, ?, 0, 0, 0)").toString();
+   }
+
+   public String getSqlFuturePositionBulkInsert(int aRows)
+   {
+      return appendRows(new StringBuilder("INSERT INTO futureposition (id, positionfrom, movestr, positionto) VALUES "),
+            aRows, "(?, ?, ?, ?)").toString();
+   }
+
+   public String getSqlNextId(String aSequenceName)
+   {
+      return "SELECT NEXT VALUE FOR " + aSequenceName;
+   }
+
+   public String getSqlCreateIdSequence(String aSequenceName, int aStart)
+   {
+      return "CREATE SEQUENCE IF NOT EXISTS " + aSequenceName + " START WITH " + aStart + " INCREMENT BY "
+            + IdBlockAllocator.BLOCK_SIZE;
+   }
+
+   public String getSqlRestartIdSequence(String aSequenceName, int aStart)
+   {
+      return "ALTER SEQUENCE " + aSequenceName + " RESTART WITH " + aStart;
+   }
+
+   protected int nextId(IdBlockAllocator aIds, SQLConnection aConnection) throws Exception
+   {
+      return aIds.nextId(getSqlNextId(aIds.getSequenceName()), aConnection);
+   }
+
+   // The ids of boardposition, futureposition and gameheader come from sequences incremented by blocks. Databases
+   // created before have not them: the sequences are created starting after the highest id of the table, and
+   // restarted when the table has ids beyond the sequence (rows loaded from outside the application, or inserted by
+   // another client through the identity of the table). Done when connecting and before a pgn import, never while the
+   // writers of an import hold blocks of ids. The identity of the table (AUTO_INCREMENT, SERIAL) is then moved after
+   // the ids in use, given by the sequence too.
+   protected void syncIdSequences(SQLConnection aConnection) throws Exception
+   {
+      IdBlockAllocator[] vAllIds = { iBoardPositionIds, iFuturePositionIds, iGameHeaderIds };
+      int[] vMaxIds = new int[vAllIds.length];
+      for (int x = 0; x < vAllIds.length; x++)
+      {
+         IdBlockAllocator vIds = vAllIds[x];
+         int vMaxId;
+         try (PreparedStatement vPs = aConnection.prepareStatement("SELECT MAX(id) FROM " + vIds.getTableName());
+               ResultSet vRs = vPs.executeQuery())
+         {
+            vMaxId = vRs.next() ? vRs.getInt(1) : 0;
+         }
+         try (Statement vStmt = aConnection.getConnection().createStatement())
+         {
+            vStmt.executeUpdate(getSqlCreateIdSequence(vIds.getSequenceName(), vMaxId + 1));
+            try (ResultSet vRs = vStmt.executeQuery(getSqlNextId(vIds.getSequenceName())))
+            {
+               if (vRs.next() && vRs.getLong(1) <= vMaxId)
+               {
+                  vStmt.executeUpdate(getSqlRestartIdSequence(vIds.getSequenceName(), vMaxId + 1));
+               }
+            }
+         }
+         vIds.reset();
+         vMaxIds[x] = vMaxId;
+      }
+      aConnection.getConnection().commit();
+      for (int x = 0; x < vAllIds.length; x++)
+      {
+         advanceIdentity(vAllIds[x].getTableName(), vMaxIds[x] + 1, aConnection);
+      }
+   }
+
+   // not every user can alter the tables: a failure is only logged
+   protected void advanceIdentity(String aTableName, int aNextId, SQLConnection aConnection)
+   {
+      try (Statement vStmt = aConnection.getConnection().createStatement())
+      {
+         vStmt.execute(getSqlAdvanceIdentity(aTableName, aNextId));
+         aConnection.getConnection().commit();
+      }
+      catch (Exception e)
+      {
+         ChessLogger.getInstance().log(aTableName + ": identity not advanced", e);
+         try
+         {
+            aConnection.getConnection().rollback();
+         }
+         catch (Exception ex)
+         {
+            ChessLogger.getInstance().log(ex);
+         }
+      }
+   }
+
+   public String getSqlAdvanceIdentity(String aTableName, int aNextId)
+   {
+      return "ALTER TABLE " + aTableName + " ALTER COLUMN id RESTART WITH " + aNextId;
+   }
+
+   // the IN lists are padded repeating their last value to a power of 2 (or BULK_ROWS), so that a few statements are
+   // prepared once and reused by the statement cache of the connection
+   protected static int getInListSize(int aRows)
+   {
+      return aRows <= 1 ? 1 : Math.min(BULK_ROWS, Integer.highestOneBit(aRows - 1) << 1);
+   }
+
+   protected static StringBuilder appendRows(StringBuilder aSql, int aRows, String aRow)
+   {
+      for (int x = 0; x < aRows; x++)
+      {
+         if (x > 0)
+         {
+            aSql.append(", ");
+         }
+         aSql.append(aRow);
+      }
+      return aSql;
+   }
+
    public String getSqlGameDetailUpdate()
    {
       return iSqlGameDetailUpdate;
@@ -3269,6 +3859,26 @@ public abstract class ANSIDBPersistence implements Persistable
       return iSqlExistsGameHeaderWithHash;
    }
 
+   public String getSqlGameHeaderHashes()
+   {
+      return iSqlGameHeaderHashes;
+   }
+
+   public String getSqlMostPlayedBoardPositions()
+   {
+      return iSqlMostPlayedBoardPositions;
+   }
+
+   public String getSqlBoardPositionMaxId()
+   {
+      return iSqlBoardPositionMaxId;
+   }
+
+   public String getSqlFuturePositionIdsByPositionFrom(int aRows)
+   {
+      return appendRows(new StringBuilder(iSqlFuturePositionIdsByPositionFrom), aRows, "?").append(')').toString();
+   }
+
    public String getSqlExistsGameHeaderForChessECO()
    {
       return iSqlExistsGameHeaderForChessECO;
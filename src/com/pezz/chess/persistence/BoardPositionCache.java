@@ -7,63 +7,12 @@
  */
 package com.pezz.chess.persistence;
 
-import java.math.BigInteger;
-import java.util.Comparator;
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
-
-public class BoardPositionCache extends ConcurrentHashMap<BigInteger, CacheEntry>
+public class BoardPositionCache extends PositionIdMap
 {
-   private static final long serialVersionUID = 8650266073293313966L;
-   private final int iMaxCachedObjects;
-   private ScheduledExecutorService iScheduler;
-   private ScheduledFuture<?> iCleanupTask;
-
+   // The positions are the most of the cached keys of a pgn import: they are kept in a PositionIdMap, without a
+   // BigInteger and a CacheEntry for every position.
    public BoardPositionCache(int aMaxCachedObjects)
    {
-      super();
-      this.iMaxCachedObjects = aMaxCachedObjects;
-   }
-
-   public void startCache()
-   {
-      iScheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().factory());
-      iCleanupTask = iScheduler.scheduleAtFixedRate(this::cleanUp, 3, 3, TimeUnit.SECONDS);
-   }
-
-   public void stopCache()
-   {
-      if (iCleanupTask != null)
-      {
-         iCleanupTask.cancel(true);
-      }
-      if (iScheduler != null)
-      {
-         iScheduler.shutdownNow();
-      }
-      clear();
-   }
-
-   private void cleanUp()
-   {
-      int vCurrentSize = size();
-      if (vCurrentSize <= iMaxCachedObjects)
-      {
-         return;
-      }
-      int vToRemove = vCurrentSize - iMaxCachedObjects;
-      List<Map.Entry<BigInteger, CacheEntry>> vEntriesByTimeAndAccessNr = entrySet().stream()
-            .sorted(Comparator.comparingLong((Map.Entry<BigInteger, CacheEntry> e) -> e.getValue().getInsertTime())
-                  .thenComparingInt(e -> e.getValue().getAccessCount()))
-            .limit(vToRemove).toList();
-      for (Map.Entry<BigInteger, CacheEntry> vEntryToRemove : vEntriesByTimeAndAccessNr)
-      {
-         remove(vEntryToRemove.getKey());
-      }
+      super("BoardPosition cache", aMaxCachedObjects);
    }
 }
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2025 Gabriele Pezzini
+ * License: Creative Commons Attribution-NonCommercial 4.0 International (CC BY-NC 4.0)
+ * Full License: https://creativecommons.org/licenses/by-nc/4.0/legalcode
+ * SPDX-License-Identifier: CC-BY-NC-4.0
+ * Non-commercial use only. For commercial licensing, contact the author.
+ */
+package com.pezz.chess.persistence;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+public class BoundedCache<K>
+{
+   // Cache of at most about aMaxEntries entries: the lookups read a ConcurrentHashMap without locking, the inserts
+   // and removals lock one of the SEGMENTS segments, each with a SlruPolicy over its nodes. The node of an entry is
+   // kept in its CacheEntry. When a segment is full the insert evicts the victim of its policy, no cleanup task runs.
+   private static final int SEGMENTS = 16;
+   private final ConcurrentHashMap<K, CacheEntry> iEntries = new ConcurrentHashMap<>();
+   private final Segment[] iSegments = new Segment[SEGMENTS];
+   private final CacheCounters iCounters;
+
+   public BoundedCache(String aName, int aMaxEntries)
+   {
+      iCounters = new CacheCounters(aName);
+      int vCapacity = Math.max(1, (aMaxEntries + SEGMENTS - 1) / SEGMENTS);
+      for (int i = 0; i < SEGMENTS; i++)
+      {
+         iSegments[i] = new Segment(vCapacity);
+      }
+   }
+
+   public CacheEntry get(K aKey)
+   {
+      CacheEntry vEntry = iEntries.get(aKey);
+      if (vEntry == null)
+      {
+         iCounters.miss();
+         return null;
+      }
+      iCounters.hit();
+      segmentFor(aKey).iPolicy.markAccessed(vEntry.getNode());
+      return vEntry;
+   }
+
+   // the entry already cached or null if aEntry has been cached
+   public CacheEntry putIfAbsent(K aKey, CacheEntry aEntry)
+   {
+      Segment vSegment = segmentFor(aKey);
+      synchronized (vSegment)
+      {
+         CacheEntry vEntry = iEntries.get(aKey);
+         if (vEntry != null)
+         {
+            return vEntry;
+         }
+         int vNode;
+         if (vSegment.iFreeCount > 0)
+         {
+            vNode = vSegment.iFree[--vSegment.iFreeCount];
+         }
+         else
+         {
+            vNode = vSegment.iPolicy.victim();
+            vSegment.iPolicy.remove(vNode);
+            iEntries.remove(vSegment.iKeys[vNode]);
+            iCounters.eviction();
+         }
+         aEntry.setNode(vNode);
+         vSegment.iKeys[vNode] = aKey;
+         vSegment.iPolicy.add(vNode);
+         iEntries.put(aKey, aEntry);
+         return null;
+      }
+   }
+
+   public CacheEntry remove(K aKey)
+   {
+      Segment vSegment = segmentFor(aKey);
+      synchronized (vSegment)
+      {
+         CacheEntry vEntry = iEntries.remove(aKey);
+         if (vEntry != null)
+         {
+            vSegment.release(vEntry.getNode());
+         }
+         return vEntry;
+      }
+   }
+
+   public void clear()
+   {
+      for (Segment vSegment : iSegments)
+      {
+         synchronized (vSegment)
+         {
+            for (int vNode = 0; vNode < vSegment.iKeys.length; vNode++)
+            {
+               if (vSegment.iKeys[vNode] != null)
+               {
+                  iEntries.remove(vSegment.iKeys[vNode]);
+               }
+            }
+            vSegment.clear();
+         }
+      }
+   }
+
+   public int size()
+   {
+      return iEntries.size();
+   }
+
+   public CacheCounters getCounters()
+   {
+      return iCounters;
+   }
+
+   public String getSummary()
+   {
+      return iCounters.getSummary(size());
+   }
+
+   private Segment segmentFor(K aKey)
+   {
+      return iSegments[(aKey.hashCode() * 0x9E3779B9) >>> 28];
+   }
+
+   private static class Segment
+   {
+      private final SlruPolicy iPolicy;
+      private final Object[] iKeys;
+      private final int[] iFree;
+      private int iFreeCount;
+
+      private Segment(int aCapacity)
+      {
+         iPolicy = new SlruPolicy(aCapacity);
+         iKeys = new Object[aCapacity];
+         iFree = new int[aCapacity];
+         clear();
+      }
+
+      private void release(int aNode)
+      {
+         iPolicy.remove(aNode);
+         iKeys[aNode] = null;
+         iFree[iFreeCount++] = aNode;
+      }
+
+      private void clear()
+      {
+         iPolicy.clear();
+         for (int i = 0; i < iKeys.length; i++)
+         {
+            iKeys[i] = null;
+            // nodes taken from the start
+            iFree[i] = iKeys.length - 1 - i;
+         }
+         iFreeCount = iKeys.length;
+      }
+   }
+}
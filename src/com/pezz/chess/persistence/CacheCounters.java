@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2025 Gabriele Pezzini
+ * License: Creative Commons Attribution-NonCommercial 4.0 International (CC BY-NC 4.0)
+ * Full License: https://creativecommons.org/licenses/by-nc/4.0/legalcode
+ * SPDX-License-Identifier: CC-BY-NC-4.0
+ * Non-commercial use only. For commercial licensing, contact the author.
+ */
+package com.pezz.chess.persistence;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class CacheCounters
+{
+   private final String iName;
+   private final LongAdder iHits = new LongAdder();
+   private final LongAdder iMisses = new LongAdder();
+   private final LongAdder iEvictions = new LongAdder();
+
+   public CacheCounters(String aName)
+   {
+      iName = aName;
+   }
+
+   public void hit()
+   {
+      iHits.increment();
+   }
+
+   public void miss()
+   {
+      iMisses.increment();
+   }
+
+   public void eviction()
+   {
+      iEvictions.increment();
+   }
+
+   public long getHits()
+   {
+      return iHits.sum();
+   }
+
+   public long getMisses()
+   {
+      return iMisses.sum();
+   }
+
+   public long getEvictions()
+   {
+      return iEvictions.sum();
+   }
+
+   public void reset()
+   {
+      iHits.reset();
+      iMisses.reset();
+      iEvictions.reset();
+   }
+
+   public String getSummary(int aSize)
+   {
+      long vHits = iHits.sum();
+      long vLookups = vHits + iMisses.sum();
+      return iName + ": " + aSize + " entries, hits " + vHits + ", misses " + (vLookups - vHits) + ", hit ratio "
+            + (vLookups == 0 ? 0 : vHits * 100 / vLookups) + "%, evictions " + iEvictions.sum();
+   }
+}
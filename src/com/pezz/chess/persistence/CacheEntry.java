@@ -8,25 +8,15 @@
  */
 package com.pezz.chess.persistence;
 
-import java.util.concurrent.atomic.AtomicInteger;
-
 public class CacheEntry
 {
    private int iId;
-   private long iInsertTime;
-   private AtomicInteger iAccessCount;
-   public static CacheEntry iLoadingEntry = new CacheEntry(-1);
+   // node of the entry in the policy of its BoundedCache
+   private volatile int iNode = -1;
 
    public CacheEntry(int aId)
    {
       this.iId = aId;
-      this.iInsertTime = System.currentTimeMillis();
-      this.iAccessCount = new AtomicInteger(0);
-   }
-
-   public long getInsertTime()
-   {
-      return iInsertTime;
    }
 
    public int getId()
@@ -34,13 +24,13 @@ public class CacheEntry
       return iId;
    }
 
-   public int getAccessCount()
+   public int getNode()
    {
-      return iAccessCount.get();
+      return iNode;
    }
 
-   public int incrementAccess()
+   void setNode(int aNode)
    {
-      return iAccessCount.incrementAndGet();
+      iNode = aNode;
    }
 }
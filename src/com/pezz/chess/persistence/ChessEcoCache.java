@@ -7,62 +7,10 @@
  */
 package com.pezz.chess.persistence;
 
-import java.util.Comparator;
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
-
-public class ChessEcoCache extends ConcurrentHashMap<String, CacheEntry>
+public class ChessEcoCache extends BoundedCache<String>
 {
-   private static final long serialVersionUID = 830393148960415397L;
-   private int iMaxCachedObjects;
-   private ScheduledExecutorService iScheduler;
-   private ScheduledFuture<?> iCleanupTask;
-
    public ChessEcoCache(int aMaxCachedObjects)
    {
-      super();
-      iMaxCachedObjects = aMaxCachedObjects;
-   }
-
-   public void startCache()
-   {
-      iScheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().factory());
-      iCleanupTask = iScheduler.scheduleAtFixedRate(this::cleanUp, 3, 3, TimeUnit.SECONDS);
-   }
-
-   public void stopCache()
-   {
-      if (iCleanupTask != null)
-      {
-         iCleanupTask.cancel(true);
-      }
-      if (iScheduler != null)
-      {
-         iScheduler.shutdownNow();
-      }
-      clear();
-   }
-
-   private void cleanUp()
-   {
-      int vCurrentSize = size();
-      if (vCurrentSize <= iMaxCachedObjects)
-      {
-         return;
-      }
-      int vToRemove = vCurrentSize - iMaxCachedObjects;
-      List<Map.Entry<String, CacheEntry>> vEntriesByTimeAndAccessNr = entrySet().stream()
-            .sorted(Comparator.comparingLong((Map.Entry<String, CacheEntry> e) -> e.getValue().getInsertTime())
-                  .thenComparingInt(e -> e.getValue().getAccessCount()))
-            .limit(vToRemove).toList();
-      for (Map.Entry<String, CacheEntry> vEntryToRemove : vEntriesByTimeAndAccessNr)
-      {
-         remove(vEntryToRemove.getKey());
-      }
+      super("ChessEco cache", aMaxCachedObjects);
    }
 }
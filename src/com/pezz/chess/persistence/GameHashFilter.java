@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2025 Gabriele Pezzini
+ * License: Creative Commons Attribution-NonCommercial 4.0 International (CC BY-NC 4.0)
+ * Full License: https://creativecommons.org/licenses/by-nc/4.0/legalcode
+ * SPDX-License-Identifier: CC-BY-NC-4.0
+ * Non-commercial use only. For commercial licensing, contact the author.
+ */
+package com.pezz.chess.persistence;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Arrays;
+
+import com.pezz.util.itn.SQLConnection;
+
+public class GameHashFilter
+{
+   // Hashes of the games already in gameheader, loaded when a pgn import begins so that the games already saved are
+   // discarded before being checked and written. Every hash is decoded from base 62 to its 128 bits and kept in two
+   // parallel arrays sorted as unsigned numbers (16 bytes per game, no object per game). A game is in the filter only
+   // if its whole hash is, so there are no false positives; hashes that are not base 62 are not loaded, those games
+   // are still found by the query on gameheader.
+   private static final String ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+   private static final int INITIAL_SIZE = 1 << 20;
+   private long[] iHigh = new long[0];
+   private long[] iLow = new long[0];
+   private int iSize;
+   private volatile boolean iLoaded;
+
+   // aMaxGames limits the memory used: when gameheader has more rows the filter is not used
+   public void load(String aSql, int aMaxGames, SQLConnection aConnection) throws Exception
+   {
+      clear();
+      if (aMaxGames <= 0)
+      {
+         return;
+      }
+      long[] vHigh = new long[INITIAL_SIZE];
+      long[] vLow = new long[INITIAL_SIZE];
+      int vSize = 0;
+      long[] vValue = new long[2];
+      try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(aSql))
+      {
+         vPs.setFetchSize(10_000);
+         try (ResultSet vRS = vPs.executeQuery())
+         {
+            while (vRS.next())
+            {
+               if (!decode(vRS.getString(1), vValue))
+               {
+                  continue;
+               }
+               if (vSize == aMaxGames)
+               {
+                  return;
+               }
+               if (vSize == vHigh.length)
+               {
+                  int vNewLength = (int) Math.min((long) vSize * 2, aMaxGames);
+                  vHigh = Arrays.copyOf(vHigh, vNewLength);
+                  vLow = Arrays.copyOf(vLow, vNewLength);
+               }
+               vHigh[vSize] = vValue[0];
+               vLow[vSize] = vValue[1];
+               vSize++;
+            }
+         }
+      }
+      sort(vHigh, vLow, 0, vSize - 1);
+      iHigh = vHigh;
+      iLow = vLow;
+      iSize = vSize;
+      iLoaded = true;
+   }
+
+   public void clear()
+   {
+      iLoaded = false;
+      iHigh = new long[0];
+      iLow = new long[0];
+      iSize = 0;
+   }
+
+   public boolean isLoaded()
+   {
+      return iLoaded;
+   }
+
+   public int size()
+   {
+      return iSize;
+   }
+
+   public boolean contains(String aGameHash)
+   {
+      if (!iLoaded || aGameHash == null)
+      {
+         return false;
+      }
+      long[] vValue = new long[2];
+      if (!decode(aGameHash, vValue))
+      {
+         return false;
+      }
+      int vLow = 0;
+      int vHigh = iSize - 1;
+      while (vLow <= vHigh)
+      {
+         int vMid = (vLow + vHigh) >>> 1;
+         int vCmp = compare(iHigh[vMid], iLow[vMid], vValue[0], vValue[1]);
+         if (vCmp < 0)
+         {
+            vLow = vMid + 1;
+         }
+         else if (vCmp > 0)
+         {
+            vHigh = vMid - 1;
+         }
+         else
+         {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   // aValue[0] and aValue[1] receive the high and the low 64 bits, false if aHash is not a 128 bits base 62 number
+   private static boolean decode(String aHash, long[] aValue)
+   {
+      if (aHash == null || aHash.isEmpty() || aHash.length() > 22)
+      {
+         return false;
+      }
+      long vHigh = 0;
+      long vLow = 0;
+      for (int x = 0; x < aHash.length(); x++)
+      {
+         int vDigit = ALPHABET.indexOf(aHash.charAt(x));
+         if (vDigit < 0)
+         {
+            return false;
+         }
+         // value = value * 62 + digit on 128 bits, false when the value does not fit
+         if (Math.unsignedMultiplyHigh(vHigh, 62) != 0)
+         {
+            return false;
+         }
+         long vNewHigh = vHigh * 62 + Math.unsignedMultiplyHigh(vLow, 62);
+         if (Long.compareUnsigned(vNewHigh, vHigh * 62) < 0)
+         {
+            return false;
+         }
+         long vNewLow = vLow * 62 + vDigit;
+         if (Long.compareUnsigned(vNewLow, vLow * 62) < 0)
+         {
+            if (vNewHigh == -1L)
+            {
+               return false;
+            }
+            vNewHigh++;
+         }
+         vHigh = vNewHigh;
+         vLow = vNewLow;
+      }
+      aValue[0] = vHigh;
+      aValue[1] = vLow;
+      return true;
+   }
+
+   private static int compare(long aHigh1, long aLow1, long aHigh2, long aLow2)
+   {
+      int vCmp = Long.compareUnsigned(aHigh1, aHigh2);
+      return vCmp != 0 ? vCmp : Long.compareUnsigned(aLow1, aLow2);
+   }
+
+   // quicksort of the two parallel arrays, recursion only on the smaller part
+   private static void sort(long[] aHigh, long[] aLow, int aFrom, int aTo)
+   {
+      while (aTo - aFrom > 16)
+      {
+         int vMid = (aFrom + aTo) >>> 1;
+         long vPivotHigh = aHigh[vMid];
+         long vPivotLow = aLow[vMid];
+         int x = aFrom;
+         int y = aTo;
+         while (x <= y)
+         {
+            while (compare(aHigh[x], aLow[x], vPivotHigh, vPivotLow) < 0)
+            {
+               x++;
+            }
+            while (compare(aHigh[y], aLow[y], vPivotHigh, vPivotLow) > 0)
+            {
+               y--;
+            }
+            if (x <= y)
+            {
+               swap(aHigh, aLow, x++, y--);
+            }
+         }
+         if (y - aFrom < aTo - x)
+         {
+            sort(aHigh, aLow, aFrom, y);
+            aFrom = x;
+         }
+         else
+         {
+            sort(aHigh, aLow, x, aTo);
+            aTo = y;
+         }
+      }
+      for (int x = aFrom + 1; x <= aTo; x++)
+      {
+         for (int y = x; y > aFrom && compare(aHigh[y - 1], aLow[y - 1], aHigh[y], aLow[y]) > 0; y--)
+         {
+            swap(aHigh, aLow, y - 1, y);
+         }
+      }
+   }
+
+   private static void swap(long[] aHigh, long[] aLow, int aIdx1, int aIdx2)
+   {
+      long vTmp = aHigh[aIdx1];
+      aHigh[aIdx1] = aHigh[aIdx2];
+      aHigh[aIdx2] = vTmp;
+      vTmp = aLow[aIdx1];
+      aLow[aIdx1] = aLow[aIdx2];
+      aLow[aIdx2] = vTmp;
+   }
+}
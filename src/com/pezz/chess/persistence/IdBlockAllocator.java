@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2025 Gabriele Pezzini
+ * License: Creative Commons Attribution-NonCommercial 4.0 International (CC BY-NC 4.0)
+ * Full License: https://creativecommons.org/licenses/by-nc/4.0/legalcode
+ * SPDX-License-Identifier: CC-BY-NC-4.0
+ * Non-commercial use only. For commercial licensing, contact the author.
+ */
+package com.pezz.chess.persistence;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import com.pezz.util.itn.SQLConnection;
+
+public class IdBlockAllocator
+{
+   // Hi/lo ids for a table: the database sequence <table>_ids is incremented by BLOCK_SIZE, every value read from it
+   // reserves the BLOCK_SIZE ids that follow, and every thread hands out the ids of its own block without going to the
+   // server. Ids of a block not used up (a thread that ends, a rollback) are simply lost.
+   public static final int BLOCK_SIZE = 1000;
+   private String iTableName;
+   private volatile int iGeneration;
+   private ThreadLocal<long[]> iBlock = ThreadLocal.withInitial(() -> new long[] { -1, 0, 0 });
+
+   public IdBlockAllocator(String aTableName)
+   {
+      iTableName = aTableName;
+   }
+
+   public String getTableName()
+   {
+      return iTableName;
+   }
+
+   public String getSequenceName()
+   {
+      return iTableName + "_ids";
+   }
+
+   // aSql reads the next value of the sequence
+   public int nextId(String aSql, SQLConnection aConnection) throws Exception
+   {
+      // [0] generation of the block, [1] next id, [2] first id after the block
+      long[] vBlock = iBlock.get();
+      if (vBlock[0] != iGeneration || vBlock[1] >= vBlock[2])
+      {
+         try (PreparedStatement vPs = aConnection.prepareStatement(aSql);
+               ResultSet vRs = vPs.executeQuery())
+         {
+            if (!vRs.next())
+            {
+               throw new Exception(iTableName + ": no value from sequence " + getSequenceName());
+            }
+            vBlock[0] = iGeneration;
+            vBlock[1] = vRs.getLong(1);
+            vBlock[2] = vBlock[1] + BLOCK_SIZE;
+         }
+      }
+      if (vBlock[1] > Integer.MAX_VALUE)
+      {
+         throw new Exception(iTableName + ": ids exhausted");
+      }
+      return (int) vBlock[1]++;
+   }
+
+   // the blocks already reserved are not used any more (new connection, sequence restarted)
+   public void reset()
+   {
+      iGeneration++;
+   }
+}
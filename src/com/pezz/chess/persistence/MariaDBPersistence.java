@@ -67,7 +67,7 @@ public class MariaDBPersistence extends ANSIDBPersistence
    {
       StringBuilder vSql = new StringBuilder(iSqlExistsGameDetailFuturePositionInOtherGames);
       vSql.append(", ").append(1);
-      try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(vSql.toString()))
+      try (PreparedStatement vPs = aConnection.prepareStatement(vSql.toString()))
       {
          vPs.setInt(1, aFuturePositionId);
          vPs.setInt(2, aGameHeaderId);
@@ -253,7 +253,7 @@ public class MariaDBPersistence extends ANSIDBPersistence
             .append('?').append(" OR ").append(" blackplayerid = ").append('?').append(')').append(" AND ")
             .append(" id <> ").append('?');
       vSql.append(" LIMIT 1");
-      try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(vSql.toString()))
+      try (PreparedStatement vPs = aConnection.prepareStatement(vSql.toString()))
       {
          vPs.setInt(1, aPlayerId);
          vPs.setInt(2, aPlayerId);
@@ -293,46 +293,30 @@ public class MariaDBPersistence extends ANSIDBPersistence
             """;
    }
 
+   // A duplicate of the unique key leaves the row as it is, any other error is raised (INSERT IGNORE turned them into
+   // warnings). The driver counts the duplicates as found rows: the ids are always read back.
    @Override
-   public String getSqlBoardPositionInsert()
+   public String getSqlBoardPositionBulkInsert(int aRows)
    {
-      return """
-             INSERT INTO boardposition
-             (
-                positionuid,
-                winwhite,
-                numdraw,
-                winblack
-             )
-             VALUES
-             (
-               ?,
-               ?,
-               ?,
-               ?
-             )
-             ON DUPLICATE KEY UPDATE id=LAST_INSERT_ID(id)
-            """;
+      return super.getSqlBoardPositionBulkInsert(aRows) + " ON DUPLICATE KEY UPDATE id = id";
    }
 
    @Override
-   public String getSqlFuturePositionInsert()
+   public String getSqlFuturePositionBulkInsert(int aRows)
    {
-      return """
-            INSERT INTO futureposition
-            (
-               positionfrom,
-               movestr,
-               positionto
-            )
-            VALUES
-            (
-               ?,
-               ?,
-               ?
-            )
-            ON DUPLICATE KEY UPDATE id=LAST_INSERT_ID(id)
-            """;
+      return super.getSqlFuturePositionBulkInsert(aRows) + " ON DUPLICATE KEY UPDATE id = id";
+   }
+
+   @Override
+   protected boolean isBulkInsertCountExact()
+   {
+      return false;
+   }
+
+   @Override
+   public String getSqlAdvanceIdentity(String aTableName, int aNextId)
+   {
+      return "ALTER TABLE " + aTableName + " AUTO_INCREMENT = " + aNextId;
    }
 
    @Override
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2025 Gabriele Pezzini
+ * License: Creative Commons Attribution-NonCommercial 4.0 International (CC BY-NC 4.0)
+ * Full License: https://creativecommons.org/licenses/by-nc/4.0/legalcode
+ * SPDX-License-Identifier: CC-BY-NC-4.0
+ * Non-commercial use only. For commercial licensing, contact the author.
+ */
+package com.pezz.chess.persistence;
+
+import java.util.HashMap;
+import java.util.function.BiConsumer;
+
+public class PendingIds<K>
+{
+   // The ids inserted by the transaction of a thread. They are not put in the shared caches until the transaction
+   // commits: another writer would commit rows referencing them, and a rollback would leave those rows dangling. The
+   // ids inserted after the last savepoint are kept apart, a rollback to the savepoint drops only them.
+   private HashMap<K, Integer> iIds = new HashMap<>();
+   private HashMap<K, Integer> iSavepointIds = new HashMap<>();
+
+   public Integer get(K aKey)
+   {
+      Integer vId = iSavepointIds.get(aKey);
+      return vId != null ? vId : iIds.get(aKey);
+   }
+
+   public void put(K aKey, int aId)
+   {
+      iSavepointIds.put(aKey, aId);
+   }
+
+   public void savepoint()
+   {
+      iIds.putAll(iSavepointIds);
+      iSavepointIds.clear();
+   }
+
+   public void rollbackToSavepoint()
+   {
+      iSavepointIds.clear();
+   }
+
+   // the transaction is committed: aPublisher puts the ids in the shared cache
+   public void commit(BiConsumer<K, Integer> aPublisher)
+   {
+      savepoint();
+      iIds.forEach(aPublisher);
+      rollback();
+   }
+
+   public void rollback()
+   {
+      iIds.clear();
+      iSavepointIds.clear();
+   }
+}
@@ -44,10 +44,24 @@ public interface Persistable
          HashMap<BigInteger, PositionNoteData> aPositionNotes, boolean aIsPgn, SQLConnection aConnection)
          throws Exception;
 
+   // the games saved, see ANSIDBPersistence.persistPgnGames
+   public boolean[] persistPgnGames(List<PgnGameRecord> aGames, SQLConnection aConnection) throws Exception;
+
+   // the games that persistPgnGames can write in a transaction
+   public int getMaxPgnGamesPerTransaction();
+
    public void beginSaveGames(SQLConnection aConnection) throws Exception;
 
+   public void beginSaveGames(SQLConnection aConnection, boolean aIsPgn) throws Exception;
+
+   public boolean isKnownGameHash(String aGameHash);
+
    public void endSaveGames(SQLConnection aConnection) throws Exception;
 
+   public void commitGames(SQLConnection aConnection) throws Exception;
+
+   public void rollbackGames(SQLConnection aConnection) throws Exception;
+
    public void createDefaultData(SQLConnection aConnection) throws Exception;
 
    public PlayerBean insertPlayer(PlayerBean aPlayerBean, SQLConnection aConnection) throws Exception;
@@ -249,9 +263,9 @@ public interface Persistable
 
    public String getSqlPlayerInsert();
 
-   public String getSqlBoardPositionInsert();
+   public String getSqlBoardPositionBulkInsert(int aRows);
 
-   public String getSqlFuturePositionInsert();
+   public String getSqlFuturePositionBulkInsert(int aRows);
 
    public String getSqlChessEcoInsert();
 
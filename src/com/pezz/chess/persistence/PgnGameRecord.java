@@ -0,0 +1,18 @@
+/*
+ * Copyright (c) 2025 Gabriele Pezzini
+ * License: Creative Commons Attribution-NonCommercial 4.0 International (CC BY-NC 4.0)
+ * Full License: https://creativecommons.org/licenses/by-nc/4.0/legalcode
+ * SPDX-License-Identifier: CC-BY-NC-4.0
+ * Non-commercial use only. For commercial licensing, contact the author.
+ */
+package com.pezz.chess.persistence;
+
+import java.math.BigInteger;
+
+import com.pezz.chess.uidata.ChessBoardHeaderData;
+
+// a game of a pgn import replayed by a ReplayBoard: positions holds three longs for every move, see PositionCodec
+public record PgnGameRecord(ChessBoardHeaderData headerData, BigInteger initialPosition, int[] moveValues,
+      long[] positions)
+{
+}
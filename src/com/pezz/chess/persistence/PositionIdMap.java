@@ -0,0 +1,329 @@
+/*
+ * Copyright (c) 2025 Gabriele Pezzini
+ * License: Creative Commons Attribution-NonCommercial 4.0 International (CC BY-NC 4.0)
+ * Full License: https://creativecommons.org/licenses/by-nc/4.0/legalcode
+ * SPDX-License-Identifier: CC-BY-NC-4.0
+ * Non-commercial use only. For commercial licensing, contact the author.
+ */
+package com.pezz.chess.persistence;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+import com.pezz.chess.board.PositionCodec;
+
+public class PositionIdMap
+{
+   // Ids of the board positions keyed by the 192 bits of the position packed in three longs (see PositionCodec). The
+   // map is split in SEGMENTS segments, every segment is an open addressing table with linear probing in primitive
+   // arrays allocated once: no object per entry and 3 * 8 + 4 bytes per slot plus the 10 of the policy. The readers
+   // probe without locking (optimistic read of the StampedLock of the segment, repeated under the read lock if a writer
+   // got in), the writers lock only their segment. An id 0 marks an empty slot: the ids of the positions start from 1.
+   // When a segment is full the insert evicts the victim of the SlruPolicy of the segment, whose nodes are the slots.
+   private static final int SEGMENTS = 64;
+   private static final float LOAD_FACTOR = 0.75f;
+   private final Segment[] iSegments = new Segment[SEGMENTS];
+   private final int iMaxEntries;
+   private final CacheCounters iCounters;
+
+   public PositionIdMap(String aName, int aMaxEntries)
+   {
+      iMaxEntries = aMaxEntries;
+      iCounters = new CacheCounters(aName);
+      // the positions are not spread evenly, a segment can hold some more than its share
+      int vMaxPerSegment = (int) Math.min(Integer.MAX_VALUE / 4, (aMaxEntries * 1.1 + 16) / SEGMENTS + 16);
+      int vCapacity = (int) (vMaxPerSegment / LOAD_FACTOR) + 1;
+      for (int i = 0; i < SEGMENTS; i++)
+      {
+         iSegments[i] = new Segment(vCapacity, vMaxPerSegment, iCounters);
+      }
+   }
+
+   public int getMaxEntries()
+   {
+      return iMaxEntries;
+   }
+
+   public CacheCounters getCounters()
+   {
+      return iCounters;
+   }
+
+   public String getSummary()
+   {
+      return iCounters.getSummary(size());
+   }
+
+   // -1 if the position is not in the map
+   public int get(long aKey0, long aKey1, long aKey2)
+   {
+      long vHash = hash(aKey0, aKey1, aKey2);
+      return segmentFor(vHash).get(aKey0, aKey1, aKey2, (int) vHash);
+   }
+
+   public int get(BigInteger aPosition)
+   {
+      long[] vKey = PositionCodec.fromBigInteger(aPosition);
+      return get(vKey[0], vKey[1], vKey[2]);
+   }
+
+   // the id already in the map or -1 if aId has been put
+   public int putIfAbsent(long aKey0, long aKey1, long aKey2, int aId)
+   {
+      if (aId <= 0)
+      {
+         throw new IllegalArgumentException("PositionIdMap: invalid id " + aId);
+      }
+      long vHash = hash(aKey0, aKey1, aKey2);
+      return segmentFor(vHash).putIfAbsent(aKey0, aKey1, aKey2, (int) vHash, aId);
+   }
+
+   public int putIfAbsent(BigInteger aPosition, int aId)
+   {
+      long[] vKey = PositionCodec.fromBigInteger(aPosition);
+      return putIfAbsent(vKey[0], vKey[1], vKey[2], aId);
+   }
+
+   public boolean remove(long aKey0, long aKey1, long aKey2)
+   {
+      long vHash = hash(aKey0, aKey1, aKey2);
+      return segmentFor(vHash).remove(aKey0, aKey1, aKey2, (int) vHash);
+   }
+
+   public boolean remove(BigInteger aPosition)
+   {
+      long[] vKey = PositionCodec.fromBigInteger(aPosition);
+      return remove(vKey[0], vKey[1], vKey[2]);
+   }
+
+   public int size()
+   {
+      int vSize = 0;
+      for (Segment vSegment : iSegments)
+      {
+         vSize += vSegment.iSize;
+      }
+      return vSize;
+   }
+
+   public void clear()
+   {
+      for (Segment vSegment : iSegments)
+      {
+         vSegment.clear();
+      }
+   }
+
+   // bytes allocated by the tables of the segments
+   public long getTableBytes()
+   {
+      long vBytes = 0;
+      for (Segment vSegment : iSegments)
+      {
+         // keys, id, policy links, queue and referenced flag
+         vBytes += (long) vSegment.iIds.length * (3 * Long.BYTES + 3 * Integer.BYTES + 2);
+      }
+      return vBytes;
+   }
+
+   private Segment segmentFor(long aHash)
+   {
+      return iSegments[(int) (aHash >>> 58)];
+   }
+
+   private static long hash(long aKey0, long aKey1, long aKey2)
+   {
+      long vHash = aKey0 * 0x9E3779B97F4A7C15L;
+      vHash = (vHash ^ aKey1) * 0xC2B2AE3D27D4EB4FL;
+      vHash = (vHash ^ aKey2) * 0x165667B19E3779F9L;
+      return vHash ^ (vHash >>> 29);
+   }
+
+   private static class Segment
+   {
+      private final StampedLock iLock = new StampedLock();
+      private final long[] iKeys;
+      private final int[] iIds;
+      private final SlruPolicy iPolicy;
+      private final CacheCounters iCounters;
+      private final int iCapacity;
+      private final int iMaxSize;
+      private volatile int iSize;
+
+      private Segment(int aCapacity, int aMaxSize, CacheCounters aCounters)
+      {
+         iKeys = new long[aCapacity * 3];
+         iIds = new int[aCapacity];
+         iPolicy = new SlruPolicy(aCapacity, aMaxSize);
+         iCounters = aCounters;
+         iCapacity = aCapacity;
+         iMaxSize = aMaxSize;
+      }
+
+      private int get(long aKey0, long aKey1, long aKey2, int aHash)
+      {
+         long vStamp = iLock.tryOptimisticRead();
+         int vSlot = find(aKey0, aKey1, aKey2, aHash);
+         int vId = vSlot < 0 ? -1 : iIds[vSlot];
+         if (!iLock.validate(vStamp))
+         {
+            vStamp = iLock.readLock();
+            try
+            {
+               vSlot = find(aKey0, aKey1, aKey2, aHash);
+               vId = vSlot < 0 ? -1 : iIds[vSlot];
+            }
+            finally
+            {
+               iLock.unlockRead(vStamp);
+            }
+         }
+         if (vSlot < 0)
+         {
+            iCounters.miss();
+         }
+         else
+         {
+            iCounters.hit();
+            iPolicy.markAccessed(vSlot);
+         }
+         return vId;
+      }
+
+      // slot of the key or -1; with a concurrent writer the result is checked by the caller (validate)
+      private int find(long aKey0, long aKey1, long aKey2, int aHash)
+      {
+         int vSlot = home(aHash);
+         for (int vProbes = 0; vProbes < iCapacity; vProbes++)
+         {
+            if (iIds[vSlot] == 0)
+            {
+               return -1;
+            }
+            int vIdx = vSlot * 3;
+            if (iKeys[vIdx] == aKey0 && iKeys[vIdx + 1] == aKey1 && iKeys[vIdx + 2] == aKey2)
+            {
+               return vSlot;
+            }
+            vSlot = next(vSlot);
+         }
+         return -1;
+      }
+
+      private int putIfAbsent(long aKey0, long aKey1, long aKey2, int aHash, int aId)
+      {
+         long vStamp = iLock.writeLock();
+         try
+         {
+            int vSlot = find(aKey0, aKey1, aKey2, aHash);
+            if (vSlot >= 0)
+            {
+               return iIds[vSlot];
+            }
+            if (iSize >= iMaxSize)
+            {
+               deleteSlot(iPolicy.victim());
+               iCounters.eviction();
+            }
+            insert(aKey0, aKey1, aKey2, aHash, aId);
+            return -1;
+         }
+         finally
+         {
+            iLock.unlockWrite(vStamp);
+         }
+      }
+
+      private void insert(long aKey0, long aKey1, long aKey2, int aHash, int aId)
+      {
+         int vSlot = home(aHash);
+         while (iIds[vSlot] != 0)
+         {
+            vSlot = next(vSlot);
+         }
+         int vIdx = vSlot * 3;
+         iKeys[vIdx] = aKey0;
+         iKeys[vIdx + 1] = aKey1;
+         iKeys[vIdx + 2] = aKey2;
+         iIds[vSlot] = aId;
+         iPolicy.add(vSlot);
+         iSize++;
+      }
+
+      private boolean remove(long aKey0, long aKey1, long aKey2, int aHash)
+      {
+         long vStamp = iLock.writeLock();
+         try
+         {
+            int vSlot = find(aKey0, aKey1, aKey2, aHash);
+            if (vSlot < 0)
+            {
+               return false;
+            }
+            deleteSlot(vSlot);
+            return true;
+         }
+         finally
+         {
+            iLock.unlockWrite(vStamp);
+         }
+      }
+
+      // backward shift deletion: the entries that follow in the same run are moved back so that no probe sequence
+      // is broken and no tombstone is needed
+      private void deleteSlot(int aSlot)
+      {
+         iPolicy.remove(aSlot);
+         int vHole = aSlot;
+         int vSlot = next(aSlot);
+         while (iIds[vSlot] != 0)
+         {
+            int vIdx = vSlot * 3;
+            int vHome = home((int) hash(iKeys[vIdx], iKeys[vIdx + 1], iKeys[vIdx + 2]));
+            // the entry can fill the hole if its home is not in (hole, slot]
+            if (distance(vHome, vSlot) >= distance(vHole, vSlot))
+            {
+               System.arraycopy(iKeys, vIdx, iKeys, vHole * 3, 3);
+               iIds[vHole] = iIds[vSlot];
+               iPolicy.move(vSlot, vHole);
+               vHole = vSlot;
+            }
+            vSlot = next(vSlot);
+         }
+         iIds[vHole] = 0;
+         iSize--;
+      }
+
+      // the low bits of the hash scaled to the capacity (the high bits choose the segment)
+      private int home(int aHash)
+      {
+         return (int) (((aHash & 0xFFFFFFFFL) * iCapacity) >>> 32);
+      }
+
+      private int next(int aSlot)
+      {
+         return aSlot + 1 == iCapacity ? 0 : aSlot + 1;
+      }
+
+      private int distance(int aFrom, int aTo)
+      {
+         return aTo >= aFrom ? aTo - aFrom : aTo + iCapacity - aFrom;
+      }
+
+      private void clear()
+      {
+         long vStamp = iLock.writeLock();
+         try
+         {
+            Arrays.fill(iIds, 0);
+            iPolicy.clear();
+            iSize = 0;
+         }
+         finally
+         {
+            iLock.unlockWrite(vStamp);
+         }
+      }
+   }
+}
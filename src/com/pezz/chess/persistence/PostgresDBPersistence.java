@@ -68,7 +68,7 @@ public class PostgresDBPersistence extends ANSIDBPersistence
    {
       StringBuilder vSql = new StringBuilder(iSqlExistsGameDetailFuturePositionInOtherGames);
       vSql.append(1).append(" OFFSET(").append(0).append(")");
-      try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(vSql.toString()))
+      try (PreparedStatement vPs = aConnection.prepareStatement(vSql.toString()))
       {
          vPs.setInt(1, aFuturePositionId);
          vPs.setInt(2, aGameHeaderId);
@@ -254,7 +254,7 @@ public class PostgresDBPersistence extends ANSIDBPersistence
             .append('?').append(" OR ").append(" blackplayerid = ").append('?').append(')').append(" AND ")
             .append(" id <> ").append('?');
       vSql.append(" LIMIT ").append(1).append(" OFFSET(").append(0).append(")");
-      try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(vSql.toString()))
+      try (PreparedStatement vPs = aConnection.prepareStatement(vSql.toString()))
       {
          vPs.setInt(1, aPlayerId);
          vPs.setInt(2, aPlayerId);
@@ -266,50 +266,36 @@ public class PostgresDBPersistence extends ANSIDBPersistence
       }
    }
 
+   // every game of persistPgnGames is written under a savepoint, a subtransaction: beyond the 64 subtransactions
+   // cached by every backend, released or not, postgres looks them up in pg_subtrans and all the sessions slow down
    @Override
-   public String getSqlBoardPositionInsert()
+   public int getMaxPgnGamesPerTransaction()
    {
-      return """
-             INSERT INTO boardposition
-             (
-                positionuid,
-                winwhite,
-                numdraw,
-                winblack
-             )
-             VALUES
-             (
-               ?,
-               ?,
-               ?,
-               ?
-             )
-            ON CONFLICT (positionuid)
-            DO UPDATE SET id = boardposition.id
-            RETURNING id;
-            """;
+      return 60;
    }
 
    @Override
-   public String getSqlFuturePositionInsert()
+   public String getSqlBoardPositionBulkInsert(int aRows)
    {
-      return """
-            INSERT INTO futureposition
-            (
-               positionfrom,
-               movestr,
-               positionto
-            )
-            VALUES
-            (
-               ?,
-               ?,
-               ?
-            )
-            ON CONFLICT (positionfrom, movestr)
-            DO UPDATE SET id = futureposition.id
-            RETURNING id;
-            """;
+      return super.getSqlBoardPositionBulkInsert(aRows) + " ON CONFLICT (positionuid) DO NOTHING";
+   }
+
+   @Override
+   public String getSqlFuturePositionBulkInsert(int aRows)
+   {
+      return super.getSqlFuturePositionBulkInsert(aRows) + " ON CONFLICT (positionfrom, movestr) DO NOTHING";
+   }
+
+   @Override
+   public String getSqlNextId(String aSequenceName)
+   {
+      return "SELECT nextval('" + aSequenceName + "')";
+   }
+
+   @Override
+   public String getSqlAdvanceIdentity(String aTableName, int aNextId)
+   {
+      return "SELECT setval(pg_get_serial_sequence('" + aTableName + "', 'id'), " + aNextId + ", false)";
    }
 
    @Override
@@ -381,7 +367,7 @@ public class PostgresDBPersistence extends ANSIDBPersistence
    @Override
    public BoardPositionBean getBoardPositionByUID(BigInteger aPositionUID, SQLConnection aConnection) throws Exception
    {
-      try (PreparedStatement vPs = aConnection.getConnection().prepareStatement(getSqlGetBoardPositionByUID()))
+      try (PreparedStatement vPs = aConnection.prepareStatement(getSqlGetBoardPositionByUID()))
       {
          vPs.setBigDecimal(1, new BigDecimal(aPositionUID));
          try (ResultSet vRs = vPs.executeQuery())
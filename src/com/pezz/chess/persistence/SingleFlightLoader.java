@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2025 Gabriele Pezzini
+ * License: Creative Commons Attribution-NonCommercial 4.0 International (CC BY-NC 4.0)
+ * Full License: https://creativecommons.org/licenses/by-nc/4.0/legalcode
+ * SPDX-License-Identifier: CC-BY-NC-4.0
+ * Non-commercial use only. For commercial licensing, contact the author.
+ */
+package com.pezz.chess.persistence;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+public class SingleFlightLoader<K>
+{
+   // Loads the keys missing from a cache once: the first thread that misses a key loads it, the others missing the
+   // same key park on its future. The future hands only a committed id to them: when the loader inserted the key (its
+   // transaction is not committed yet) or failed, every waiter loads the key itself, in its own transaction.
+   public interface Loader
+   {
+      public Loaded load() throws Exception;
+   }
+
+   // an id inserted by the transaction of the loader is not committed: it is not put in the cache, see PendingIds
+   public record Loaded(CacheEntry entry, boolean committed)
+   {
+   }
+
+   private final String iName;
+   private final BoundedCache<K> iCache;
+   private final ConcurrentHashMap<K, CompletableFuture<CacheEntry>> iInFlight = new ConcurrentHashMap<>();
+   private final LongAdder iHits = new LongAdder();
+   private final LongAdder iLoads = new LongAdder();
+   private final LongAdder iWaits = new LongAdder();
+   private final LongAdder iFailures = new LongAdder();
+
+   public SingleFlightLoader(String aName, BoundedCache<K> aCache)
+   {
+      iName = aName;
+      iCache = aCache;
+   }
+
+   public CacheEntry get(K aKey, Loader aLoader) throws Exception
+   {
+      CacheEntry vEntry = iCache.get(aKey);
+      if (vEntry != null)
+      {
+         iHits.increment();
+         return vEntry;
+      }
+      CompletableFuture<CacheEntry> vFuture = new CompletableFuture<>();
+      CompletableFuture<CacheEntry> vInFlight = iInFlight.putIfAbsent(aKey, vFuture);
+      if (vInFlight != null)
+      {
+         iWaits.increment();
+         vEntry = vInFlight.get();
+         return vEntry != null ? vEntry : load(aKey, aLoader).entry();
+      }
+      Loaded vLoaded = null;
+      try
+      {
+         // loaded by another thread between the get and the putIfAbsent
+         vEntry = iCache.get(aKey);
+         if (vEntry != null)
+         {
+            vLoaded = new Loaded(vEntry, true);
+         }
+         else
+         {
+            vLoaded = load(aKey, aLoader);
+         }
+         return vLoaded.entry();
+      }
+      finally
+      {
+         iInFlight.remove(aKey, vFuture);
+         vFuture.complete(vLoaded != null && vLoaded.committed() ? vLoaded.entry() : null);
+      }
+   }
+
+   // the entry put in the cache when committed
+   private Loaded load(K aKey, Loader aLoader) throws Exception
+   {
+      iLoads.increment();
+      Loaded vLoaded;
+      try
+      {
+         vLoaded = aLoader.load();
+      }
+      catch (Exception e)
+      {
+         iFailures.increment();
+         throw e;
+      }
+      if (!vLoaded.committed())
+      {
+         return vLoaded;
+      }
+      CacheEntry vCached = iCache.putIfAbsent(aKey, vLoaded.entry());
+      return vCached != null ? new Loaded(vCached, true) : vLoaded;
+   }
+
+   public void resetCounters()
+   {
+      iHits.reset();
+      iLoads.reset();
+      iWaits.reset();
+      iFailures.reset();
+   }
+
+   public long getWaits()
+   {
+      return iWaits.sum();
+   }
+
+   public String getSummary()
+   {
+      return iName + ": hits " + iHits.sum() + ", loads " + iLoads.sum() + ", waits " + iWaits.sum() + ", failures "
+            + iFailures.sum();
+   }
+}
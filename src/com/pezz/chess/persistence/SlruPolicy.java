@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2025 Gabriele Pezzini
+ * License: Creative Commons Attribution-NonCommercial 4.0 International (CC BY-NC 4.0)
+ * Full License: https://creativecommons.org/licenses/by-nc/4.0/legalcode
+ * SPDX-License-Identifier: CC-BY-NC-4.0
+ * Non-commercial use only. For commercial licensing, contact the author.
+ */
+package com.pezz.chess.persistence;
+
+import java.util.Arrays;
+
+public final class SlruPolicy
+{
+   // Segmented LRU over the nodes 0..capacity-1 of a cache: a new entry enters the probation queue, an entry read
+   // again moves to the protected queue (at most PROTECTED_RATIO of the entries, the least recent ones go back to
+   // probation) and the victim is the least recent entry of probation. The readers do not lock: a read only sets the
+   // referenced flag of the node (markAccessed) and the move to the protected queue is done by the next eviction that
+   // meets the node, so every operation costs O(1) amortized. Not thread safe: the writers of the cache lock it.
+   private static final byte FREE = 0;
+   private static final byte PROBATION = 1;
+   private static final byte PROTECTED = 2;
+   private static final float PROTECTED_RATIO = 0.8f;
+   private final int[] iPrev;
+   private final int[] iNext;
+   private final byte[] iQueue;
+   private final byte[] iReferenced;
+   // heads are the most recent nodes, tails the least recent
+   private final int[] iHead = new int[3];
+   private final int[] iTail = new int[3];
+   private final int[] iSize = new int[3];
+   private final int iMaxProtected;
+
+   public SlruPolicy(int aCapacity)
+   {
+      this(aCapacity, aCapacity);
+   }
+
+   // aMaxEntries: entries linked at the same time, when less than the nodes (open addressing tables)
+   public SlruPolicy(int aCapacity, int aMaxEntries)
+   {
+      iPrev = new int[aCapacity];
+      iNext = new int[aCapacity];
+      iQueue = new byte[aCapacity];
+      iReferenced = new byte[aCapacity];
+      iMaxProtected = Math.max(1, (int) (aMaxEntries * PROTECTED_RATIO));
+      clear();
+   }
+
+   public void clear()
+   {
+      Arrays.fill(iQueue, FREE);
+      Arrays.fill(iReferenced, (byte) 0);
+      Arrays.fill(iHead, -1);
+      Arrays.fill(iTail, -1);
+      Arrays.fill(iSize, 0);
+   }
+
+   public int size()
+   {
+      return iSize[PROBATION] + iSize[PROTECTED];
+   }
+
+   // no lock: a lost or late flag only changes the victim chosen
+   public void markAccessed(int aNode)
+   {
+      if (aNode >= 0 && aNode < iReferenced.length)
+      {
+         iReferenced[aNode] = 1;
+      }
+   }
+
+   public void add(int aNode)
+   {
+      iReferenced[aNode] = 0;
+      link(aNode, PROBATION);
+   }
+
+   public void remove(int aNode)
+   {
+      if (iQueue[aNode] != FREE)
+      {
+         unlink(aNode);
+         iReferenced[aNode] = 0;
+      }
+   }
+
+   // the entry of aFrom is now in aTo (free), for the caches that move their entries
+   public void move(int aFrom, int aTo)
+   {
+      byte vQueue = iQueue[aFrom];
+      int vPrev = iPrev[aFrom];
+      int vNext = iNext[aFrom];
+      iQueue[aTo] = vQueue;
+      iReferenced[aTo] = iReferenced[aFrom];
+      iPrev[aTo] = vPrev;
+      iNext[aTo] = vNext;
+      if (vPrev >= 0)
+      {
+         iNext[vPrev] = aTo;
+      }
+      else
+      {
+         iHead[vQueue] = aTo;
+      }
+      if (vNext >= 0)
+      {
+         iPrev[vNext] = aTo;
+      }
+      else
+      {
+         iTail[vQueue] = aTo;
+      }
+      iQueue[aFrom] = FREE;
+      iReferenced[aFrom] = 0;
+   }
+
+   // the node to evict, still linked (the caller removes it), or -1 if the policy is empty
+   public int victim()
+   {
+      while (iSize[PROBATION] > 0)
+      {
+         int vNode = iTail[PROBATION];
+         if (iReferenced[vNode] == 0)
+         {
+            return vNode;
+         }
+         iReferenced[vNode] = 0;
+         unlink(vNode);
+         link(vNode, PROTECTED);
+         if (iSize[PROTECTED] > iMaxProtected)
+         {
+            demote();
+         }
+      }
+      return iTail[PROTECTED];
+   }
+
+   // the least recent protected node not read since its promotion goes back to probation, the ones read get a
+   // second chance at the head of the protected queue
+   private void demote()
+   {
+      int vNode = iTail[PROTECTED];
+      for (int i = 0; i < iSize[PROTECTED] && iReferenced[vNode] != 0; i++)
+      {
+         iReferenced[vNode] = 0;
+         unlink(vNode);
+         link(vNode, PROTECTED);
+         vNode = iTail[PROTECTED];
+      }
+      unlink(vNode);
+      iReferenced[vNode] = 0;
+      link(vNode, PROBATION);
+   }
+
+   private void link(int aNode, byte aQueue)
+   {
+      int vHead = iHead[aQueue];
+      iQueue[aNode] = aQueue;
+      iPrev[aNode] = -1;
+      iNext[aNode] = vHead;
+      if (vHead >= 0)
+      {
+         iPrev[vHead] = aNode;
+      }
+      else
+      {
+         iTail[aQueue] = aNode;
+      }
+      iHead[aQueue] = aNode;
+      iSize[aQueue]++;
+   }
+
+   private void unlink(int aNode)
+   {
+      byte vQueue = iQueue[aNode];
+      int vPrev = iPrev[aNode];
+      int vNext = iNext[aNode];
+      if (vPrev >= 0)
+      {
+         iNext[vPrev] = vNext;
+      }
+      else
+      {
+         iHead[vQueue] = vNext;
+      }
+      if (vNext >= 0)
+      {
+         iPrev[vNext] = vPrev;
+      }
+      else
+      {
+         iTail[vQueue] = vPrev;
+      }
+      iQueue[aNode] = FREE;
+      iSize[vQueue]--;
+   }
+}
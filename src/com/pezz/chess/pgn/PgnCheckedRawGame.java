@@ -8,20 +8,32 @@
  */
 package com.pezz.chess.pgn;
 
-import com.pezz.chess.board.ChessBoard;
+import java.util.Arrays;
+
+import com.pezz.chess.board.ReplayBoard;
 
 public class PgnCheckedRawGame
 {
-   private ChessBoard iChessBoard;
+   // what is saved of the replayed game, see ReplayBoard
+   private long[] iInitialPosition;
+   private int[] iMoveValues;
+   private long[] iPositions;
    private PgnImportResult iPgnImportResult;
    private PgnRawGame iPgnRawGame;
    private boolean iEndOfQueueObject;
 
-   public PgnCheckedRawGame(PgnRawGame aPgnRawGame, ChessBoard aChessBoard, PgnImportResult aPgnImportResult)
+   // aReplayBoard, null for a game not valid, is copied: the checker reuses it for its next game
+   public PgnCheckedRawGame(PgnRawGame aPgnRawGame, ReplayBoard aReplayBoard, PgnImportResult aPgnImportResult)
    {
       iPgnRawGame = aPgnRawGame;
-      iChessBoard = aChessBoard;
       iPgnImportResult = aPgnImportResult;
+      if (aReplayBoard != null)
+      {
+         int vPlies = aReplayBoard.getPlies();
+         iInitialPosition = aReplayBoard.getInitialPosition().clone();
+         iMoveValues = Arrays.copyOf(aReplayBoard.getMoveValues(), vPlies);
+         iPositions = Arrays.copyOf(aReplayBoard.getPositions(), vPlies * 3);
+      }
    }
 
    public int getGameNr()
@@ -29,9 +41,25 @@ public class PgnCheckedRawGame
       return iPgnRawGame.getGameNr();
    }
 
-   public ChessBoard getChessBoard()
+   public PgnFileParserStatistics getFileStatistics()
+   {
+      return iPgnRawGame.getFileStatistics();
+   }
+
+   public long[] getInitialPosition()
+   {
+      return iInitialPosition;
+   }
+
+   public int[] getMoveValues()
+   {
+      return iMoveValues;
+   }
+
+   // three longs for every move, see PositionCodec
+   public long[] getPositions()
    {
-      return iChessBoard;
+      return iPositions;
    }
 
    public PgnImportResult getPgnImportResult()
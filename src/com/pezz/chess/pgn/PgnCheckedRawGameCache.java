@@ -9,15 +9,21 @@
 package com.pezz.chess.pgn;
 
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class PgnCheckedRawGameCache
 {
    private final static PgnCheckedRawGameCache iCACHE = new PgnCheckedRawGameCache();
    private LinkedBlockingQueue<PgnCheckedRawGame> iQueue;
+   private final int iCapacity;
+   private final AtomicInteger iPeakSize;
 
    private PgnCheckedRawGameCache()
    {
-      iQueue = new LinkedBlockingQueue<>();
+      iCapacity = PgnImportSettings.getCheckedQueueCapacity();
+      iQueue = new LinkedBlockingQueue<>(iCapacity);
+      iPeakSize = new AtomicInteger();
    }
 
    public static PgnCheckedRawGameCache getInstance()
@@ -25,22 +31,11 @@ public class PgnCheckedRawGameCache
       return iCACHE;
    }
 
-   public void push(PgnCheckedRawGame aPgnRawGame)
+   // blocks while the queue is full
+   public void push(PgnCheckedRawGame aPgnRawGame) throws InterruptedException
    {
-      if (iQueue.size() > 4000)
-      {
-         while (iQueue.size() > 2000)
-         {
-            try
-            {
-               Thread.sleep(2000);
-            }
-            catch (InterruptedException e)
-            {
-            }
-         }
-      }
-      iQueue.offer(aPgnRawGame);
+      iQueue.put(aPgnRawGame);
+      iPeakSize.accumulateAndGet(iQueue.size(), Math::max);
    }
 
    public PgnCheckedRawGame pop() throws InterruptedException
@@ -48,13 +43,31 @@ public class PgnCheckedRawGameCache
       return iQueue.take();
    }
 
+   // null when no game arrives within aTimeout milliseconds
+   public PgnCheckedRawGame pop(long aTimeout) throws InterruptedException
+   {
+      return iQueue.poll(aTimeout, TimeUnit.MILLISECONDS);
+   }
+
    public void clean()
    {
       iQueue.clear();
+      iPeakSize.set(0);
    }
 
    public int size()
    {
       return iQueue.size();
    }
+
+   public int getCapacity()
+   {
+      return iCapacity;
+   }
+
+   // highest number of games waiting in the queue since the last clean()
+   public int getPeakSize()
+   {
+      return iPeakSize.get();
+   }
 }
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2025 Gabriele Pezzini
+ * License: Creative Commons Attribution-NonCommercial 4.0 International (CC BY-NC 4.0)
+ * Full License: https://creativecommons.org/licenses/by-nc/4.0/legalcode
+ * SPDX-License-Identifier: CC-BY-NC-4.0
+ * Non-commercial use only. For commercial licensing, contact the author.
+ */
+package com.pezz.chess.pgn;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.LongConsumer;
+
+public class PgnCountingInputStream extends FilterInputStream
+{
+   // Notifies the bytes read from the underlying stream: placed between a compressed file and its decompressor, the
+   // progress of the import is expressed in bytes of the file without knowing the size of the uncompressed data.
+   private LongConsumer iProgress;
+
+   public PgnCountingInputStream(InputStream aInputStream, LongConsumer aProgress)
+   {
+      super(aInputStream);
+      iProgress = aProgress;
+   }
+
+   @Override
+   public int read() throws IOException
+   {
+      int vByte = super.read();
+      if (vByte >= 0)
+      {
+         iProgress.accept(1);
+      }
+      return vByte;
+   }
+
+   @Override
+   public int read(byte[] aBytes, int aOffset, int aLength) throws IOException
+   {
+      int vRead = super.read(aBytes, aOffset, aLength);
+      if (vRead > 0)
+      {
+         iProgress.accept(vRead);
+      }
+      return vRead;
+   }
+
+   @Override
+   public long skip(long aLength) throws IOException
+   {
+      long vSkipped = super.skip(aLength);
+      if (vSkipped > 0)
+      {
+         iProgress.accept(vSkipped);
+      }
+      return vSkipped;
+   }
+
+   @Override
+   public boolean markSupported()
+   {
+      return false;
+   }
+}
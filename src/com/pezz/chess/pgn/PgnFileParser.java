@@ -12,12 +12,18 @@ import java.io.File;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
 
+import com.pezz.chess.base.ChessLogger;
 import com.pezz.util.itn.SQLConnection;
+import com.pezz.util.itn.SQLConnectionPool;
 
 public class PgnFileParser
 {
+   private PgnImportThread iPgnImportThread;
+   private ArrayList<Thread> iThreads = new ArrayList<>();
+   private ArrayList<PgnFileParserStatistics> iFilesStatistics = new ArrayList<>();
+
    public void doIt(PgnImportThread aPgnImportThread, ArrayList<File> aFiles) throws Exception
    {
       if (aPgnImportThread.isCancelRequest())
@@ -27,120 +33,146 @@ public class PgnFileParser
       doItImpl(aPgnImportThread, aFiles);
    }
 
+   // A single pipeline (reader, checkers and writers) imports all the files: the reader goes on with the next file
+   // while the games of the previous one are still checked and written.
    protected void doItImpl(PgnImportThread aPgnImportThread, ArrayList<File> aFiles) throws Exception
    {
+      iPgnImportThread = aPgnImportThread;
       PgnRawGameCache.getInstance().clean();
       PgnCheckedRawGameCache.getInstance().clean();
-      PgnRawGameWriterThread.resetCounter();
+      PgnImportStageStatistics.clear();
       if (aPgnImportThread.isCancelRequest())
       {
          return;
       }
       aPgnImportThread.getController().holdStatisticsThread();
-      int vTotalGames = 0;
-      HashMap<String, Integer> vTotalGamesMap = new HashMap<String, Integer>();
+      long vTotalBytes = 0;
       for (File vFile : aFiles)
       {
-         if (aPgnImportThread.isCancelRequest())
-         {
-            return;
-         }
-         int vTotalGameInFile = PgnGameCounter.getInstance().countGames(vFile);
-         vTotalGamesMap.put(vFile.getAbsolutePath(), vTotalGameInFile);
-         vTotalGames += vTotalGameInFile;
+         vTotalBytes += vFile.length();
       }
       aPgnImportThread.setSelectedFilesNumber(aFiles.size());
-      aPgnImportThread.setCurrentGameData(vTotalGames);
-      int vTotalThreadsNr = Runtime.getRuntime().availableProcessors() / 2;
-      if (vTotalThreadsNr == 0)
-      {
-         vTotalThreadsNr = 1;
-      }
+      PgnImportProgress.getInstance().start(aPgnImportThread, vTotalBytes);
+      PgnImportJournal.getInstance().open();
+      int vTotalThreadsNr = PgnImportSettings.getWriterThreadsNumber();
+      int vCheckerThreadsNr = PgnImportSettings.getCheckerThreadsNumber();
+      PgnImportStageStatistics.setThreads(PgnImportStageStatistics.Stage.CHECK, vCheckerThreadsNr);
+      PgnImportStageStatistics.setThreads(PgnImportStageStatistics.Stage.WRITE, vTotalThreadsNr);
+      CountDownLatch vWritersEnded = new CountDownLatch(vTotalThreadsNr);
+      PgnRawGameBuilderThread vReader = null;
       try
       {
-         int vCurrentFileNumber = 0;
-         for (File vFile : aFiles)
+         SQLConnection.getDBPersistance().beginSaveGames(aPgnImportThread.getController().getSqlConnection(), true);
+         synchronized (iThreads)
          {
-            long vFileInitTime = System.currentTimeMillis();
-            if (aPgnImportThread.isCancelRequest())
+            vReader = new PgnRawGameBuilderThread(aFiles, vCheckerThreadsNr, aPgnImportThread, this);
+            iThreads.add(vReader);
+            PgnRawGameCheckerThread.setRunningCheckers(vCheckerThreadsNr);
+            for (int x = 0; x < vCheckerThreadsNr; x++)
             {
-               break;
+               iThreads.add(new PgnRawGameCheckerThread(x, vTotalThreadsNr, aPgnImportThread));
             }
-            PgnFileParserStatistics.clear();
-            vCurrentFileNumber++;
-            aPgnImportThread.setCurrentFileData(vFile);
-            aPgnImportThread.setCurrentFileNumber(vCurrentFileNumber);
-            Thread[] vWrites = new Thread[vTotalThreadsNr];
-            SQLConnection.getDBPersistance().beginSaveGames(aPgnImportThread.getController().getSqlConnection());
-            PgnRawGameBuilderThread vReader = new PgnRawGameBuilderThread(vFile, 1, aPgnImportThread);
-            vReader.start();
-            PgnRawGameCheckerThread vChecker = new PgnRawGameCheckerThread(vTotalThreadsNr, aPgnImportThread);
-            vChecker.start();
             for (int x = 0; x < vTotalThreadsNr; x++)
             {
-               PgnRawGameWriterThread vWriter = new PgnRawGameWriterThread(x, aPgnImportThread);
-               vWriter.start();
-               vWrites[x] = vWriter;
+               iThreads.add(new PgnRawGameWriterThread(x, aPgnImportThread, vWritersEnded));
             }
-            Thread vWaiter = new Thread()
+            for (Thread vThread : iThreads)
             {
-               @Override
-               public void run()
-               {
-                  setPriority(Thread.MIN_PRIORITY);
-                  setName("PgnFileParserThread waiter");
-                  while (true)
-                  {
-                     boolean vAtLeastOneAlive = false;
-                     for (Thread vThread : vWrites)
-                     {
-                        if (vThread.isAlive())
-                        {
-                           vAtLeastOneAlive = true;
-                           break;
-                        }
-                     }
-                     if (vAtLeastOneAlive)
-                     {
-                        try
-                        {
-                           Thread.sleep(1000);
-                        }
-                        catch (InterruptedException e)
-                        {
-                           e.printStackTrace();
-                        }
-                     }
-                     else
-                     {
-                        break;
-                     }
-                  }
-               }
-            };
-            vWaiter.start();
-            vWaiter.join();
-            long vFileTimeMillis = System.currentTimeMillis() - vFileInitTime;
-            int vTotalGamesInFile = vTotalGamesMap.get(vFile.getAbsolutePath());
-            aPgnImportThread.addStatistics(vFile.getName(), vTotalGamesInFile, vFileTimeMillis,
-                  toBigDecimal3(vFileTimeMillis, vTotalGamesInFile), PgnFileParserStatistics.getGamesDuplicated(),
-                  PgnFileParserStatistics.getGamesInError(), vTotalGamesInFile
-                        - PgnFileParserStatistics.getGamesDuplicated() - PgnFileParserStatistics.getGamesInError());
+               vThread.start();
+            }
+         }
+         vWritersEnded.await();
+         if (aPgnImportThread.isCancelRequest())
+         {
+            // a reader blocked on a full queue must see the cancel request
+            PgnRawGameCache.getInstance().clean();
          }
+         vReader.join();
       }
       catch (Exception e)
       {
          e.printStackTrace();
       }
+      // files not completely imported because of a cancel request
+      synchronized (iFilesStatistics)
+      {
+         for (PgnFileParserStatistics vStatistics : new ArrayList<>(iFilesStatistics))
+         {
+            vStatistics.end();
+         }
+      }
+      boolean vCompleted = !aPgnImportThread.isCancelRequest();
+      synchronized (iFilesStatistics)
+      {
+         vCompleted = vCompleted && iFilesStatistics.size() == aFiles.size();
+         for (PgnFileParserStatistics vStatistics : iFilesStatistics)
+         {
+            vCompleted = vCompleted && vStatistics.isReadCompleted();
+         }
+      }
+      PgnImportJournal.getInstance().close(aFiles, vCompleted);
+      PgnImportProgress.getInstance().end();
+      ChessLogger.getInstance().log(PgnImportStageStatistics.getSummary());
+      ChessLogger.getInstance().log(SQLConnectionPool.getAllMetrics());
       SQLConnection.getDBPersistance().endSaveGames(aPgnImportThread.getController().getSqlConnection());
-      PgnFileParserStatistics.clear();
       PgnRawGameCache.getInstance().clean();
       PgnCheckedRawGameCache.getInstance().clean();
       aPgnImportThread.getController().resumeStatisticsThread();
    }
 
+   // wakes up the threads of the pipeline waiting on the queues
+   public void cancel()
+   {
+      synchronized (iThreads)
+      {
+         for (Thread vThread : iThreads)
+         {
+            vThread.interrupt();
+         }
+      }
+      PgnRawGameCache.getInstance().clean();
+      PgnCheckedRawGameCache.getInstance().clean();
+   }
+
+   // called by the reader when it starts reading a file
+   public PgnFileParserStatistics fileStarted(File aFile)
+   {
+      synchronized (iFilesStatistics)
+      {
+         PgnFileParserStatistics vStatistics = new PgnFileParserStatistics(aFile, iFilesStatistics.size() + 1, this);
+         iFilesStatistics.add(vStatistics);
+         iPgnImportThread.setCurrentFileData(aFile);
+         iPgnImportThread.setCurrentFileNumber(vStatistics.getFileNr());
+         return vStatistics;
+      }
+   }
+
+   // called when all the games of a file have been written or discarded
+   public void fileEnded(PgnFileParserStatistics aStatistics)
+   {
+      synchronized (iFilesStatistics)
+      {
+         long vFileTimeMillis = aStatistics.getElapsedTime();
+         int vTotalGamesInFile = aStatistics.getGamesRead();
+         iPgnImportThread.addStatistics(aStatistics.getFile().getName(), vTotalGamesInFile, vFileTimeMillis,
+               toBigDecimal3(vFileTimeMillis, vTotalGamesInFile), aStatistics.getGamesDuplicated(),
+               aStatistics.getGamesInError(), aStatistics.getGamesImported());
+         ChessLogger.getInstance().log(aStatistics.getFile().getName() + " - " + PgnImportStageStatistics.getSummary()
+               + " queues peak size: raw " + PgnRawGameCache.getInstance().getPeakSize() + "/"
+               + PgnRawGameCache.getInstance().getCapacity() + " checked "
+               + PgnCheckedRawGameCache.getInstance().getPeakSize() + "/"
+               + PgnCheckedRawGameCache.getInstance().getCapacity());
+         PgnImportJournal.getInstance().fileEnded(aStatistics.getFile(),
+               aStatistics.isReadCompleted() && !iPgnImportThread.isCancelRequest());
+      }
+   }
+
    private BigDecimal toBigDecimal3(long aNumerator, long aDenominator)
    {
+      if (aDenominator == 0)
+      {
+         return BigDecimal.ZERO.setScale(3);
+      }
       BigDecimal vBDNum = new BigDecimal(aNumerator);
       vBDNum = vBDNum.setScale(3, RoundingMode.CEILING);
       BigDecimal vBDDen = new BigDecimal(aDenominator);
@@ -8,40 +8,148 @@
  */
 package com.pezz.chess.pgn;
 
+import java.io.File;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class PgnFileParserStatistics
 {
-   private static AtomicInteger iTotalGamesDuplicated = new AtomicInteger(0);
-   private static AtomicInteger iTotalGamesInError = new AtomicInteger(0);
+   // Statistics of a single file. The files share the same pipeline, so the games of a file can still be in the
+   // queues while the next file is read: every game read is pending until it is written, discarded as duplicated or
+   // in error. The file is ended when it has been completely read and no game is pending.
+   private File iFile;
+   private int iFileNr;
+   private long iBeginTime;
+   private PgnFileParser iParser;
+   private AtomicInteger iTotalGamesRead = new AtomicInteger(0);
+   private AtomicInteger iTotalGamesDuplicated = new AtomicInteger(0);
+   private AtomicInteger iTotalGamesInError = new AtomicInteger(0);
+   // starts from 1, released when the file has been completely read
+   private AtomicInteger iPendingGames = new AtomicInteger(1);
+   private AtomicBoolean iEnded = new AtomicBoolean(false);
+   private volatile boolean iReadCompleted;
+   // hashes of the games of the file, to discard the games repeated in the file before checking them
+   private Set<String> iGameHashes = ConcurrentHashMap.newKeySet();
 
-   private PgnFileParserStatistics()
+   public PgnFileParserStatistics(File aFile, int aFileNr, PgnFileParser aParser)
    {
+      iFile = aFile;
+      iFileNr = aFileNr;
+      iParser = aParser;
+      iBeginTime = System.currentTimeMillis();
    }
 
-   public static void incrementGamesDuplicated()
+   public File getFile()
+   {
+      return iFile;
+   }
+
+   public int getFileNr()
+   {
+      return iFileNr;
+   }
+
+   public void incrementGamesRead()
+   {
+      iTotalGamesRead.incrementAndGet();
+      iPendingGames.incrementAndGet();
+   }
+
+   // false when a game with the same hash has already been read from the file
+   public boolean addGameHash(String aGameHash)
+   {
+      return aGameHash == null || iGameHashes.add(aGameHash);
+   }
+
+   public void incrementGamesDuplicated()
    {
       iTotalGamesDuplicated.incrementAndGet();
    }
 
-   public static void incrementGamesInError()
+   public void incrementGamesInError()
    {
       iTotalGamesInError.incrementAndGet();
    }
 
-   public static int getGamesDuplicated()
+   public int getGamesRead()
+   {
+      return iTotalGamesRead.intValue();
+   }
+
+   public int getGamesDuplicated()
    {
       return iTotalGamesDuplicated.intValue();
    }
 
-   public static int getGamesInError()
+   public int getGamesInError()
    {
       return iTotalGamesInError.intValue();
    }
 
-   public static void clear()
+   public int getGamesImported()
+   {
+      return getGamesRead() - getGamesDuplicated() - getGamesInError();
+   }
+
+   public long getElapsedTime()
+   {
+      return System.currentTimeMillis() - iBeginTime;
+   }
+
+   // a game of the file has been written, or discarded. aSaved is false when the outcome of the game is not known
+   // (e.g. the connection to the database is lost): the import journal will not go beyond it
+   public void gameEnded(PgnRawGame aRawGame, boolean aSaved)
+   {
+      PgnImportCheckpoint vCheckpoint = aRawGame.getCheckpoint();
+      if (vCheckpoint != null)
+      {
+         if (aSaved)
+         {
+            vCheckpoint.gameEnded(aRawGame.getRangeNr(), aRawGame.getGameNr(), aRawGame.getEndOffset());
+         }
+         else
+         {
+            vCheckpoint.gameFailed();
+         }
+         PgnImportJournal.getInstance().gameEnded();
+      }
+      PgnImportProgress.getInstance().gameEnded();
+      releasePending();
+   }
+
+   // aCompleted is false when the file has not been read to the end (cancel request, read error)
+   public void readEnded(boolean aCompleted)
+   {
+      iReadCompleted = aCompleted;
+      releasePending();
+   }
+
+   public boolean isReadCompleted()
+   {
+      return iReadCompleted;
+   }
+
+   private void releasePending()
+   {
+      if (iPendingGames.decrementAndGet() == 0)
+      {
+         end();
+      }
+   }
+
+   // also called for the files not yet ended when the import is cancelled
+   public void end()
+   {
+      if (iEnded.compareAndSet(false, true))
+      {
+         iParser.fileEnded(this);
+      }
+   }
+
+   public boolean isEnded()
    {
-      iTotalGamesDuplicated.set(0);
-      iTotalGamesInError.set(0);
+      return iEnded.get();
    }
 }
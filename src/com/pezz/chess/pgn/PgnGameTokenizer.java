@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2025 Gabriele Pezzini
+ * License: Creative Commons Attribution-NonCommercial 4.0 International (CC BY-NC 4.0)
+ * Full License: https://creativecommons.org/licenses/by-nc/4.0/legalcode
+ * SPDX-License-Identifier: CC-BY-NC-4.0
+ * Non-commercial use only. For commercial licensing, contact the author.
+ */
+package com.pezz.chess.pgn;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.LongConsumer;
+
+public abstract class PgnGameTokenizer implements AutoCloseable
+{
+   // Splits a pgn source in games working on bytes: only the header lines are decoded to String, the moves text is
+   // handed to PgnRawGame as a slice of the current window. A window is never modified once filled, a new one is
+   // built when more data is needed, so the slices stay valid while the games are waiting in the queues.
+   protected ByteBuffer iWindow;
+   protected long iWindowOffset;
+   private int iPosition;
+   private String iEntryName;
+   private int iGameNr;
+   private byte[] iHeaderBytes;
+   private LongConsumer iProgress;
+   private double iProgressScale;
+   private long iProgressStart;
+   private long iProgressReported;
+
+   protected PgnGameTokenizer(String aEntryName)
+   {
+      iEntryName = aEntryName;
+      iWindow = ByteBuffer.allocate(0);
+      iHeaderBytes = new byte[256];
+   }
+
+   // replaces iWindow with a window starting with the bytes of the current one from aKeepFrom followed by new data,
+   // returns false when there is no more data
+   protected abstract boolean nextWindow(int aKeepFrom) throws IOException;
+
+   // bytes of the source consumed so far
+   public long getPosition()
+   {
+      return iWindowOffset + iPosition;
+   }
+
+   // number of the games read so far, the games are numbered from 1
+   public int getGameNr()
+   {
+      return iGameNr;
+   }
+
+   // the bytes consumed are notified to aProgress after every game, multiplied by aScale (e.g. the compression ratio
+   // of a zip entry, so that the progress is expressed in bytes of the archive)
+   public void setProgress(LongConsumer aProgress, double aScale)
+   {
+      iProgress = aProgress;
+      iProgressScale = aScale;
+      iProgressStart = getPosition();
+      iProgressReported = 0;
+   }
+
+   // bytes notified to the progress so far
+   public long getProgressReported()
+   {
+      return iProgressReported;
+   }
+
+   public PgnRawGame nextGame() throws IOException
+   {
+      PgnRawGame vRawGame = scanGame();
+      if (iProgress != null)
+      {
+         long vReported = (long) ((getPosition() - iProgressStart) * iProgressScale);
+         if (vReported > iProgressReported)
+         {
+            iProgress.accept(vReported - iProgressReported);
+            iProgressReported = vReported;
+         }
+      }
+      return vRawGame;
+   }
+
+   private PgnRawGame scanGame() throws IOException
+   {
+      PgnRawGame vRawGame = null;
+      int vMovesStart = -1;
+      boolean vEndOfData = false;
+      while (true)
+      {
+         int vLimit = iWindow.limit();
+         int vLineEnd = iPosition;
+         // lines end with \n, \r or \r\n as for a BufferedReader: the empty line between \r and \n is skipped
+         while (vLineEnd < vLimit && iWindow.get(vLineEnd) != '\n' && iWindow.get(vLineEnd) != '\r')
+         {
+            vLineEnd++;
+         }
+         if (vLineEnd == vLimit && !vEndOfData)
+         {
+            int vKeepFrom = vMovesStart >= 0 ? vMovesStart : iPosition;
+            if (nextWindow(vKeepFrom))
+            {
+               iPosition -= vKeepFrom;
+               if (vMovesStart >= 0)
+               {
+                  vMovesStart -= vKeepFrom;
+               }
+            }
+            else
+            {
+               vEndOfData = true;
+            }
+            continue;
+         }
+         if (iPosition >= vLimit)
+         {
+            // incomplete game at the end of the data
+            return null;
+         }
+         int vLineStart = iPosition;
+         iPosition = vLineEnd < vLimit ? vLineEnd + 1 : vLineEnd;
+         int vEnd = vLineEnd;
+         int vLen = vEnd - vLineStart;
+         if (vLen == 0)
+         {
+            continue;
+         }
+         byte vFirstByte = iWindow.get(vLineStart);
+         if (vRawGame == null && vFirstByte == '[')
+         {
+            vRawGame = new PgnRawGame(iEntryName);
+         }
+         if (vRawGame != null)
+         {
+            if (vFirstByte == '[')
+            {
+               vRawGame.addHeader(decode(vLineStart, vLen));
+            }
+            else
+            {
+               if (vMovesStart < 0)
+               {
+                  vMovesStart = vLineStart;
+               }
+               if (!PgnRawGame.isShortLine(iWindow, vLineStart, vEnd) && isGameTerminated(vEnd))
+               {
+                  iGameNr++;
+                  vRawGame.setRawMoves(iWindow.slice(vMovesStart, vEnd - vMovesStart));
+                  vRawGame.setGameNr(iGameNr);
+                  vRawGame.setEndOffset(iWindowOffset + iPosition);
+                  return vRawGame;
+               }
+            }
+         }
+      }
+   }
+
+   private boolean isGameTerminated(int aLineEnd)
+   {
+      byte vByte0 = iWindow.get(aLineEnd - 3);
+      byte vByte1 = iWindow.get(aLineEnd - 2);
+      byte vByte2 = iWindow.get(aLineEnd - 1);
+      return (vByte0 == '1' && vByte1 == '-' && vByte2 == '0') || (vByte0 == '0' && vByte1 == '-' && vByte2 == '1')
+            || (vByte0 == '1' && vByte1 == '/' && vByte2 == '2') || vByte2 == '*';
+   }
+
+   private String decode(int aStart, int aLen)
+   {
+      if (iHeaderBytes.length < aLen)
+      {
+         iHeaderBytes = new byte[aLen * 2];
+      }
+      iWindow.get(aStart, iHeaderBytes, 0, aLen);
+      return new String(iHeaderBytes, 0, aLen, StandardCharsets.UTF_8);
+   }
+
+   @Override
+   public void close() throws IOException
+   {
+   }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2025 Gabriele Pezzini
+ * License: Creative Commons Attribution-NonCommercial 4.0 International (CC BY-NC 4.0)
+ * Full License: https://creativecommons.org/licenses/by-nc/4.0/legalcode
+ * SPDX-License-Identifier: CC-BY-NC-4.0
+ * Non-commercial use only. For commercial licensing, contact the author.
+ */
+package com.pezz.chess.pgn;
+
+import java.util.HashMap;
+import java.util.TreeMap;
+
+public class PgnImportCheckpoint
+{
+   // Progress of a single pgn source (a flat file or a zip entry). The games are written by many threads in any
+   // order: the checkpoint is the number of the games such that all the games up to the last one are ended, together
+   // with the offset of the end of that game in the source. The games ended after a gap wait in iEndedGames.
+   // A source read by byte ranges numbers its games by range and by position in the range: the ranges are walked
+   // in order, moving to the next one once all the games of the current one are ended.
+   private String iEntryName;
+   private int iGameNr;
+   private long iOffset;
+   private int iRangesNr = 1;
+   private int iRangeNr;
+   private int iRangeGameNr;
+   private boolean iStalled;
+   private TreeMap<Long, Long> iEndedGames = new TreeMap<>();
+   private HashMap<Integer, Integer> iRangeGames = new HashMap<>();
+
+   public PgnImportCheckpoint(String aEntryName, int aGameNr, long aOffset)
+   {
+      iEntryName = aEntryName;
+      iGameNr = aGameNr;
+      iOffset = aOffset;
+   }
+
+   public String getEntryName()
+   {
+      return iEntryName;
+   }
+
+   public synchronized int getGameNr()
+   {
+      return iGameNr;
+   }
+
+   public synchronized long getOffset()
+   {
+      return iOffset;
+   }
+
+   // the source is read by aRangesNr byte ranges, to be called before the first game is read
+   public synchronized void setRangesNr(int aRangesNr)
+   {
+      iRangesNr = aRangesNr;
+   }
+
+   // aGameNr is the number of the game in its range, starting from 1
+   public synchronized void gameEnded(int aRangeNr, int aGameNr, long aEndOffset)
+   {
+      if (iStalled || aRangeNr < iRangeNr || (aRangeNr == iRangeNr && aGameNr <= iRangeGameNr))
+      {
+         return;
+      }
+      iEndedGames.put(getKey(aRangeNr, aGameNr), aEndOffset);
+      advance();
+   }
+
+   private void advance()
+   {
+      while (true)
+      {
+         Long vOffset = iEndedGames.remove(getKey(iRangeNr, iRangeGameNr + 1));
+         if (vOffset != null)
+         {
+            iRangeGameNr++;
+            iGameNr++;
+            iOffset = vOffset;
+         }
+         else if (iRangeNr < iRangesNr && Integer.valueOf(iRangeGameNr).equals(iRangeGames.get(iRangeNr)))
+         {
+            iRangeNr++;
+            iRangeGameNr = 0;
+         }
+         else
+         {
+            return;
+         }
+      }
+   }
+
+   private static long getKey(int aRangeNr, int aGameNr)
+   {
+      return ((long) aRangeNr << 32) | aGameNr;
+   }
+
+   // a game that may not have been saved (e.g. the database connection is lost): the checkpoint cannot go beyond it
+   public synchronized void gameFailed()
+   {
+      iStalled = true;
+      iEndedGames.clear();
+   }
+
+   // all the games of a range have been read, aGamesNr is the number of the games of the range
+   public synchronized void readEnded(int aRangeNr, int aGamesNr)
+   {
+      iRangeGames.put(aRangeNr, aGamesNr);
+      if (!iStalled)
+      {
+         advance();
+      }
+   }
+
+   public synchronized boolean isDone()
+   {
+      return !iStalled && iRangeNr >= iRangesNr;
+   }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2025 Gabriele Pezzini
+ * License: Creative Commons Attribution-NonCommercial 4.0 International (CC BY-NC 4.0)
+ * Full License: https://creativecommons.org/licenses/by-nc/4.0/legalcode
+ * SPDX-License-Identifier: CC-BY-NC-4.0
+ * Non-commercial use only. For commercial licensing, contact the author.
+ */
+package com.pezz.chess.pgn;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Properties;
+
+import com.pezz.chess.base.ChessLogger;
+import com.pezz.chess.preferences.ChessConnectionProperties;
+import com.pezz.chess.preferences.ChessPreferences;
+
+public class PgnImportJournal
+{
+   // Import journal kept in ~/.chess/pgnimport.journal, so that an interrupted import (cancel, crash, database
+   // restart) can be resumed without reading again the games already saved. For every file of the database it holds
+   // the checkpoint of each source (see PgnImportCheckpoint) or the mark of a file completely imported. The values
+   // hold size and last modified time of the file: a file changed after the interruption is imported from the
+   // beginning. Every game is committed before its checkpoint is saved, so after a crash the journal can only be
+   // behind the database and the games imported again are found as duplicated.
+   private static final PgnImportJournal iJOURNAL = new PgnImportJournal();
+   private static final String DONE = "done";
+   private static final String SEPARATOR = "|";
+   private File iJournalFile;
+   private Properties iProperties;
+   private String iDatabase;
+   private HashMap<File, ArrayList<PgnImportCheckpoint>> iCheckpoints;
+   private volatile long iLastSaveTime;
+   private long iSaveInterval;
+
+   private PgnImportJournal()
+   {
+      iJournalFile = new File(new File(ChessPreferences.getUserHome(), ".chess"), "pgnimport.journal");
+      iProperties = new Properties();
+      iCheckpoints = new HashMap<>();
+   }
+
+   public static PgnImportJournal getInstance()
+   {
+      return iJOURNAL;
+   }
+
+   // loads the journal at the beginning of an import in the current database
+   public synchronized void open()
+   {
+      ChessConnectionProperties vConnection = ChessPreferences.getInstance().getCurrentProperties();
+      iDatabase = vConnection == null ? "" : vConnection.getJdbcUrl() + SEPARATOR + vConnection.getDBUser();
+      iProperties = new Properties();
+      iCheckpoints = new HashMap<>();
+      iSaveInterval = PgnImportSettings.getJournalInterval();
+      iLastSaveTime = System.currentTimeMillis();
+      if (iJournalFile.exists())
+      {
+         try (InputStream vIS = new FileInputStream(iJournalFile))
+         {
+            iProperties.load(vIS);
+         }
+         catch (IOException e)
+         {
+            ChessLogger.getInstance().log(iJournalFile.getAbsolutePath(), e);
+         }
+      }
+   }
+
+   public synchronized boolean isFileDone(File aFile)
+   {
+      String[] vValues = getValues(getKey(aFile, null), aFile);
+      return vValues != null && vValues.length == 3 && DONE.equals(vValues[2]);
+   }
+
+   public synchronized boolean isEntryDone(File aFile, String aEntryName)
+   {
+      String[] vValues = getValues(getKey(aFile, aEntryName), aFile);
+      return vValues != null && vValues.length == 3 && DONE.equals(vValues[2]);
+   }
+
+   // returns the checkpoint of a source, restored from the journal when the import of the source was interrupted
+   public synchronized PgnImportCheckpoint getCheckpoint(File aFile, String aEntryName)
+   {
+      int vGameNr = 0;
+      long vOffset = 0;
+      String[] vValues = getValues(getKey(aFile, aEntryName), aFile);
+      if (vValues != null && vValues.length == 4)
+      {
+         try
+         {
+            vGameNr = Integer.parseInt(vValues[2]);
+            vOffset = Long.parseLong(vValues[3]);
+         }
+         catch (NumberFormatException e)
+         {
+            vGameNr = 0;
+            vOffset = 0;
+         }
+      }
+      PgnImportCheckpoint vCheckpoint = new PgnImportCheckpoint(aEntryName, vGameNr, vOffset);
+      iCheckpoints.computeIfAbsent(aFile, k -> new ArrayList<>()).add(vCheckpoint);
+      return vCheckpoint;
+   }
+
+   // called when all the games of a file have been ended, aCompleted is false when the file has not been read to
+   // the end (cancel request, read error)
+   public synchronized void fileEnded(File aFile, boolean aCompleted)
+   {
+      String vFileKey = getKey(aFile, null);
+      ArrayList<PgnImportCheckpoint> vCheckpoints = iCheckpoints.get(aFile);
+      boolean vDone = aCompleted;
+      if (vCheckpoints != null)
+      {
+         for (PgnImportCheckpoint vCheckpoint : vCheckpoints)
+         {
+            vDone = vDone && vCheckpoint.isDone();
+         }
+      }
+      if (vDone)
+      {
+         iCheckpoints.remove(aFile);
+         iProperties.keySet().removeIf(k -> ((String) k).startsWith(vFileKey + SEPARATOR));
+         iProperties.setProperty(vFileKey, getFileValue(aFile) + SEPARATOR + DONE);
+      }
+      save(true);
+   }
+
+   // called after every game: the journal is written at most every PgnJournalInterval milliseconds
+   public void gameEnded()
+   {
+      if (System.currentTimeMillis() - iLastSaveTime >= iSaveInterval)
+      {
+         save(false);
+      }
+   }
+
+   // at the end of an import completed without interruptions the files are removed from the journal
+   public synchronized void close(ArrayList<File> aFiles, boolean aCompleted)
+   {
+      if (aCompleted)
+      {
+         for (File vFile : aFiles)
+         {
+            String vFileKey = getKey(vFile, null);
+            iCheckpoints.remove(vFile);
+            iProperties.remove(vFileKey);
+            iProperties.keySet().removeIf(k -> ((String) k).startsWith(vFileKey + SEPARATOR));
+         }
+      }
+      save(true);
+      iCheckpoints = new HashMap<>();
+   }
+
+   protected synchronized void save(boolean aForce)
+   {
+      long vNow = System.currentTimeMillis();
+      if (!aForce && vNow - iLastSaveTime < iSaveInterval)
+      {
+         return;
+      }
+      iLastSaveTime = vNow;
+      for (File vFile : iCheckpoints.keySet())
+      {
+         String vFileValue = getFileValue(vFile);
+         for (PgnImportCheckpoint vCheckpoint : iCheckpoints.get(vFile))
+         {
+            String vKey = getKey(vFile, vCheckpoint.getEntryName());
+            if (vCheckpoint.isDone())
+            {
+               iProperties.setProperty(vKey, vFileValue + SEPARATOR + DONE);
+            }
+            else if (vCheckpoint.getGameNr() > 0)
+            {
+               iProperties.setProperty(vKey,
+                     vFileValue + SEPARATOR + vCheckpoint.getGameNr() + SEPARATOR + vCheckpoint.getOffset());
+            }
+         }
+      }
+      store();
+   }
+
+   private void store()
+   {
+      try
+      {
+         if (iProperties.isEmpty())
+         {
+            Files.deleteIfExists(iJournalFile.toPath());
+            return;
+         }
+         // the journal is replaced only when the new one is complete
+         File vTmpFile = new File(iJournalFile.getParentFile(), iJournalFile.getName() + ".tmp");
+         try (OutputStream vOS = new FileOutputStream(vTmpFile))
+         {
+            iProperties.store(vOS, null);
+         }
+         Files.move(vTmpFile.toPath(), iJournalFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+               StandardCopyOption.ATOMIC_MOVE);
+      }
+      catch (IOException e)
+      {
+         ChessLogger.getInstance().log(iJournalFile.getAbsolutePath(), e);
+      }
+   }
+
+   private String getKey(File aFile, String aEntryName)
+   {
+      String vKey = iDatabase + SEPARATOR + aFile.getAbsolutePath();
+      return aEntryName == null ? vKey : vKey + SEPARATOR + aEntryName;
+   }
+
+   private String getFileValue(File aFile)
+   {
+      return aFile.length() + SEPARATOR + aFile.lastModified();
+   }
+
+   // values of a key, null when missing or written for a different version of the file
+   private String[] getValues(String aKey, File aFile)
+   {
+      String vValue = iProperties.getProperty(aKey);
+      if (vValue == null || !vValue.startsWith(getFileValue(aFile) + SEPARATOR))
+      {
+         return null;
+      }
+      return vValue.split("\\" + SEPARATOR);
+   }
+}
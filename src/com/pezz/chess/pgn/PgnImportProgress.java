@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2025 Gabriele Pezzini
+ * License: Creative Commons Attribution-NonCommercial 4.0 International (CC BY-NC 4.0)
+ * Full License: https://creativecommons.org/licenses/by-nc/4.0/legalcode
+ * SPDX-License-Identifier: CC-BY-NC-4.0
+ * Non-commercial use only. For commercial licensing, contact the author.
+ */
+package com.pezz.chess.pgn;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+public class PgnImportProgress
+{
+   // The files are not counted before the import: the total of the games is estimated from the bytes read so far
+   // (compressed bytes for the archives) and refined while the import goes on.
+   private static final PgnImportProgress iPROGRESS = new PgnImportProgress();
+   private static final int INITIAL_BYTES_FOR_GAME = 800;
+   private static final int REFRESH_GAMES = 1000;
+   private PgnImportThread iPgnImportThread;
+   private long iTotalBytes;
+   private final LongAdder iBytesRead;
+   private final AtomicInteger iGamesRead;
+   private final AtomicInteger iGamesEnded;
+   private volatile int iEstimatedGames;
+
+   private PgnImportProgress()
+   {
+      iBytesRead = new LongAdder();
+      iGamesRead = new AtomicInteger();
+      iGamesEnded = new AtomicInteger();
+   }
+
+   public static PgnImportProgress getInstance()
+   {
+      return iPROGRESS;
+   }
+
+   public void start(PgnImportThread aPgnImportThread, long aTotalBytes)
+   {
+      iPgnImportThread = aPgnImportThread;
+      iTotalBytes = aTotalBytes;
+      iBytesRead.reset();
+      iGamesRead.set(0);
+      iGamesEnded.set(0);
+      setEstimatedGames((int) Math.min(Integer.MAX_VALUE, Math.max(1, aTotalBytes / INITIAL_BYTES_FOR_GAME)));
+   }
+
+   public void addBytesRead(long aBytes)
+   {
+      if (aBytes > 0)
+      {
+         iBytesRead.add(aBytes);
+      }
+   }
+
+   public void gameRead()
+   {
+      if (iGamesRead.incrementAndGet() % REFRESH_GAMES == 0)
+      {
+         refreshEstimate();
+      }
+   }
+
+   // a game has been written or discarded
+   public void gameEnded()
+   {
+      int vGamesEnded = iGamesEnded.incrementAndGet();
+      if (iPgnImportThread != null)
+      {
+         iPgnImportThread.setCurrentGameNumber(vGamesEnded);
+      }
+   }
+
+   public void refreshEstimate()
+   {
+      long vBytesRead = iBytesRead.sum();
+      int vGamesRead = iGamesRead.get();
+      if (vBytesRead <= 0 || vGamesRead == 0)
+      {
+         return;
+      }
+      double vEstimate = vBytesRead >= iTotalBytes ? vGamesRead : (double) vGamesRead * iTotalBytes / vBytesRead;
+      setEstimatedGames((int) Math.min(Integer.MAX_VALUE, Math.max(vGamesRead, Math.round(vEstimate))));
+   }
+
+   // all the files have been read: the total is no longer an estimate
+   public void end()
+   {
+      setEstimatedGames(iGamesRead.get());
+   }
+
+   public long getBytesRead()
+   {
+      return iBytesRead.sum();
+   }
+
+   public int getGamesRead()
+   {
+      return iGamesRead.get();
+   }
+
+   public int getEstimatedGames()
+   {
+      return iEstimatedGames;
+   }
+
+   private void setEstimatedGames(int aEstimatedGames)
+   {
+      if (aEstimatedGames != iEstimatedGames)
+      {
+         iEstimatedGames = aEstimatedGames;
+         if (iPgnImportThread != null)
+         {
+            iPgnImportThread.setCurrentGameData(aEstimatedGames);
+         }
+      }
+   }
+}
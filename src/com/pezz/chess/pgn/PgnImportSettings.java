@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2025 Gabriele Pezzini
+ * License: Creative Commons Attribution-NonCommercial 4.0 International (CC BY-NC 4.0)
+ * Full License: https://creativecommons.org/licenses/by-nc/4.0/legalcode
+ * SPDX-License-Identifier: CC-BY-NC-4.0
+ * Non-commercial use only. For commercial licensing, contact the author.
+ */
+package com.pezz.chess.pgn;
+
+public class PgnImportSettings
+{
+   // Tuning of the pgn import pipeline: every value is read from a system property or, if missing, from an
+   // environment variable with the same name (like LogFilePath)
+   public static final String CHECKER_THREADS = "PgnCheckerThreads";
+   public static final String WRITER_THREADS = "PgnWriterThreads";
+   public static final String READER_THREADS = "PgnReaderThreads";
+   public static final String SPLIT_MIN_FILE_SIZE = "PgnSplitMinFileSize";
+   public static final String RAW_QUEUE_CAPACITY = "PgnRawQueueCapacity";
+   public static final String CHECKED_QUEUE_CAPACITY = "PgnCheckedQueueCapacity";
+   public static final String JOURNAL_INTERVAL = "PgnJournalInterval";
+   public static final String HASH_FILTER_MAX_GAMES = "PgnHashFilterMaxGames";
+   public static final String GROUP_COMMIT_GAMES = "PgnGroupCommitGames";
+   public static final String GROUP_COMMIT_INTERVAL = "PgnGroupCommitInterval";
+   public static final String WARM_CACHE_POSITIONS = "PgnWarmCachePositions";
+   public static final String WARM_CACHE_MAX_TABLE_POSITIONS = "PgnWarmCacheMaxTablePositions";
+
+   private PgnImportSettings()
+   {
+   }
+
+   public static int getCheckerThreadsNumber()
+   {
+      return getInt(CHECKER_THREADS, getDefaultThreadsNumber(), 1);
+   }
+
+   public static int getWriterThreadsNumber()
+   {
+      return getInt(WRITER_THREADS, getDefaultThreadsNumber(), 1);
+   }
+
+   // threads reading a single pgn file (byte ranges of a flat file or entries of a zip), 1 disables the parallel read
+   public static int getReaderThreadsNumber()
+   {
+      return getInt(READER_THREADS, Math.max(1, Runtime.getRuntime().availableProcessors() / 4), 1);
+   }
+
+   // flat files smaller than this size in bytes are always read by a single thread
+   public static long getSplitMinFileSize()
+   {
+      return getLong(SPLIT_MIN_FILE_SIZE, 256L * 1024 * 1024, 0);
+   }
+
+   // games read and waiting to be checked: producers block when the queue is full
+   public static int getRawQueueCapacity()
+   {
+      return getInt(RAW_QUEUE_CAPACITY, 4000, 1);
+   }
+
+   // games checked and waiting to be written, each one holds its ChessBoard
+   public static int getCheckedQueueCapacity()
+   {
+      return getInt(CHECKED_QUEUE_CAPACITY, 2000, 1);
+   }
+
+   // milliseconds between two writes of the import journal, 0 writes it after every game
+   public static long getJournalInterval()
+   {
+      return getLong(JOURNAL_INTERVAL, 5000, 0);
+   }
+
+   // games of gameheader loaded in memory to discard the games already saved (16 bytes per game), 0 disables it
+   public static int getHashFilterMaxGames()
+   {
+      return getInt(HASH_FILTER_MAX_GAMES, 50_000_000, 0);
+   }
+
+   // games written by a writer in a single transaction, 1 commits every game
+   public static int getGroupCommitGames()
+   {
+      return getInt(GROUP_COMMIT_GAMES, 100, 1);
+   }
+
+   // milliseconds after which a writer commits its games even if they are less than getGroupCommitGames()
+   public static long getGroupCommitInterval()
+   {
+      return getLong(GROUP_COMMIT_INTERVAL, 1000, 0);
+   }
+
+   // most played positions (and their moves) loaded in the caches before the import, 0 starts with empty caches
+   public static int getWarmCachePositions()
+   {
+      return getInt(WARM_CACHE_POSITIONS, 20_000, 0);
+   }
+
+   // positions of boardposition beyond which the caches are not warmed up: the ranking of the positions sorts the
+   // whole table
+   public static int getWarmCacheMaxTablePositions()
+   {
+      return getInt(WARM_CACHE_MAX_TABLE_POSITIONS, 2_000_000, 0);
+   }
+
+   private static int getDefaultThreadsNumber()
+   {
+      return Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+   }
+
+   protected static String getValue(String aName)
+   {
+      String vValue = System.getProperty(aName);
+      if (vValue == null)
+      {
+         vValue = System.getenv(aName);
+      }
+      return vValue == null ? null : vValue.trim();
+   }
+
+   protected static int getInt(String aName, int aDefault, int aMinValue)
+   {
+      String vValue = getValue(aName);
+      if (vValue == null || vValue.isEmpty())
+      {
+         return aDefault;
+      }
+      try
+      {
+         return Math.max(aMinValue, Integer.parseInt(vValue));
+      }
+      catch (NumberFormatException e)
+      {
+         return aDefault;
+      }
+   }
+
+   protected static long getLong(String aName, long aDefault, long aMinValue)
+   {
+      String vValue = getValue(aName);
+      if (vValue == null || vValue.isEmpty())
+      {
+         return aDefault;
+      }
+      try
+      {
+         return Math.max(aMinValue, Long.parseLong(vValue));
+      }
+      catch (NumberFormatException e)
+      {
+         return aDefault;
+      }
+   }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2025 Gabriele Pezzini
+ * License: Creative Commons Attribution-NonCommercial 4.0 International (CC BY-NC 4.0)
+ * Full License: https://creativecommons.org/licenses/by-nc/4.0/legalcode
+ * SPDX-License-Identifier: CC-BY-NC-4.0
+ * Non-commercial use only. For commercial licensing, contact the author.
+ */
+package com.pezz.chess.pgn;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class PgnImportStageStatistics
+{
+   public enum Stage
+   {
+      READ, CHECK, WRITE
+   }
+
+   private static LongAdder[] iGames = new LongAdder[] { new LongAdder(), new LongAdder(), new LongAdder() };
+   private static LongAdder[] iBusyNanos = new LongAdder[] { new LongAdder(), new LongAdder(), new LongAdder() };
+   private static int[] iThreads = new int[3];
+   private static volatile long iStartNanos = System.nanoTime();
+
+   private PgnImportStageStatistics()
+   {
+   }
+
+   public static void clear()
+   {
+      for (int x = 0; x < iGames.length; x++)
+      {
+         iGames[x].reset();
+         iBusyNanos[x].reset();
+      }
+      iStartNanos = System.nanoTime();
+   }
+
+   public static void setThreads(Stage aStage, int aThreads)
+   {
+      iThreads[aStage.ordinal()] = aThreads;
+   }
+
+   public static void addGame(Stage aStage, long aBusyNanos)
+   {
+      addGames(aStage, 1, aBusyNanos);
+   }
+
+   public static void addGames(Stage aStage, int aGames, long aBusyNanos)
+   {
+      iGames[aStage.ordinal()].add(aGames);
+      iBusyNanos[aStage.ordinal()].add(aBusyNanos);
+   }
+
+   public static long getGames(Stage aStage)
+   {
+      return iGames[aStage.ordinal()].sum();
+   }
+
+   // games per second of wall clock time since the last clear()
+   public static double getGamesPerSecond(Stage aStage)
+   {
+      long vElapsed = System.nanoTime() - iStartNanos;
+      return vElapsed <= 0 ? 0 : getGames(aStage) * 1_000_000_000d / vElapsed;
+   }
+
+   // games per second the stage could sustain if its threads never waited on the queues
+   public static double getGamesPerBusySecond(Stage aStage)
+   {
+      long vBusy = iBusyNanos[aStage.ordinal()].sum();
+      return vBusy <= 0 ? 0 : getGames(aStage) * 1_000_000_000d * Math.max(1, iThreads[aStage.ordinal()]) / vBusy;
+   }
+
+   public static String getSummary()
+   {
+      StringBuilder vRet = new StringBuilder("Pgn import stages:");
+      for (Stage vStage : Stage.values())
+      {
+         vRet.append(String.format(" %s[threads=%d games=%d games/s=%.1f busy games/s=%.1f]", vStage.name(),
+               iThreads[vStage.ordinal()], getGames(vStage), getGamesPerSecond(vStage),
+               getGamesPerBusySecond(vStage)));
+      }
+      return vRet.toString();
+   }
+}
@@ -23,7 +23,8 @@ public class PgnImportThread extends Thread
    public static final int RUNNING = 1;
    public static final int ENDED = 2;
    private int iStatus = INITIALIZING;
-   private boolean iCancelRequest;
+   private volatile boolean iCancelRequest;
+   private PgnFileParser iParser;
 
    public PgnImportThread(GameController aController, ArrayList<File> aPGNFiles)
    {
@@ -52,8 +53,8 @@ public class PgnImportThread extends Thread
       iController.notifyPgnImportRunning();
       try
       {
-         PgnFileParser vParser = new PgnFileParser();
-         vParser.doIt(this, iPGNFiles);
+         iParser = new PgnFileParser();
+         iParser.doIt(this, iPGNFiles);
       }
       catch (Exception e)
       {
@@ -108,5 +109,10 @@ public class PgnImportThread extends Thread
    public void setCancelRequest(boolean aCancelRequest)
    {
       iCancelRequest = aCancelRequest;
+      PgnFileParser vParser = iParser;
+      if (aCancelRequest && vParser != null)
+      {
+         vParser.cancel();
+      }
    }
 }
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2025 Gabriele Pezzini
+ * License: Creative Commons Attribution-NonCommercial 4.0 International (CC BY-NC 4.0)
+ * Full License: https://creativecommons.org/licenses/by-nc/4.0/legalcode
+ * SPDX-License-Identifier: CC-BY-NC-4.0
+ * Non-commercial use only. For commercial licensing, contact the author.
+ */
+package com.pezz.chess.pgn;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+public class PgnMappedFileTokenizer extends PgnGameTokenizer
+{
+   private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+   private static final int SPLIT_SEARCH_SIZE = 1024 * 1024;
+   private static final byte[][] SPLIT_TAGS = new byte[][] { "[Event ".getBytes(StandardCharsets.US_ASCII),
+         "[White ".getBytes(StandardCharsets.US_ASCII) };
+   private FileChannel iChannel;
+   private long iEnd;
+   private long iWindowSize;
+
+   public PgnMappedFileTokenizer(Path aPath, String aEntryName) throws IOException
+   {
+      this(aPath, aEntryName, 0, -1);
+   }
+
+   // reads only the bytes from aStart to aEnd (aEnd = -1 means end of file)
+   public PgnMappedFileTokenizer(Path aPath, String aEntryName, long aStart, long aEnd) throws IOException
+   {
+      super(aEntryName);
+      iChannel = FileChannel.open(aPath, StandardOpenOption.READ);
+      iEnd = aEnd < 0 ? iChannel.size() : Math.min(aEnd, iChannel.size());
+      iWindowOffset = aStart;
+      iWindowSize = WINDOW_SIZE;
+   }
+
+   @Override
+   protected boolean nextWindow(int aKeepFrom) throws IOException
+   {
+      int vLimit = iWindow.limit();
+      if (iWindowOffset + vLimit >= iEnd)
+      {
+         return false;
+      }
+      int vKept = vLimit - aKeepFrom;
+      // a single game bigger than the window: the window grows
+      while (vKept >= iWindowSize / 2 && iWindowSize < Integer.MAX_VALUE)
+      {
+         iWindowSize = Math.min(iWindowSize * 2, Integer.MAX_VALUE);
+      }
+      long vOffset = iWindowOffset + aKeepFrom;
+      long vSize = Math.min(iWindowSize, iEnd - vOffset);
+      iWindow = iChannel.map(FileChannel.MapMode.READ_ONLY, vOffset, vSize);
+      iWindowOffset = vOffset;
+      return true;
+   }
+
+   @Override
+   public void close() throws IOException
+   {
+      iChannel.close();
+   }
+
+   // Splits the file from aStart to the end in about aRanges byte ranges. Every range but the first begins at a safe
+   // game boundary, i.e. an empty line followed by an [Event or [White tag, so each range can be read by its own
+   // tokenizer. The returned array holds the start of every range followed by the file size.
+   public static long[] findRanges(Path aPath, long aStart, int aRanges) throws IOException
+   {
+      try (FileChannel vChannel = FileChannel.open(aPath, StandardOpenOption.READ))
+      {
+         long vSize = vChannel.size();
+         ArrayList<Long> vStarts = new ArrayList<>();
+         vStarts.add(aStart);
+         for (int x = 1; x < aRanges; x++)
+         {
+            long vTarget = Math.max(aStart + (vSize - aStart) / aRanges * x, vStarts.get(vStarts.size() - 1) + 1);
+            long vStart = findGameBoundary(vChannel, vTarget, vSize);
+            if (vStart >= vSize)
+            {
+               break;
+            }
+            if (vStart > vStarts.get(vStarts.size() - 1))
+            {
+               vStarts.add(vStart);
+            }
+         }
+         long[] vRet = new long[vStarts.size() + 1];
+         for (int x = 0; x < vStarts.size(); x++)
+         {
+            vRet[x] = vStarts.get(x);
+         }
+         vRet[vStarts.size()] = vSize;
+         return vRet;
+      }
+   }
+
+   private static long findGameBoundary(FileChannel aChannel, long aFrom, long aSize) throws IOException
+   {
+      long vPosition = aFrom;
+      while (vPosition < aSize)
+      {
+         long vMapSize = Math.min(SPLIT_SEARCH_SIZE + 16, aSize - vPosition);
+         MappedByteBuffer vBuffer = aChannel.map(FileChannel.MapMode.READ_ONLY, vPosition, vMapSize);
+         int vLimit = (int) vMapSize;
+         for (int x = 0; x < vLimit; x++)
+         {
+            if (vBuffer.get(x) == '[' && x > 0 && isAfterEmptyLine(vBuffer, x) && isSplitTag(vBuffer, x, vLimit))
+            {
+               return vPosition + x;
+            }
+         }
+         if (vMapSize < SPLIT_SEARCH_SIZE + 16)
+         {
+            break;
+         }
+         vPosition += SPLIT_SEARCH_SIZE;
+      }
+      return aSize;
+   }
+
+   private static boolean isAfterEmptyLine(MappedByteBuffer aBuffer, int aIndex)
+   {
+      int x = aIndex - 1;
+      if (aBuffer.get(x) != '\n')
+      {
+         return false;
+      }
+      x--;
+      if (x >= 0 && aBuffer.get(x) == '\r')
+      {
+         x--;
+      }
+      return x >= 0 && aBuffer.get(x) == '\n';
+   }
+
+   private static boolean isSplitTag(MappedByteBuffer aBuffer, int aIndex, int aLimit)
+   {
+      for (byte[] vTag : SPLIT_TAGS)
+      {
+         if (aIndex + vTag.length <= aLimit)
+         {
+            boolean vMatch = true;
+            for (int y = 1; y < vTag.length && vMatch; y++)
+            {
+               vMatch = aBuffer.get(aIndex + y) == vTag[y];
+            }
+            if (vMatch)
+            {
+               return true;
+            }
+         }
+      }
+      return false;
+   }
+}
@@ -8,9 +8,11 @@
  */
 package com.pezz.chess.pgn;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Objects;
-import java.util.StringTokenizer;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -20,37 +22,43 @@ import com.pezz.chess.uidata.ChessBoardHeaderData;
 
 public class PgnRawGame
 {
-   private ArrayList<String> iHeaders;
-   private StringBuilder iRawMoves;
+   private static final ByteBuffer EMPTY_MOVES = ByteBuffer.allocate(0);
+   private ByteBuffer iRawMoves;
    private ChessBoardHeaderData iChessBoardHeaderData;
    private String iEntryName;
    private String iGameHash;
    private int iGameNr;
+   private int iRangeNr;
    private boolean iEndOfQueueObject;
+   private PgnFileParserStatistics iFileStatistics;
+   private PgnImportCheckpoint iCheckpoint;
+   private long iEndOffset;
    private static AtomicInteger iCounter = new AtomicInteger(0);
 
    public PgnRawGame(String aEntryName)
    {
       iEntryName = aEntryName;
-      iHeaders = new ArrayList<>();
-      iRawMoves = new StringBuilder();
+      iRawMoves = EMPTY_MOVES;
       iChessBoardHeaderData = new ChessBoardHeaderData();
    }
 
+   // computed on first use by the thread owning the game (a checker), not by the reader
    public String getGameHash()
    {
+      if (iGameHash == null)
+      {
+         iGameHash = hash();
+      }
       return iGameHash;
    }
 
    public void clear()
    {
-      iHeaders.clear();
-      iRawMoves = new StringBuilder();
+      iRawMoves = EMPTY_MOVES;
    }
 
    public void addHeader(String aHeader)
    {
-      iHeaders.add(aHeader);
       if (aHeader.length() >= 4)
       {
          String[] vHeaderValues = getHeaderNameValue(aHeader);
@@ -207,17 +215,10 @@ public class PgnRawGame
       return vRet;
    }
 
-   public void addRawMovesTextLine(String aMovesTextLine, boolean aIsFinished)
+   // aRawMoves is the whole moves text of the game, lines included, as read from the pgn source
+   public void setRawMoves(ByteBuffer aRawMoves)
    {
-      if (iRawMoves.length() > 0)
-      {
-         iRawMoves.append(' ');
-      }
-      iRawMoves.append(aMovesTextLine);
-      if (aIsFinished)
-      {
-         iGameHash = hash();
-      }
+      iRawMoves = aRawMoves;
    }
 
    protected String getHeaderValue(String aHeader)
@@ -237,21 +238,40 @@ public class PgnRawGame
    public ArrayList<String> getRawMovesList()
    {
       ArrayList<String> vMovesList = new ArrayList<>();
-      int vLen = iRawMoves.length();
-      for (int x = 0; x < vLen; x++)
+      // the moves lines were joined with a space: the move ending a line is ended by the next moves line
+      String vLineEndMove = null;
+      int vLen = iRawMoves.limit();
+      for (int vLineStart = 0, vLineEnd; vLineStart < vLen; vLineStart = vLineEnd + 1)
       {
-         char vChar = iRawMoves.charAt(x);
-         if ((vChar >= 'B' && vChar <= 'R') || (vChar >= 'a' && vChar <= 'h'))
+         vLineEnd = getLineEnd(vLineStart);
+         if (!isMovesLine(iRawMoves, vLineStart, vLineEnd))
          {
-            int vStart = x;
-            for (int y = x + 1; y < vLen; y++)
+            continue;
+         }
+         if (vLineEndMove != null)
+         {
+            vMovesList.add(vLineEndMove);
+            vLineEndMove = null;
+         }
+         for (int x = vLineStart; x < vLineEnd; x++)
+         {
+            byte vByte = iRawMoves.get(x);
+            if ((vByte >= 'B' && vByte <= 'R') || (vByte >= 'a' && vByte <= 'h'))
             {
-               x++;
-               vChar = iRawMoves.charAt(y);
-               if (vChar == ' ')
+               int vStart = x;
+               while (x < vLineEnd && !isSeparator(iRawMoves.get(x)))
                {
-                  vMovesList.add(iRawMoves.substring(vStart, y));
-                  break;
+                  x++;
+               }
+               byte[] vMove = new byte[x - vStart];
+               iRawMoves.get(vStart, vMove);
+               if (x < vLineEnd)
+               {
+                  vMovesList.add(new String(vMove, StandardCharsets.UTF_8));
+               }
+               else
+               {
+                  vLineEndMove = new String(vMove, StandardCharsets.UTF_8);
                }
             }
          }
@@ -259,6 +279,51 @@ public class PgnRawGame
       return vMovesList;
    }
 
+   private static boolean isSeparator(byte aByte)
+   {
+      return aByte == ' ' || aByte == '\n' || aByte == '\r' || aByte == '\t';
+   }
+
+   // the String based reader split the lines on \n, \r and \r\n
+   private int getLineEnd(int aStart)
+   {
+      int vLen = iRawMoves.limit();
+      int x = aStart;
+      while (x < vLen && iRawMoves.get(x) != '\n' && iRawMoves.get(x) != '\r')
+      {
+         x++;
+      }
+      return x;
+   }
+
+   // a line the String based reader added to the moves text: the empty ones, the header lines and the lines of two
+   // characters or less were skipped
+   static boolean isMovesLine(ByteBuffer aBuffer, int aStart, int aEnd)
+   {
+      return aEnd > aStart && aBuffer.get(aStart) != '[' && !isShortLine(aBuffer, aStart, aEnd);
+   }
+
+   // two characters or less once decoded: a character takes at most three bytes (or four for two chars), so only the
+   // lines up to six bytes with some non ASCII byte are decoded
+   static boolean isShortLine(ByteBuffer aBuffer, int aStart, int aEnd)
+   {
+      int vLen = aEnd - aStart;
+      if (vLen <= 2 || vLen > 6)
+      {
+         return vLen <= 2;
+      }
+      for (int x = aStart; x < aEnd; x++)
+      {
+         if (aBuffer.get(x) < 0)
+         {
+            byte[] vLine = new byte[vLen];
+            aBuffer.get(aStart, vLine);
+            return new String(vLine, StandardCharsets.UTF_8).length() <= 2;
+         }
+      }
+      return false;
+   }
+
    @Override
    public String toString()
    {
@@ -297,37 +362,62 @@ public class PgnRawGame
       return iChessBoardHeaderData;
    }
 
-   public StringBuilder getRawMoves()
+   public ByteBuffer getRawMoves()
    {
       return iRawMoves;
    }
 
+   // hash of the moves text without move numbers, results and separators: the bytes hashed are the same of the
+   // previous String based reader (the same moves lines, the text decoded and encoded again as UTF-8), so the hashes
+   // of the games already saved do not change. The ASCII tokens are passed to the digest straight from the source
+   // window, nothing is copied.
    protected String hash()
    {
       try
       {
-         StringTokenizer vTokens = new StringTokenizer(iRawMoves.toString(), " \n\r\t");
-         StringBuilder vBuilder = new StringBuilder();
-         while (vTokens.hasMoreTokens())
+         MessageDigest vDigest = Hash.getDigest();
+         ByteBuffer vMove = iRawMoves.duplicate();
+         int vLen = iRawMoves.limit();
+         for (int vLineStart = 0, vLineEnd; vLineStart < vLen; vLineStart = vLineEnd + 1)
          {
-            String vToken = vTokens.nextToken();
-            if (!(vToken.equals("0-1") || vToken.equals("1-0") || vToken.equals("1/2-1/2") || vToken.equals("*")))
+            vLineEnd = getLineEnd(vLineStart);
+            if (!isMovesLine(iRawMoves, vLineStart, vLineEnd))
+            {
+               continue;
+            }
+            int x = vLineStart;
+            while (x < vLineEnd)
             {
-               int vIdx = vToken.indexOf('.');
-               if (vIdx >= 0)
+               while (x < vLineEnd && isSeparator(iRawMoves.get(x)))
+               {
+                  x++;
+               }
+               int vStart = x;
+               while (x < vLineEnd && !isSeparator(iRawMoves.get(x)))
                {
-                  if (vIdx < vToken.length() - 1)
+                  x++;
+               }
+               int vTokenLen = x - vStart;
+               if (vTokenLen == 0 || isResult(vStart, vTokenLen))
+               {
+                  continue;
+               }
+               int vFrom = vStart;
+               for (int y = vStart; y < x; y++)
+               {
+                  if (iRawMoves.get(y) == '.')
                   {
-                     vBuilder.append(vToken.substring(vIdx + 1));
+                     vFrom = y + 1;
+                     break;
                   }
                }
-               else
+               if (vFrom < x)
                {
-                  vBuilder.append(vToken);
+                  update(vDigest, vMove, vFrom, x);
                }
             }
          }
-         return Hash.hash(vBuilder.toString());
+         return Hash.hash(vDigest);
       }
       catch (Exception e)
       {
@@ -335,6 +425,43 @@ public class PgnRawGame
       }
    }
 
+   private void update(MessageDigest aDigest, ByteBuffer aMove, int aFrom, int aTo)
+   {
+      for (int x = aFrom; x < aTo; x++)
+      {
+         if (iRawMoves.get(x) < 0)
+         {
+            // the malformed UTF-8 sequences were hashed as U+FFFD
+            byte[] vToken = new byte[aTo - aFrom];
+            iRawMoves.get(aFrom, vToken);
+            aDigest.update(new String(vToken, StandardCharsets.UTF_8).getBytes(StandardCharsets.UTF_8));
+            return;
+         }
+      }
+      aMove.limit(aTo).position(aFrom);
+      aDigest.update(aMove);
+   }
+
+   private boolean isResult(int aStart, int aLen)
+   {
+      switch (aLen)
+      {
+         case 1:
+            return iRawMoves.get(aStart) == '*';
+         case 3:
+            byte vByte0 = iRawMoves.get(aStart);
+            byte vByte2 = iRawMoves.get(aStart + 2);
+            return iRawMoves.get(aStart + 1) == '-'
+                  && ((vByte0 == '0' && vByte2 == '1') || (vByte0 == '1' && vByte2 == '0'));
+         case 7:
+            byte[] vDraw = new byte[7];
+            iRawMoves.get(aStart, vDraw);
+            return new String(vDraw, StandardCharsets.US_ASCII).equals("1/2-1/2");
+         default:
+            return false;
+      }
+   }
+
    public String getEntryName()
    {
       return iEntryName;
@@ -374,6 +501,17 @@ public class PgnRawGame
       iGameNr = aGameNr;
    }
 
+   // the byte range of the source the game has been read from, 0 when the source is not split
+   public int getRangeNr()
+   {
+      return iRangeNr;
+   }
+
+   public void setRangeNr(int aRangeNr)
+   {
+      iRangeNr = aRangeNr;
+   }
+
    public static PgnRawGame buildEndOfQueueObject()
    {
       PgnRawGame vRet = new PgnRawGame(null);
@@ -382,6 +520,37 @@ public class PgnRawGame
       return vRet;
    }
 
+   public PgnFileParserStatistics getFileStatistics()
+   {
+      return iFileStatistics;
+   }
+
+   public void setFileStatistics(PgnFileParserStatistics aFileStatistics)
+   {
+      iFileStatistics = aFileStatistics;
+   }
+
+   public PgnImportCheckpoint getCheckpoint()
+   {
+      return iCheckpoint;
+   }
+
+   public void setCheckpoint(PgnImportCheckpoint aCheckpoint)
+   {
+      iCheckpoint = aCheckpoint;
+   }
+
+   // offset in the source of the first byte after the game
+   public long getEndOffset()
+   {
+      return iEndOffset;
+   }
+
+   public void setEndOffset(long aEndOffset)
+   {
+      iEndOffset = aEndOffset;
+   }
+
    public boolean isEndOfQueueObject()
    {
       return iEndOfQueueObject;
@@ -8,48 +8,91 @@
  */
 package com.pezz.chess.pgn;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.zip.ZipEntry;
+import java.util.zip.GZIPInputStream;
 import java.util.zip.ZipFile;
 
+import com.pezz.chess.base.ChessLogger;
 import com.pezz.chess.base.ChessResources;
 
 public class PgnRawGameBuilderThread extends Thread
 {
+   private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+   private ArrayList<File> iFiles;
    private File iFile;
+   private PgnFileParserStatistics iFileStatistics;
    private static PgnRawGameCache iQueue = PgnRawGameCache.getInstance();
+   private static PgnImportProgress iProgress = PgnImportProgress.getInstance();
+   private static PgnImportJournal iJournal = PgnImportJournal.getInstance();
+   private LongAdder iBytesRead;
    private PgnImportThread iPgnImportThread;
+   private PgnFileParser iParser;
    private int iThreadsNumber;
    private Exception iError;
    // private int iCnt;
 
-   public PgnRawGameBuilderThread(File aFile, int aThreadsNumber, PgnImportThread aPgnImportThread)
+   // reads all the files one after the other: the games of a file are checked and written while the next one is read
+   public PgnRawGameBuilderThread(ArrayList<File> aFiles, int aThreadsNumber, PgnImportThread aPgnImportThread,
+         PgnFileParser aParser)
    {
       super("PgnRawGameBuilderThread");
       setPriority(MIN_PRIORITY);
-      iFile = aFile;
+      iFiles = aFiles;
       iThreadsNumber = aThreadsNumber;
       iPgnImportThread = aPgnImportThread;
+      iParser = aParser;
    }
 
    @Override
    public void run()
    {
-      try
-      {
-         popolateQueue();
-      }
-      catch (Exception e)
+      for (File vFile : iFiles)
       {
-         iError = e;
+         if (iPgnImportThread.isCancelRequest())
+         {
+            break;
+         }
+         iFile = vFile;
+         iFileStatistics = iParser.fileStarted(vFile);
+         iBytesRead = new LongAdder();
+         PgnImportStageStatistics.setThreads(PgnImportStageStatistics.Stage.READ, 1);
+         boolean vCompleted = false;
+         try
+         {
+            if (iJournal.isFileDone(vFile))
+            {
+               ChessLogger.getInstance().log(vFile.getAbsolutePath() + " already imported by an interrupted import");
+            }
+            else
+            {
+               popolateQueue();
+            }
+            if (!iPgnImportThread.isCancelRequest())
+            {
+               // headers and directories of the archives, games cut off at the end of the file
+               reportBytesRead(iFile.length() - iBytesRead.sum());
+               vCompleted = true;
+            }
+         }
+         catch (Exception e)
+         {
+            iError = e;
+            ChessLogger.getInstance().log(iFile.getAbsolutePath(), e);
+         }
+         iFileStatistics.readEnded(vCompleted);
       }
-      iQueue.clean2LevelCache();
       addEndOfJobObjectsInQueue();
    }
 
@@ -69,6 +112,26 @@ public class PgnRawGameBuilderThread extends Thread
       {
          parsePgnFlatFile();
       }
+      else if (vExt.equals(ChessResources.RESOURCES.getString("Tar.extention")))
+      {
+         parsePgnTarFile(false);
+      }
+      else if (vExt.equals(ChessResources.RESOURCES.getString("Tgz.extention")))
+      {
+         parsePgnTarFile(true);
+      }
+      else if (vExt.equals(ChessResources.RESOURCES.getString("Gz.extention")))
+      {
+         String vName = iFile.getName().substring(0, vIdx).toLowerCase();
+         if (vName.endsWith(ChessResources.RESOURCES.getString("Tar.extention")))
+         {
+            parsePgnTarFile(true);
+         }
+         else
+         {
+            parsePgnGzipFile();
+         }
+      }
       else
       {
          throw new Exception(
@@ -76,102 +139,269 @@ public class PgnRawGameBuilderThread extends Thread
       }
    }
 
+   // The entries are independent: they are read by a pool of PgnReaderThreads threads, each one with its own input
+   // stream. Every entry has its own tokenizer, so the games are numbered per entry as in a sequential read.
    protected void parsePgnZipFile() throws Exception
    {
-      int vCnt = 0;
       try (ZipFile vZip = new ZipFile(iFile))
       {
+         ArrayList<ZipEntry> vEntries = new ArrayList<>();
          for (Enumeration<? extends ZipEntry> vEnum = vZip.entries(); vEnum.hasMoreElements();)
          {
-            if (iPgnImportThread.isCancelRequest())
+            ZipEntry vEntry = vEnum.nextElement();
+            if (!vEntry.isDirectory()
+                  && vEntry.getName().toLowerCase().endsWith(ChessResources.RESOURCES.getString("Pgn.extention")))
             {
-               break;
+               if (iJournal.isEntryDone(iFile, vEntry.getName()))
+               {
+                  reportBytesRead(vEntry.getCompressedSize());
+               }
+               else
+               {
+                  vEntries.add(vEntry);
+               }
             }
-            ZipEntry vEntry = vEnum.nextElement();
-            if (vEntry.getName().toLowerCase().endsWith(ChessResources.RESOURCES.getString("Pgn.extention")))
+         }
+         int vThreads = Math.max(1, Math.min(PgnImportSettings.getReaderThreadsNumber(), vEntries.size()));
+         PgnImportStageStatistics.setThreads(PgnImportStageStatistics.Stage.READ, vThreads);
+         if (vThreads == 1)
+         {
+            for (ZipEntry vEntry : vEntries)
             {
-               vCnt++;
-               parsePgnFile(vZip.getInputStream(vEntry), vEntry.getName(), vCnt);
+               if (iPgnImportThread.isCancelRequest())
+               {
+                  break;
+               }
+               parsePgnZipEntry(vZip, vEntry);
             }
+            return;
+         }
+         ExecutorService vPool = Executors.newFixedThreadPool(vThreads);
+         try
+         {
+            ArrayList<Future<Void>> vResults = new ArrayList<>();
+            for (ZipEntry vEntry : vEntries)
+            {
+               vResults.add(vPool.submit(() ->
+               {
+                  if (!iPgnImportThread.isCancelRequest())
+                  {
+                     parsePgnZipEntry(vZip, vEntry);
+                  }
+                  return null;
+               }));
+            }
+            for (Future<Void> vResult : vResults)
+            {
+               try
+               {
+                  vResult.get();
+               }
+               catch (ExecutionException e)
+               {
+                  throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+               }
+            }
+         }
+         finally
+         {
+            vPool.shutdownNow();
          }
       }
    }
 
-   protected void parsePgnFlatFile() throws Exception
+   // The compressed bytes are counted while they are read from the file (see PgnCountingInputStream), the progress
+   // does not depend on the size of the decompressed data
+   protected InputStream openCompressedFile(boolean aGzip) throws IOException
+   {
+      InputStream vInputStream = new PgnCountingInputStream(new FileInputStream(iFile), this::reportBytesRead);
+      return aGzip ? new GZIPInputStream(vInputStream, STREAM_BUFFER_SIZE)
+            : new BufferedInputStream(vInputStream, STREAM_BUFFER_SIZE);
+   }
+
+   // a single pgn compressed with gzip, an import interrupted is resumed skipping the decompressed bytes already read
+   protected void parsePgnGzipFile() throws Exception
    {
-      FileInputStream vFis = new FileInputStream(iFile);
-      parsePgnFile(vFis, iFile.getName(), 1);
+      PgnImportCheckpoint vCheckpoint = iJournal.getCheckpoint(iFile, iFile.getName());
+      try (PgnGameTokenizer vTokenizer = new PgnStreamTokenizer(openCompressedFile(true), iFile.getName(),
+            vCheckpoint.getOffset()))
+      {
+         parsePgnGames(vTokenizer, vCheckpoint, 0);
+         if (!iPgnImportThread.isCancelRequest())
+         {
+            vCheckpoint.readEnded(0, vTokenizer.getGameNr());
+         }
+      }
    }
 
-   protected void parsePgnFile(InputStream aInputStream, String aEntryName, int aGameNr) throws Exception
+   // The entries of a tar can only be read in sequence: they are parsed one after the other while the archive is
+   // decompressed, the entries already imported by an interrupted import are skipped
+   protected void parsePgnTarFile(boolean aGzip) throws Exception
    {
-      int vGameNr = 0;
-      boolean vGameStarted = false;
-      char[] vChar3 = new char[3];
-      try (BufferedReader vBr = new BufferedReader(new InputStreamReader(aInputStream, StandardCharsets.UTF_8)))
+      try (PgnTarReader vTar = new PgnTarReader(openCompressedFile(aGzip)))
       {
-         String vLine = vBr.readLine();
-         PgnRawGame vRawGame = null;
-         while (vLine != null)
+         while (!iPgnImportThread.isCancelRequest() && vTar.nextEntry())
          {
-            int vLen = vLine.length();
-            if (vLen > 0)
+            String vEntryName = vTar.getEntryName();
+            if (!vEntryName.toLowerCase().endsWith(ChessResources.RESOURCES.getString("Pgn.extention"))
+                  || iJournal.isEntryDone(iFile, vEntryName))
             {
-               char vFirstChar = vLine.charAt(0);
-               if (!vGameStarted && vFirstChar == '[')
+               continue;
+            }
+            PgnImportCheckpoint vCheckpoint = iJournal.getCheckpoint(iFile, vEntryName);
+            try (PgnGameTokenizer vTokenizer = new PgnStreamTokenizer(vTar.getInputStream(), vEntryName,
+                  vCheckpoint.getOffset()))
+            {
+               parsePgnGames(vTokenizer, vCheckpoint, 0);
+               if (!iPgnImportThread.isCancelRequest())
                {
-                  vRawGame = new PgnRawGame(aEntryName);
-                  vGameStarted = true;
+                  vCheckpoint.readEnded(0, vTokenizer.getGameNr());
                }
-               if (vGameStarted)
+            }
+         }
+      }
+   }
+
+   // an entry interrupted by a previous import is read from the end of the last game saved
+   protected void parsePgnZipEntry(ZipFile aZip, ZipEntry aEntry) throws Exception
+   {
+      PgnImportCheckpoint vCheckpoint = iJournal.getCheckpoint(iFile, aEntry.getName());
+      try (PgnGameTokenizer vTokenizer = new PgnStreamTokenizer(aZip.getInputStream(aEntry), aEntry.getName(),
+            vCheckpoint.getOffset()))
+      {
+         long vSize = aEntry.getSize();
+         long vCompressedSize = aEntry.getCompressedSize();
+         double vScale = vSize > 0 && vCompressedSize > 0 ? (double) vCompressedSize / vSize : 0;
+         reportBytesRead((long) (vCheckpoint.getOffset() * vScale));
+         vTokenizer.setProgress(this::reportBytesRead, vScale);
+         parsePgnGames(vTokenizer, vCheckpoint, 0);
+         if (!iPgnImportThread.isCancelRequest())
+         {
+            vCheckpoint.readEnded(0, vTokenizer.getGameNr());
+         }
+      }
+   }
+
+   // a file interrupted by a previous import is read from the end of the last game saved
+   protected void parsePgnFlatFile() throws Exception
+   {
+      PgnImportCheckpoint vCheckpoint = iJournal.getCheckpoint(iFile, iFile.getName());
+      long vStart = vCheckpoint.getOffset();
+      reportBytesRead(vStart);
+      int vReaders = PgnImportSettings.getReaderThreadsNumber();
+      if (vReaders > 1 && iFile.length() - vStart >= PgnImportSettings.getSplitMinFileSize())
+      {
+         parsePgnFlatFileByRanges(vReaders, vCheckpoint);
+         return;
+      }
+      try (PgnGameTokenizer vTokenizer = new PgnMappedFileTokenizer(iFile.toPath(), iFile.getName(), vStart, -1))
+      {
+         vTokenizer.setProgress(this::reportBytesRead, 1);
+         parsePgnGames(vTokenizer, vCheckpoint, 0);
+         if (!iPgnImportThread.isCancelRequest())
+         {
+            vCheckpoint.readEnded(0, vTokenizer.getGameNr());
+         }
+      }
+   }
+
+   // Every range is read once by its own thread. The games are numbered by range and by position in the range, the
+   // checkpoint puts them back in the order of the file as the ranges end.
+   protected void parsePgnFlatFileByRanges(int aReaders, PgnImportCheckpoint aCheckpoint) throws Exception
+   {
+      long[] vRanges = PgnMappedFileTokenizer.findRanges(iFile.toPath(), aCheckpoint.getOffset(), aReaders);
+      int vRangesNr = vRanges.length - 1;
+      PgnImportStageStatistics.setThreads(PgnImportStageStatistics.Stage.READ, vRangesNr);
+      aCheckpoint.setRangesNr(vRangesNr);
+      Exception[] vErrors = new Exception[vRangesNr];
+      Thread[] vReaders = new Thread[vRangesNr];
+      for (int x = 0; x < vRangesNr; x++)
+      {
+         int vRange = x;
+         vReaders[x] = new Thread("PgnRawGameBuilderThread-" + x)
+         {
+            @Override
+            public void run()
+            {
+               try
                {
-                  if (vFirstChar == '[')
+                  try (PgnGameTokenizer vTokenizer = new PgnMappedFileTokenizer(iFile.toPath(), iFile.getName(),
+                        vRanges[vRange], vRanges[vRange + 1]))
                   {
-                     vRawGame.addHeader(vLine);
-                  }
-                  else
-                  {
-                     if (vLen > 2)
+                     vTokenizer.setProgress(PgnRawGameBuilderThread.this::reportBytesRead, 1);
+                     parsePgnGames(vTokenizer, aCheckpoint, vRange);
+                     if (!iPgnImportThread.isCancelRequest())
                      {
-                        vChar3[0] = vLine.charAt(vLen - 3);
-                        vChar3[1] = vLine.charAt(vLen - 2);
-                        vChar3[2] = vLine.charAt(vLen - 1);
-                        if ((vChar3[0] == '1' && vChar3[1] == '-' && vChar3[2] == '0')
-                              || (vChar3[0] == '0' && vChar3[1] == '-' && vChar3[2] == '1')
-                              || (vChar3[0] == '1' && vChar3[1] == '/' && vChar3[2] == '2') || (vChar3[2] == '*'))
-                        {
-                           vRawGame.addRawMovesTextLine(vLine, true);
-                           vRawGame.setGameNr(++vGameNr);
-                           iQueue.push(vRawGame);
-                           // iCnt++;
-                           vGameStarted = false;
-                        }
-                        else
-                        {
-                           vRawGame.addRawMovesTextLine(vLine, false);
-                        }
+                        aCheckpoint.readEnded(vRange, vTokenizer.getGameNr());
                      }
                   }
                }
+               catch (Exception e)
+               {
+                  vErrors[vRange] = e;
+               }
             }
-            vLine = vBr.readLine();
+         };
+         vReaders[x].setPriority(MIN_PRIORITY);
+         vReaders[x].start();
+      }
+      for (Thread vReader : vReaders)
+      {
+         vReader.join();
+      }
+      for (Exception vError : vErrors)
+      {
+         if (vError != null)
+         {
+            throw vError;
          }
       }
    }
 
+   protected void parsePgnGames(PgnGameTokenizer aTokenizer, PgnImportCheckpoint aCheckpoint, int aRangeNr)
+         throws Exception
+   {
+      long vLastPushTime = System.nanoTime();
+      PgnRawGame vRawGame;
+      while (!iPgnImportThread.isCancelRequest() && (vRawGame = aTokenizer.nextGame()) != null)
+      {
+         PgnImportStageStatistics.addGame(PgnImportStageStatistics.Stage.READ, System.nanoTime() - vLastPushTime);
+         vRawGame.setFileStatistics(iFileStatistics);
+         vRawGame.setCheckpoint(aCheckpoint);
+         vRawGame.setRangeNr(aRangeNr);
+         iFileStatistics.incrementGamesRead();
+         iProgress.gameRead();
+         iQueue.push(vRawGame);
+         vLastPushTime = System.nanoTime();
+      }
+   }
+
+   protected void reportBytesRead(long aBytes)
+   {
+      iBytesRead.add(aBytes);
+      iProgress.addBytesRead(aBytes);
+   }
+
    public void clear()
    {
       iPgnImportThread = null;
+      iFiles = null;
       iFile = null;
    }
 
    protected void addEndOfJobObjectsInQueue()
    {
-      PgnRawGameWriterThread.addToGameCounter(PgnFileParserStatistics.getGamesDuplicated());
-      for (int x = 0; x < iThreadsNumber; x++)
+      try
+      {
+         for (int x = 0; x < iThreadsNumber; x++)
+         {
+            PgnRawGame vEnd = PgnRawGame.buildEndOfQueueObject();
+            iQueue.push(vEnd);
+         }
+      }
+      catch (InterruptedException e)
       {
-         PgnRawGame vEnd = PgnRawGame.buildEndOfQueueObject();
-         iQueue.push(vEnd);
+         iError = e;
       }
    }
 
@@ -8,20 +8,21 @@
  */
 package com.pezz.chess.pgn;
 
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class PgnRawGameCache
 {
    private static final PgnRawGameCache iCACHE = new PgnRawGameCache();
    private final LinkedBlockingQueue<PgnRawGame> iQueue;
-   private Set<String> iGameSet;
+   private final int iCapacity;
+   private final AtomicInteger iPeakSize;
 
    private PgnRawGameCache()
    {
-      iQueue = new LinkedBlockingQueue<>();
-      iGameSet = ConcurrentHashMap.newKeySet();
+      iCapacity = PgnImportSettings.getRawQueueCapacity();
+      iQueue = new LinkedBlockingQueue<>(iCapacity);
+      iPeakSize = new AtomicInteger();
    }
 
    public static PgnRawGameCache getInstance()
@@ -29,29 +30,11 @@ public class PgnRawGameCache
       return iCACHE;
    }
 
-   public void push(PgnRawGame aPgnRawGame)
+   // blocks while the queue is full
+   public void push(PgnRawGame aPgnRawGame) throws InterruptedException
    {
-      if (iQueue.size() > 4000)
-      {
-         while (iQueue.size() > 2000)
-         {
-            try
-            {
-               Thread.sleep(2000);
-            }
-            catch (InterruptedException e)
-            {
-            }
-         }
-      }
-      if (iGameSet.add(aPgnRawGame.getGameHash()))
-      {
-         iQueue.offer(aPgnRawGame);
-      }
-      else
-      {
-         PgnFileParserStatistics.incrementGamesDuplicated();
-      }
+      iQueue.put(aPgnRawGame);
+      iPeakSize.accumulateAndGet(iQueue.size(), Math::max);
    }
 
    public PgnRawGame pop() throws InterruptedException
@@ -59,19 +42,25 @@ public class PgnRawGameCache
       return iQueue.take();
    }
 
-   public void clean2LevelCache()
+   public int size()
    {
-      iGameSet = ConcurrentHashMap.newKeySet();
+      return iQueue.size();
    }
 
-   public int size()
+   public int getCapacity()
    {
-      return iQueue.size();
+      return iCapacity;
+   }
+
+   // highest number of games waiting in the queue since the last clean()
+   public int getPeakSize()
+   {
+      return iPeakSize.get();
    }
 
    public void clean()
    {
-      clean2LevelCache();
       iQueue.clear();
+      iPeakSize.set(0);
    }
 }
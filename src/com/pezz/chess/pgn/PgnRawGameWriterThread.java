@@ -9,35 +9,39 @@
 package com.pezz.chess.pgn;
 
 import java.util.ArrayList;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
 
-import com.pezz.chess.base.ChessColor;
 import com.pezz.chess.base.ChessLogger;
-import com.pezz.chess.base.Coordinate;
 import com.pezz.chess.base.GameController;
-import com.pezz.chess.base.InvalidMoveCause;
-import com.pezz.chess.base.MoveResult;
-import com.pezz.chess.board.ChessBoard;
+import com.pezz.chess.board.PositionCodec;
 import com.pezz.chess.db.table.GameHeader;
-import com.pezz.chess.pieces.ChessBoardPiece;
-import com.pezz.chess.pieces.ChessPiece;
-import com.pezz.chess.pieces.SimpleChessPiece;
+import com.pezz.chess.persistence.PgnGameRecord;
+import com.pezz.chess.uidata.ChessBoardHeaderData;
 import com.pezz.util.itn.SQLConnection;
 
 public class PgnRawGameWriterThread extends Thread
 {
    private GameController iGameController;
    private static PgnCheckedRawGameCache iQueue = PgnCheckedRawGameCache.getInstance();
-   private static AtomicInteger iGameCounter = new AtomicInteger();
    private PgnImportThread iPgnImportThread;
+   private CountDownLatch iWritersEnded;
    private int iThreadNr;
    private Exception iException;
+   // games waiting to be written together in a transaction, see writeBatch
+   private ArrayList<PgnCheckedRawGame> iBatch = new ArrayList<>();
+   private long iBatchStart;
+   private int iGroupCommitGames = Math.min(PgnImportSettings.getGroupCommitGames(),
+         SQLConnection.getDBPersistance().getMaxPgnGamesPerTransaction());
+   private long iGroupCommitInterval = PgnImportSettings.getGroupCommitInterval();
 
-   public PgnRawGameWriterThread(int aThreadNr, PgnImportThread aPgnImportThread)
+   public PgnRawGameWriterThread(int aThreadNr, PgnImportThread aPgnImportThread, CountDownLatch aWritersEnded)
    {
       super("PgnFileParserThreadWriter-" + aThreadNr);
       iThreadNr = aThreadNr;
       iPgnImportThread = aPgnImportThread;
+      iWritersEnded = aWritersEnded;
       iGameController = aPgnImportThread.getController();
       setPriority(Thread.MIN_PRIORITY);
    }
@@ -47,413 +51,185 @@ public class PgnRawGameWriterThread extends Thread
       return iThreadNr;
    }
 
-   public static void resetCounter()
-   {
-      iGameCounter.set(0);
-   }
-
-   public static void addToGameCounter(int aValue)
-   {
-      iGameCounter.addAndGet(aValue);
-   }
-
    @Override
    public void run()
    {
       try (SQLConnection vConnection = iGameController.newConnction())
       {
-         while (!iPgnImportThread.isCancelRequest())
+         try
          {
-            PgnCheckedRawGame vCheckedRawGame = iQueue.pop();
-            int vCurrentGameNr = iGameCounter.incrementAndGet();
-            iPgnImportThread.setCurrentGameNumber(vCurrentGameNr);
-            if (vCheckedRawGame.isEndOfQueueObject())
+            while (!iPgnImportThread.isCancelRequest())
             {
-               break;
-            }
-            PgnImportResult vResult = vCheckedRawGame.getPgnImportResult();
-            if (vResult == PgnImportResult.ok)
-            {
-               PgnImportResult vRes = buildGame(vCheckedRawGame, vConnection);
-               switch (vRes)
+               PgnCheckedRawGame vCheckedRawGame;
+               if (iBatch.isEmpty())
                {
-                  case error:
-                     PgnFileParserStatistics.incrementGamesInError();
-                     break;
-                  case noNewVariants:
-                     PgnFileParserStatistics.incrementGamesDuplicated();
-                     break;
-                  case ok:
-                     break;
+                  vCheckedRawGame = iQueue.pop();
+               }
+               else
+               {
+                  vCheckedRawGame = iQueue
+                        .pop(Math.max(1, iBatchStart + iGroupCommitInterval - System.currentTimeMillis()));
+                  if (vCheckedRawGame == null)
+                  {
+                     writeBatch(vConnection);
+                     continue;
+                  }
+               }
+               if (vCheckedRawGame.isEndOfQueueObject())
+               {
+                  break;
+               }
+               if (vCheckedRawGame.getPgnImportResult() == PgnImportResult.error)
+               {
+                  endGame(vCheckedRawGame, PgnImportResult.error);
+                  continue;
+               }
+               if (iBatch.isEmpty())
+               {
+                  iBatchStart = System.currentTimeMillis();
+               }
+               iBatch.add(vCheckedRawGame);
+               if (iBatch.size() >= iGroupCommitGames
+                     || System.currentTimeMillis() - iBatchStart >= iGroupCommitInterval)
+               {
+                  writeBatch(vConnection);
                }
             }
          }
-      }
-      catch (Exception e)
-      {
-         iException = e;
-         ChessLogger.getInstance().log(e);
-         iGameController.showErrorDialog(e);
-      }
-   }
-
-   protected PgnImportResult buildGame(PgnCheckedRawGame aResult, SQLConnection aConnection)
-   {
-      if (aResult.getPgnImportResult() == PgnImportResult.error)
-      {
-         return PgnImportResult.error;
-      }
-      String vGameHash = aResult.getPgnRawGame().getGameHash();
-      GameHeader vHeader = new GameHeader(aConnection);
-      try
-      {
-         if (vHeader.getGameIdWithHash(vGameHash) > 0)
+         finally
          {
-            return PgnImportResult.noNewVariants;
+            // also the games taken from the queue before a cancel request
+            writeBatch(vConnection);
          }
       }
-      catch (Exception e)
-      {
-         return PgnImportResult.error;
-      }
-      PgnImportResult vResult = PgnImportResult.ok;
-      try
+      catch (InterruptedException e)
       {
-         aResult.getChessBoard().persistPgnGame(vGameHash, aResult.getGameNr(), aConnection);
+         // import cancelled
+         iException = e;
       }
       catch (Exception e)
       {
-         vResult = PgnImportResult.error;
-      }
-      return vResult;
-   }
-
-   protected MoveResult parseMove(RawMove aRawMove, String aRawMoveStr, ChessBoard aChessBoard)
-   {
-      aRawMove = aRawMove.parseMove(aRawMoveStr, aChessBoard);
-      if (!aRawMove.isValid())
-      {
-         return new MoveResult(aRawMove.getInvalidMoveCause(), aRawMove.getInvalidMoveMessage());
+         iException = e;
+         ChessLogger.getInstance().log(e);
+         iGameController.showErrorDialog(e);
       }
-      switch (aRawMove.getRawMoveType())
+      finally
       {
-         case UNKNOWN:
-            return new MoveResult(InvalidMoveCause.INVALID_MOVE_FORMAT);
-         case SHORT_CASTLE:
-            return performShortCastle(aRawMove, aChessBoard);
-         case LONG_CASTLE:
-            return performLongCastle(aRawMove, aChessBoard);
-         case SIMPLE_PAWN:
-            return performSimplePawnMove(aRawMove, aChessBoard);
-         case SIMPLE_KING:
-            return performSimpleKingMove(aRawMove, aChessBoard);
-         case SIMPLE_PIECE:
-            return performSimplePieceMove(aRawMove, aChessBoard);
-         case CAPTURE_PAWN:
-            return performCapturePawnMove(aRawMove, aChessBoard);
-         case CAPTURE_KING:
-            return performCaptureKingMove(aRawMove, aChessBoard);
-         case CAPTURE_PIECE:
-            return performCapturePieceMove(aRawMove, aChessBoard);
+         iWritersEnded.countDown();
       }
-      return new MoveResult(InvalidMoveCause.INVALID_MOVE_FORMAT);
    }
 
-   protected MoveResult performShortCastle(RawMove aRawMove, ChessBoard aChessBoard)
+   // Writes the games of the batch in a transaction (see Persistable.persistPgnGames) and commits it. A game in error
+   // is rolled back alone; when the whole transaction is lost (e.g. a deadlock, the connection) every game of the
+   // batch is written again in a transaction of its own, only the games lost again are in error.
+   protected void writeBatch(SQLConnection aConnection)
    {
+      if (iBatch.isEmpty())
       {
-         if (aChessBoard.getColorToMove() == ChessColor.BLACK)
-         {
-            return performShortBlackCastle(aRawMove, aChessBoard);
-         }
-         return performShortWhiteCastle(aRawMove, aChessBoard);
+         return;
       }
-   }
-
-   protected MoveResult performShortBlackCastle(RawMove aRawMove, ChessBoard aChessBoard)
-   {
-      ChessBoardPiece vPiece = aChessBoard.getChessBoardPiece(Coordinate.E8);
-      if (vPiece.getChessPiece() != null && vPiece.getChessPiece() == ChessPiece.KING_BLACK)
+      long vStart = System.nanoTime();
+      PgnImportResult[] vResults = writeAndCommit(iBatch, aConnection);
+      if (vResults == null)
       {
-         MoveResult vRes = aChessBoard.performMove(Coordinate.E8, Coordinate.G8);
-         if (vRes != null && vRes.isValid())
+         vResults = new PgnImportResult[iBatch.size()];
+         for (int x = 0; x < iBatch.size(); x++)
          {
-            return vRes;
+            PgnImportResult[] vResult = writeAndCommit(iBatch.subList(x, x + 1), aConnection);
+            vResults[x] = vResult == null ? PgnImportResult.error : vResult[0];
          }
       }
-      return new MoveResult(InvalidMoveCause.INVALID_SHORT_CASTLE);
-   }
-
-   protected MoveResult performShortWhiteCastle(RawMove aRawMove, ChessBoard aChessBoard)
-   {
-      ChessBoardPiece vPiece = aChessBoard.getChessBoardPiece(Coordinate.E1);
-      if (vPiece.getChessPiece() != null && vPiece.getChessPiece() == ChessPiece.KING_WHITE)
+      PgnImportStageStatistics.addGames(PgnImportStageStatistics.Stage.WRITE, iBatch.size(),
+            System.nanoTime() - vStart);
+      for (int x = 0; x < iBatch.size(); x++)
       {
-         MoveResult vRes = aChessBoard.performMove(Coordinate.E1, Coordinate.G1);
-         if (vRes != null && vRes.isValid())
-         {
-            return vRes;
-         }
+         endGame(iBatch.get(x), vResults[x]);
       }
-      return new MoveResult(InvalidMoveCause.INVALID_SHORT_CASTLE);
+      iBatch.clear();
    }
 
-   protected MoveResult performLongCastle(RawMove aRawMove, ChessBoard aChessBoard)
+   // null when the transaction is lost
+   protected PgnImportResult[] writeAndCommit(List<PgnCheckedRawGame> aGames, SQLConnection aConnection)
    {
-      if (aChessBoard.getColorToMove() == ChessColor.BLACK)
+      try
       {
-         MoveResult vRes = performLongBlackCastle(aRawMove, aChessBoard);
-         if (vRes != null && vRes.isValid())
-         {
-            return vRes;
-         }
+         PgnImportResult[] vResults = writeGames(aGames, aConnection);
+         SQLConnection.getDBPersistance().commitGames(aConnection);
+         return vResults;
       }
-      return performLongWhiteCastle(aRawMove, aChessBoard);
-   }
-
-   protected MoveResult performLongBlackCastle(RawMove aRawMove, ChessBoard aChessBoard)
-   {
-      ChessBoardPiece vPiece = aChessBoard.getChessBoardPiece(Coordinate.E8);
-      if (vPiece.getChessPiece() != null && vPiece.getChessPiece() == ChessPiece.KING_BLACK)
+      catch (Exception e)
       {
-         MoveResult vRes = aChessBoard.performMove(Coordinate.E8, Coordinate.C8);
-         if (vRes != null && vRes.isValid())
-         {
-            return vRes;
-         }
+         ChessLogger.getInstance().log(e);
+         rollback(aConnection);
+         return null;
       }
-      return new MoveResult(InvalidMoveCause.INVALID_LONG_CASTLE);
    }
 
-   protected MoveResult performLongWhiteCastle(RawMove aRawMove, ChessBoard aChessBoard)
+   protected PgnImportResult[] writeGames(List<PgnCheckedRawGame> aGames, SQLConnection aConnection) throws Exception
    {
-      ChessBoardPiece vPiece = aChessBoard.getChessBoardPiece(Coordinate.E1);
-      if (vPiece.getChessPiece() != null && vPiece.getChessPiece() == ChessPiece.KING_WHITE)
+      PgnImportResult[] vResults = new PgnImportResult[aGames.size()];
+      ArrayList<PgnGameRecord> vGames = new ArrayList<>(aGames.size());
+      ArrayList<Integer> vGameIdxs = new ArrayList<>(aGames.size());
+      HashSet<String> vGameHashes = new HashSet<>();
+      GameHeader vHeader = new GameHeader(aConnection);
+      for (int x = 0; x < aGames.size(); x++)
       {
-         MoveResult vRes = aChessBoard.performMove(Coordinate.E1, Coordinate.C1);
-         if (vRes != null && vRes.isValid())
+         PgnCheckedRawGame vCheckedRawGame = aGames.get(x);
+         String vGameHash = vCheckedRawGame.getPgnRawGame().getGameHash();
+         // also a game repeated in the batch
+         if (!vGameHashes.add(vGameHash) || vHeader.getGameIdWithHash(vGameHash) > 0)
          {
-            return vRes;
+            vResults[x] = PgnImportResult.noNewVariants;
+            continue;
          }
+         ChessBoardHeaderData vHeaderData = vCheckedRawGame.getPgnRawGame().getChessBoardHeaderData();
+         vHeaderData.setGameHash(vGameHash);
+         vHeaderData.setGameNr(vCheckedRawGame.getGameNr());
+         vGames.add(new PgnGameRecord(vHeaderData, PositionCodec.toBigInteger(vCheckedRawGame.getInitialPosition()),
+               vCheckedRawGame.getMoveValues(), vCheckedRawGame.getPositions()));
+         vGameIdxs.add(x);
       }
-      return new MoveResult(InvalidMoveCause.INVALID_LONG_CASTLE);
-   }
-
-   protected MoveResult performSimplePawnMove(RawMove aRawMove, ChessBoard aChessBoard)
-   {
-      SimpleChessPiece vSimplePromoted = aRawMove.getPromotedPiece();
-      ChessPiece vPromoted = null;
-      if (vSimplePromoted != null)
-      {
-         vPromoted = ChessPiece.valueOf(vSimplePromoted, aChessBoard.getColorToMove());
-      }
-      return aChessBoard.performMove(Coordinate.valueOf(aRawMove.getFromX(), aRawMove.getFromY()),
-            Coordinate.valueOf(aRawMove.getToX(), aRawMove.getToY()), vPromoted);
-   }
-
-   protected MoveResult performSimpleKingMove(RawMove aRawMove, ChessBoard aChessBoard)
-   {
-      return aChessBoard.performMove(Coordinate.valueOf(aRawMove.getFromX(), aRawMove.getFromY()),
-            Coordinate.valueOf(aRawMove.getToX(), aRawMove.getToY()));
-   }
-
-   protected MoveResult performSimplePieceMove(RawMove aRawMove, ChessBoard aChessBoard)
-   {
-      int vFromX = aRawMove.getFromX();
-      int vFromY = aRawMove.getFromY();
-      int vToX = aRawMove.getToX();
-      int vToY = aRawMove.getToY();
-      ChessColor vColor = aChessBoard.getColorToMove();
-      SimpleChessPiece vSimpleChessPiece = aRawMove.getMovedPiece();
-      ChessPiece vPiece = ChessPiece.valueOf(vSimpleChessPiece, vColor);
-      for (ChessBoardPiece vPieceToTry : aChessBoard.getListOf(vPiece))
+      if (!vGames.isEmpty())
       {
-         if (vFromX >= 0)
+         boolean[] vSaved = SQLConnection.getDBPersistance().persistPgnGames(vGames, aConnection);
+         for (int x = 0; x < vSaved.length; x++)
          {
-            if (vPieceToTry.getCoordinate().getX() != vFromX)
-            {
-               continue;
-            }
-         }
-         if (vFromY >= 0)
-         {
-            if (vPieceToTry.getCoordinate().getY() != vFromY)
-            {
-               continue;
-            }
-         }
-         MoveResult vRes = aChessBoard.performMove(vPieceToTry.getCoordinate(), Coordinate.valueOf(vToX, vToY));
-         if (vRes != null && vRes.isValid())
-         {
-            return vRes;
+            vResults[vGameIdxs.get(x)] = vSaved[x] ? PgnImportResult.ok : PgnImportResult.error;
          }
       }
-      return new MoveResult(InvalidMoveCause.MOVE_NOT_POSSIBLE);
+      return vResults;
    }
 
-   protected MoveResult performCapturePawnMove(RawMove aRawMove, ChessBoard aChessBoard)
+   protected void rollback(SQLConnection aConnection)
    {
-      ChessPiece vPromoted = null;
-      SimpleChessPiece vSimplePromoted = aRawMove.getPromotedPiece();
-      if (vSimplePromoted != null)
-      {
-         vPromoted = ChessPiece.valueOf(vSimplePromoted, aChessBoard.getColorToMove());
-      }
-      MoveResult vRes = aChessBoard.performMove(Coordinate.valueOf(aRawMove.getFromX(), aRawMove.getFromY()),
-            Coordinate.valueOf(aRawMove.getToX(), aRawMove.getToY()), vPromoted);
-      return vRes.getPieceCaptured() == null ? new MoveResult(InvalidMoveCause.NOTHING_TO_CAPTURE) : vRes;
-   }
-
-   protected MoveResult performCaptureKingMove(RawMove aRawMove, ChessBoard aChessBoard)
-   {
-      MoveResult vRes = aChessBoard.performMove(Coordinate.valueOf(aRawMove.getFromX(), aRawMove.getFromY()),
-            Coordinate.valueOf(aRawMove.getToX(), aRawMove.getToY()));
-      if (vRes.getPieceCaptured() == null)
-      {
-         return new MoveResult(InvalidMoveCause.NOTHING_TO_CAPTURE);
-      }
-      return vRes;
-   }
-
-   protected MoveResult performCapturePieceMove(RawMove aRawMove, ChessBoard aChessBoard)
-   {
-      int vFromX = aRawMove.getFromX();
-      int vToX = aRawMove.getToX();
-      int vFromY = aRawMove.getFromY();
-      int vToY = aRawMove.getToY();
-      MoveResult vRes = null;
-      if (vFromX > 0 && vFromY > 0)
-      {
-         if (vToX > 0 && vToY > 0)
-         {
-            vRes = aChessBoard.performMove(Coordinate.valueOf(vFromX, vFromY), Coordinate.valueOf(vToX, vToY));
-         }
-         else
-         {
-            vRes = performCapturePieceMoveWhenLeftKnown(aRawMove.getRightSide(), vToX, vToY, aChessBoard);
-         }
-      }
-      else
-      {
-         vRes = performCapturePieceMoveWhenLeftUnknown(aRawMove.getFirstChar(), aRawMove.getRightSide(), vFromX, vFromY,
-               vToX, vToY, aChessBoard);
-      }
-      if (vRes.getPieceCaptured() == null)
+      try
       {
-         return new MoveResult(InvalidMoveCause.NOTHING_TO_CAPTURE);
+         SQLConnection.getDBPersistance().rollbackGames(aConnection);
       }
-      return vRes;
-   }
-
-   protected MoveResult performCapturePieceMoveWhenLeftKnown(String aRightSide, int aToX, int aToY,
-         ChessBoard aChessBoard)
-   {
-      char vRightPieceChar = aRightSide.charAt(0);
-      if (vRightPieceChar == 'R' || vRightPieceChar == 'N' || vRightPieceChar == 'B' || vRightPieceChar == 'Q')
+      catch (Exception e)
       {
-         SimpleChessPiece vSimpleChessPiece = SimpleChessPiece.valueOf(vRightPieceChar);
-         ChessPiece vPiece = ChessPiece.valueOf(vSimpleChessPiece,
-               ChessColor.getOppositeColor(aChessBoard.getColorToMove()));
-         for (ChessBoardPiece vPieceToTtry : aChessBoard.getListOf(vPiece))
-         {
-            if (aToX >= 0)
-            {
-               if (vPieceToTtry.getCoordinate().getX() != aToX)
-               {
-                  continue;
-               }
-            }
-            if (aToY >= 0)
-            {
-               if (vPieceToTtry.getCoordinate().getY() != aToY)
-               {
-                  continue;
-               }
-            }
-            MoveResult vRes = aChessBoard.performMove(vPieceToTtry.getCoordinate(), Coordinate.valueOf(aToX, aToY));
-            if (vRes != null && vRes.isValid())
-            {
-               return vRes;
-            }
-         }
+         ChessLogger.getInstance().log(e);
       }
-      return new MoveResult(InvalidMoveCause.INVALID_MOVE_FORMAT);
    }
 
-   protected MoveResult performCapturePieceMoveWhenLeftUnknown(char aFirstChar, String aRightSide, int aFromX,
-         int aFromY, int aToX, int aToY, ChessBoard aChessBoard)
+   protected void endGame(PgnCheckedRawGame aCheckedRawGame, PgnImportResult aRes)
    {
-      ChessColor vColor = aChessBoard.getColorToMove();
-      SimpleChessPiece vLeftSimpleChessPiece = SimpleChessPiece.valueOf(aFirstChar);
-      ChessPiece vLeftPiece = ChessPiece.valueOf(vLeftSimpleChessPiece, vColor);
-      ArrayList<ChessBoardPiece> vRightList = null;
-      if (aToX < 0 || aToY < 0)
-      {
-         char vRightPieceChar = aRightSide.charAt(0);
-         if (vRightPieceChar == 'R' || vRightPieceChar == 'N' || vRightPieceChar == 'B' || vRightPieceChar == 'Q')
-         {
-            ChessColor vOppositeColor = ChessColor.getOppositeColor(vColor);
-            SimpleChessPiece vRightSimpleChessPiece = SimpleChessPiece.valueOf(aRightSide.charAt(0));
-            ChessPiece vRightPiece = ChessPiece.valueOf(vRightSimpleChessPiece, vOppositeColor);
-            vRightList = aChessBoard.getListOf(vRightPiece);
-         }
-         else
-         {
-            return new MoveResult(InvalidMoveCause.INVALID_MOVE_FORMAT);
-         }
-      }
-      for (ChessBoardPiece vLeftPieceToTtry : aChessBoard.getListOf(vLeftPiece))
+      PgnFileParserStatistics vStatistics = aCheckedRawGame.getFileStatistics();
+      boolean vSaved = true;
+      switch (aRes)
       {
-         if (aFromX >= 0)
-         {
-            if (vLeftPieceToTtry.getCoordinate().getX() != aFromX)
-            {
-               continue;
-            }
-         }
-         if (aFromY >= 0)
-         {
-            if (vLeftPieceToTtry.getCoordinate().getY() != aFromY)
-            {
-               continue;
-            }
-         }
-         if (aToX >= 0 && aToY >= 0)
-         {
-            MoveResult vRes = aChessBoard.performMove(vLeftPieceToTtry.getCoordinate(), Coordinate.valueOf(aToX, aToY));
-            if (vRes != null && vRes.isValid())
-            {
-               return vRes;
-            }
-         }
-         else
-         {
-            for (ChessBoardPiece vRightPieceToTry : vRightList)
-            {
-               if (aToX >= 0)
-               {
-                  if (vRightPieceToTry.getCoordinate().getX() != aToX)
-                  {
-                     continue;
-                  }
-               }
-               if (aToY >= 0)
-               {
-                  if (vRightPieceToTry.getCoordinate().getY() != aToY)
-                  {
-                     continue;
-                  }
-               }
-               MoveResult vRes = aChessBoard.performMove(vLeftPieceToTtry.getCoordinate(),
-                     vRightPieceToTry.getCoordinate());
-               if (vRes != null && vRes.isValid())
-               {
-                  return vRes;
-               }
-            }
-         }
+         case error:
+            vStatistics.incrementGamesInError();
+            // an invalid game is ended, a valid game rolled back is not: a resumed import writes it again
+            vSaved = aCheckedRawGame.getPgnImportResult() == PgnImportResult.error;
+            break;
+         case noNewVariants:
+            vStatistics.incrementGamesDuplicated();
+            break;
+         case ok:
+            break;
       }
-      return new MoveResult(InvalidMoveCause.INVALID_MOVE_FORMAT);
+      vStatistics.gameEnded(aCheckedRawGame.getPgnRawGame(), vSaved);
    }
 
    public Exception getException()
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2025 Gabriele Pezzini
+ * License: Creative Commons Attribution-NonCommercial 4.0 International (CC BY-NC 4.0)
+ * Full License: https://creativecommons.org/licenses/by-nc/4.0/legalcode
+ * SPDX-License-Identifier: CC-BY-NC-4.0
+ * Non-commercial use only. For commercial licensing, contact the author.
+ */
+package com.pezz.chess.pgn;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+public class PgnStreamTokenizer extends PgnGameTokenizer
+{
+   private static final int WINDOW_SIZE = 1024 * 1024;
+   private InputStream iInputStream;
+
+   public PgnStreamTokenizer(InputStream aInputStream, String aEntryName)
+   {
+      super(aEntryName);
+      iInputStream = aInputStream;
+   }
+
+   // skips the first aStart bytes of the stream (e.g. the games already imported before an interruption)
+   public PgnStreamTokenizer(InputStream aInputStream, String aEntryName, long aStart) throws IOException
+   {
+      this(aInputStream, aEntryName);
+      aInputStream.skipNBytes(aStart);
+      iWindowOffset = aStart;
+   }
+
+   @Override
+   protected boolean nextWindow(int aKeepFrom) throws IOException
+   {
+      int vLimit = iWindow.limit();
+      int vKept = vLimit - aKeepFrom;
+      byte[] vBytes = new byte[Math.max(WINDOW_SIZE, vKept * 2)];
+      iWindow.get(aKeepFrom, vBytes, 0, vKept);
+      int vFilled = vKept;
+      int vRead;
+      while (vFilled < vBytes.length && (vRead = iInputStream.read(vBytes, vFilled, vBytes.length - vFilled)) >= 0)
+      {
+         vFilled += vRead;
+      }
+      if (vFilled == vKept)
+      {
+         return false;
+      }
+      iWindow = ByteBuffer.wrap(vBytes, 0, vFilled).slice();
+      iWindowOffset += aKeepFrom;
+      return true;
+   }
+
+   @Override
+   public void close() throws IOException
+   {
+      iInputStream.close();
+   }
+}
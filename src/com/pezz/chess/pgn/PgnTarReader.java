@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2025 Gabriele Pezzini
+ * License: Creative Commons Attribution-NonCommercial 4.0 International (CC BY-NC 4.0)
+ * Full License: https://creativecommons.org/licenses/by-nc/4.0/legalcode
+ * SPDX-License-Identifier: CC-BY-NC-4.0
+ * Non-commercial use only. For commercial licensing, contact the author.
+ */
+package com.pezz.chess.pgn;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+public class PgnTarReader implements AutoCloseable
+{
+   // Sequential reader of a tar archive (ustar, GNU and pax long names), the data of the entries is read from the
+   // archive stream without copying it to disk. Only regular files are returned by nextEntry().
+   private static final int BLOCK_SIZE = 512;
+   private InputStream iInputStream;
+   private byte[] iHeader;
+   private String iEntryName;
+   private long iEntrySize;
+   private long iEntryRemaining;
+   private long iEntryPadding;
+
+   public PgnTarReader(InputStream aInputStream)
+   {
+      iInputStream = aInputStream;
+      iHeader = new byte[BLOCK_SIZE];
+   }
+
+   // moves to the next regular file of the archive skipping the unread data of the current one, returns false at
+   // the end of the archive
+   public boolean nextEntry() throws IOException
+   {
+      String vLongName = null;
+      while (true)
+      {
+         skipEntryData();
+         if (!readHeader())
+         {
+            iEntryName = null;
+            return false;
+         }
+         byte vType = iHeader[156];
+         long vSize = parseSize();
+         iEntrySize = vSize;
+         iEntryRemaining = vSize;
+         iEntryPadding = (BLOCK_SIZE - vSize % BLOCK_SIZE) % BLOCK_SIZE;
+         if (vType == 'L')
+         {
+            vLongName = trimName(readEntryData());
+         }
+         else if (vType == 'x')
+         {
+            String vPath = parsePaxPath(readEntryData());
+            if (vPath != null)
+            {
+               vLongName = vPath;
+            }
+         }
+         else if (vType == '0' || vType == 0 || vType == '7')
+         {
+            iEntryName = vLongName != null ? vLongName : parseName();
+            return true;
+         }
+         else
+         {
+            // directories, links, global pax headers...
+            vLongName = null;
+         }
+      }
+   }
+
+   public String getEntryName()
+   {
+      return iEntryName;
+   }
+
+   public long getEntrySize()
+   {
+      return iEntrySize;
+   }
+
+   // data of the current entry: closing it does not close the archive
+   public InputStream getInputStream()
+   {
+      return new InputStream()
+      {
+         @Override
+         public int read() throws IOException
+         {
+            if (iEntryRemaining <= 0)
+            {
+               return -1;
+            }
+            int vByte = iInputStream.read();
+            if (vByte < 0)
+            {
+               throw new IOException("Truncated tar entry " + iEntryName);
+            }
+            iEntryRemaining--;
+            return vByte;
+         }
+
+         @Override
+         public int read(byte[] aBytes, int aOffset, int aLength) throws IOException
+         {
+            if (iEntryRemaining <= 0)
+            {
+               return -1;
+            }
+            int vRead = iInputStream.read(aBytes, aOffset, (int) Math.min(aLength, iEntryRemaining));
+            if (vRead < 0)
+            {
+               throw new IOException("Truncated tar entry " + iEntryName);
+            }
+            iEntryRemaining -= vRead;
+            return vRead;
+         }
+
+         @Override
+         public long skip(long aLength) throws IOException
+         {
+            long vSkipped = iInputStream.skip(Math.min(aLength, iEntryRemaining));
+            iEntryRemaining -= vSkipped;
+            return vSkipped;
+         }
+      };
+   }
+
+   @Override
+   public void close() throws IOException
+   {
+      iInputStream.close();
+   }
+
+   private void skipEntryData() throws IOException
+   {
+      iInputStream.skipNBytes(iEntryRemaining + iEntryPadding);
+      iEntryRemaining = 0;
+      iEntryPadding = 0;
+   }
+
+   private byte[] readEntryData() throws IOException
+   {
+      if (iEntryRemaining > Integer.MAX_VALUE)
+      {
+         throw new IOException("Invalid tar header");
+      }
+      byte[] vData = iInputStream.readNBytes((int) iEntryRemaining);
+      iEntryRemaining -= vData.length;
+      return vData;
+   }
+
+   // false at the end of the archive: an empty block or the end of the stream
+   private boolean readHeader() throws IOException
+   {
+      int vRead = iInputStream.readNBytes(iHeader, 0, BLOCK_SIZE);
+      if (vRead < BLOCK_SIZE)
+      {
+         return false;
+      }
+      for (byte vByte : iHeader)
+      {
+         if (vByte != 0)
+         {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   private String parseName()
+   {
+      String vName = parseString(0, 100);
+      // ustar: the name can be split in a prefix and a name
+      if (parseString(257, 5).equals("ustar"))
+      {
+         String vPrefix = parseString(345, 155);
+         if (!vPrefix.isEmpty())
+         {
+            vName = vPrefix + "/" + vName;
+         }
+      }
+      return vName;
+   }
+
+   private long parseSize() throws IOException
+   {
+      // GNU extension: sizes bigger than 8 GB are written in base-256
+      if ((iHeader[124] & 0x80) != 0)
+      {
+         long vSize = 0;
+         for (int x = 125; x < 136; x++)
+         {
+            vSize = (vSize << 8) | (iHeader[x] & 0xff);
+         }
+         return vSize;
+      }
+      String vSize = parseString(124, 12).trim();
+      try
+      {
+         return vSize.isEmpty() ? 0 : Long.parseLong(vSize, 8);
+      }
+      catch (NumberFormatException e)
+      {
+         throw new IOException("Invalid tar header");
+      }
+   }
+
+   private String parseString(int aOffset, int aLength)
+   {
+      int vEnd = aOffset;
+      while (vEnd < aOffset + aLength && iHeader[vEnd] != 0)
+      {
+         vEnd++;
+      }
+      return new String(iHeader, aOffset, vEnd - aOffset, StandardCharsets.UTF_8);
+   }
+
+   private static String trimName(byte[] aData)
+   {
+      int vEnd = 0;
+      while (vEnd < aData.length && aData[vEnd] != 0)
+      {
+         vEnd++;
+      }
+      return new String(aData, 0, vEnd, StandardCharsets.UTF_8);
+   }
+
+   // a pax header is a list of "<length> <key>=<value>\n" records
+   private static String parsePaxPath(byte[] aData)
+   {
+      int vPosition = 0;
+      while (vPosition < aData.length)
+      {
+         int vSpace = vPosition;
+         while (vSpace < aData.length && aData[vSpace] != ' ')
+         {
+            vSpace++;
+         }
+         int vLength;
+         try
+         {
+            vLength = Integer.parseInt(new String(aData, vPosition, vSpace - vPosition, StandardCharsets.US_ASCII));
+         }
+         catch (NumberFormatException e)
+         {
+            return null;
+         }
+         if (vLength <= 0 || vPosition + vLength > aData.length)
+         {
+            return null;
+         }
+         String vRecord = new String(aData, vSpace + 1, vPosition + vLength - vSpace - 2, StandardCharsets.UTF_8);
+         if (vRecord.startsWith("path="))
+         {
+            return vRecord.substring(5);
+         }
+         vPosition += vLength;
+      }
+      return null;
+   }
+}
@@ -11,15 +11,15 @@ package com.pezz.chess.pgn;
 import com.pezz.chess.base.ChessColor;
 import com.pezz.chess.base.Coordinate;
 import com.pezz.chess.base.InvalidMoveCause;
-import com.pezz.chess.board.ChessBoard;
-import com.pezz.chess.pieces.ChessBoardPiece;
+import com.pezz.chess.board.BitboardPosition;
+import com.pezz.chess.board.LegalMoveBoard;
+import com.pezz.chess.pieces.ChessPiece;
 import com.pezz.chess.pieces.SimpleChessPiece;
 
 public class RawMove
 {
    private char iFirstChar;
    private String iRightSide;
-   private String iLeftSide;
    private int iFromX;
    private int iFromY;
    private int iToX;
@@ -31,64 +31,28 @@ public class RawMove
    private RawMoveType iRawMoveType;
    private InvalidMoveCause iInvalidMoveCause;
    private String iInvalidMoveMessage;
+   // the legal move matching the raw move, see BitboardPosition
+   private int iMove;
+   private final int[] iLegalMoves = new int[BitboardPosition.MAX_MOVES];
 
-   public RawMove parseMove(String aRawMove, ChessBoard aChessBoard)
+   public RawMove parseMove(String aRawMove, LegalMoveBoard aChessBoard)
    {
+      iMove = 0;
       parseMoveImpl(aRawMove, aChessBoard);
+      if (isValid())
+      {
+         resolveMove(aRawMove, aChessBoard);
+      }
       return this;
    }
 
-   public int getFromX()
-   {
-      return iFromX;
-   }
-
-   public int getFromY()
-   {
-      return iFromY;
-   }
-
-   public int getToX()
-   {
-      return iToX;
-   }
-
-   public int getToY()
-   {
-      return iToY;
-   }
-
-   public SimpleChessPiece getMovedPiece()
-   {
-      return iMovedPiece;
-   }
-
-   public SimpleChessPiece getPromotedPiece()
-   {
-      return iPromotedPiece;
-   }
-
-   public RawMoveType getRawMoveType()
-   {
-      return iRawMoveType;
-   }
-
-   public char getFirstChar()
+   // the legal move to pass to ChessBoard.performMove or ReplayBoard.performMove, 0 if the raw move is not valid
+   public int getMove()
    {
-      return iFirstChar;
+      return iMove;
    }
 
-   public String getLeftSide()
-   {
-      return iLeftSide;
-   }
-
-   public String getRightSide()
-   {
-      return iRightSide;
-   }
-
-   protected void parseMoveImpl(String aRawMove, ChessBoard aChessBoard)
+   protected void parseMoveImpl(String aRawMove, LegalMoveBoard aChessBoard)
    {
       int vLen = aRawMove.length();
       if (vLen < 2)
@@ -101,7 +65,6 @@ public class RawMove
       iRawMoveType = RawMoveType.UNKNOWN;
       iMovedPiece = null;
       iPromotedPiece = null;
-      iLeftSide = null;
       iRightSide = null;
       iInvalidMoveCause = null;
       iInvalidMoveMessage = null;
@@ -116,7 +79,7 @@ public class RawMove
       }
    }
 
-   protected void parseSimpleMoveImpl(String aRawMove, int aLen, ChessBoard aChessBoard)
+   protected void parseSimpleMoveImpl(String aRawMove, int aLen, LegalMoveBoard aChessBoard)
    {
       if (iFirstChar == 'O')
       {
@@ -136,7 +99,7 @@ public class RawMove
       }
    }
 
-   private void parseCastleMove(String aRawMove, int aLen, ChessBoard aChessBoard)
+   private void parseCastleMove(String aRawMove, int aLen, LegalMoveBoard aChessBoard)
    {
       if (aLen < 3)
       {
@@ -211,7 +174,7 @@ public class RawMove
       }
    }
 
-   protected void parseSimplePawnMoveImpl(String aRawMove, int aLen, ChessBoard aChessBoard)
+   protected void parseSimplePawnMoveImpl(String aRawMove, int aLen, LegalMoveBoard aChessBoard)
    {
       iFromX = Coordinate.xCoordinateFromChar(iFirstChar);
       iFromY = -1;
@@ -221,7 +184,7 @@ public class RawMove
       iMovedPiece = SimpleChessPiece.PAWN;
       iPromotedPiece = null;
       ChessColor vColor = aChessBoard.getColorToMove();
-      ChessBoardPiece vPiece = null;
+      ChessPiece vPiece = null;
       if (vColor == ChessColor.BLACK)
       {
          if (iToY == 7)
@@ -231,11 +194,11 @@ public class RawMove
             return;
          }
          iFromY = iToY + 1;
-         vPiece = aChessBoard.getChessBoardPiece(iFromX, iFromY);
+         vPiece = aChessBoard.getChessPieceAt(iFromX, iFromY);
          if (vPiece == null)
          {
             iFromY++;
-            vPiece = aChessBoard.getChessBoardPiece(iFromX, iFromY);
+            vPiece = aChessBoard.getChessPieceAt(iFromX, iFromY);
          }
       }
       else
@@ -247,11 +210,11 @@ public class RawMove
             return;
          }
          iFromY = iToY - 1;
-         vPiece = aChessBoard.getChessBoardPiece(iFromX, iFromY);
+         vPiece = aChessBoard.getChessPieceAt(iFromX, iFromY);
          if (vPiece == null)
          {
             iFromY--;
-            vPiece = aChessBoard.getChessBoardPiece(iFromX, iFromY);
+            vPiece = aChessBoard.getChessPieceAt(iFromX, iFromY);
          }
       }
       if (vPiece == null)
@@ -260,8 +223,7 @@ public class RawMove
          iInvalidMoveMessage = aRawMove;
          return;
       }
-      if (vPiece.getChessPiece().getSimpleChessPiece() == SimpleChessPiece.PAWN
-            && vPiece.getChessPiece().getColor() == vColor)
+      if (vPiece.getSimpleChessPiece() == SimpleChessPiece.PAWN && vPiece.getColor() == vColor)
       {
          if (iToY == 0 || iToY == 7)
          {
@@ -288,18 +250,18 @@ public class RawMove
       }
    }
 
-   protected void parseSimpleKingMoveImpl(String aRawMove, int aLen, ChessBoard aChessBoard)
+   protected void parseSimpleKingMoveImpl(String aRawMove, int aLen, LegalMoveBoard aChessBoard)
    {
-      ChessBoardPiece vKing = aChessBoard.getKing(aChessBoard.getColorToMove());
-      iFromX = vKing.getCoordinate().getX();
-      iFromY = vKing.getCoordinate().getY();
+      Coordinate vKing = aChessBoard.getKingCoordinate(aChessBoard.getColorToMove());
+      iFromX = vKing.getX();
+      iFromY = vKing.getY();
       iToX = Coordinate.xCoordinateFromChar(aRawMove.charAt(1));
       iToY = Coordinate.yCoordinateFromChar(aRawMove.charAt(2));
       iRawMoveType = RawMoveType.SIMPLE_KING;
       iMovedPiece = SimpleChessPiece.KING;
    }
 
-   protected void parseSimplePieceMoveImpl(String aRawMove, int aLen, ChessBoard aChessBoard)
+   protected void parseSimplePieceMoveImpl(String aRawMove, int aLen, LegalMoveBoard aChessBoard)
    {
       iFromX = -1;
       iFromY = -1;
@@ -349,7 +311,7 @@ public class RawMove
       }
    }
 
-   protected void parseCaptureMoveImpl(String aRawMove, int aLen, int aCaptureIndex, ChessBoard aChessBoard)
+   protected void parseCaptureMoveImpl(String aRawMove, int aLen, int aCaptureIndex, LegalMoveBoard aChessBoard)
    {
       if (SimpleChessPiece.isPawn(iFirstChar))
       {
@@ -365,7 +327,7 @@ public class RawMove
       }
    }
 
-   protected void parseCapturePawnMoveImpl(String aRawMove, int aLen, int aCaptureIndex, ChessBoard aChessBoard)
+   protected void parseCapturePawnMoveImpl(String aRawMove, int aLen, int aCaptureIndex, LegalMoveBoard aChessBoard)
    {
       iMovedPiece = SimpleChessPiece.PAWN;
       iRawMoveType = RawMoveType.CAPTURE_PAWN;
@@ -429,22 +391,21 @@ public class RawMove
       }
    }
 
-   protected void parseCaptureKingMoveImpl(String aRawMove, int aLen, int aCaptureIndex, ChessBoard aChessBoard)
+   protected void parseCaptureKingMoveImpl(String aRawMove, int aLen, int aCaptureIndex, LegalMoveBoard aChessBoard)
    {
       iMovedPiece = SimpleChessPiece.KING;
       iRawMoveType = RawMoveType.CAPTURE_KING;
-      ChessBoardPiece vKing = aChessBoard.getKing(aChessBoard.getColorToMove());
-      iFromX = vKing.getCoordinate().getX();
-      iFromY = vKing.getCoordinate().getY();
+      Coordinate vKing = aChessBoard.getKingCoordinate(aChessBoard.getColorToMove());
+      iFromX = vKing.getX();
+      iFromY = vKing.getY();
       iToX = Coordinate.xCoordinateFromChar(aRawMove.charAt(aCaptureIndex + 1));
       iToY = Coordinate.yCoordinateFromChar(aRawMove.charAt(aCaptureIndex + 2));
    }
 
-   protected void parseCapturePieceMoveImpl(String aRawMove, int aLen, int aCaptureIndex, ChessBoard aChessBoard)
+   protected void parseCapturePieceMoveImpl(String aRawMove, int aLen, int aCaptureIndex, LegalMoveBoard aChessBoard)
    {
       String vLeftSide = aRawMove.substring(0, aCaptureIndex);
       String vRightSide = aRawMove.substring(aCaptureIndex + 1);
-      iLeftSide = vLeftSide;
       iRightSide = vRightSide;
       iFromX = -1;
       iFromY = -1;
@@ -498,6 +459,78 @@ public class RawMove
       }
    }
 
+   // the one legal move with the piece, the squares (or part of them), the promoted and captured piece parsed: the
+   // squares found are the ones of the move
+   protected void resolveMove(String aRawMove, LegalMoveBoard aChessBoard)
+   {
+      if (iRawMoveType == RawMoveType.UNKNOWN)
+      {
+         iInvalidMoveCause = InvalidMoveCause.INVALID_MOVE_FORMAT;
+         iInvalidMoveMessage = aRawMove;
+         return;
+      }
+      SimpleChessPiece vCapturedPiece = null;
+      if (iRawMoveType == RawMoveType.CAPTURE_PIECE && !iRightSide.isEmpty())
+      {
+         char vRightPieceChar = iRightSide.charAt(0);
+         if (vRightPieceChar == 'R' || vRightPieceChar == 'N' || vRightPieceChar == 'B' || vRightPieceChar == 'Q')
+         {
+            vCapturedPiece = SimpleChessPiece.valueOf(vRightPieceChar);
+         }
+      }
+      int vCount = aChessBoard.generateLegalMoves(iLegalMoves);
+      int vMatches = 0;
+      for (int i = 0; i < vCount; i++)
+      {
+         if (matches(iLegalMoves[i], vCapturedPiece) && vMatches++ == 0)
+         {
+            iMove = iLegalMoves[i];
+         }
+      }
+      if (vMatches != 1)
+      {
+         // an ambiguous move is not played at random
+         iInvalidMoveCause = vMatches == 0 ? InvalidMoveCause.MOVE_NOT_POSSIBLE : InvalidMoveCause.INVALID_MOVE_FORMAT;
+         iInvalidMoveMessage = aRawMove;
+         iMove = 0;
+         return;
+      }
+      iFromX = BitboardPosition.getFrom(iMove) % 8;
+      iFromY = BitboardPosition.getFrom(iMove) / 8;
+      iToX = BitboardPosition.getTo(iMove) % 8;
+      iToY = BitboardPosition.getTo(iMove) / 8;
+   }
+
+   private boolean matches(int aMove, SimpleChessPiece aCapturedPiece)
+   {
+      int vFrom = BitboardPosition.getFrom(aMove);
+      int vTo = BitboardPosition.getTo(aMove);
+      boolean vCastle = (aMove & BitboardPosition.FLAG_CASTLE) != 0;
+      if (iRawMoveType == RawMoveType.SHORT_CASTLE || iRawMoveType == RawMoveType.LONG_CASTLE)
+      {
+         return vCastle && vTo % 8 == (iRawMoveType == RawMoveType.SHORT_CASTLE ? 6 : 2);
+      }
+      if (BitboardPosition.getPieceMoved(aMove).getSimpleChessPiece() != iMovedPiece
+            || (iFromX >= 0 && vFrom % 8 != iFromX) || (iFromY >= 0 && vFrom / 8 != iFromY)
+            || (iToX >= 0 && vTo % 8 != iToX) || (iToY >= 0 && vTo / 8 != iToY))
+      {
+         return false;
+      }
+      ChessPiece vPromoted = BitboardPosition.getPiecePromoted(aMove);
+      if (vPromoted == null ? iPromotedPiece != null : vPromoted.getSimpleChessPiece() != iPromotedPiece)
+      {
+         return false;
+      }
+      ChessPiece vCaptured = BitboardPosition.getPieceCaptured(aMove);
+      boolean vIsCapture = iRawMoveType == RawMoveType.CAPTURE_PAWN || iRawMoveType == RawMoveType.CAPTURE_KING
+            || iRawMoveType == RawMoveType.CAPTURE_PIECE;
+      if (vIsCapture && vCaptured == null)
+      {
+         return false;
+      }
+      return aCapturedPiece == null || vCaptured.getSimpleChessPiece() == aCapturedPiece;
+   }
+
    public InvalidMoveCause getInvalidMoveCause()
    {
       return iInvalidMoveCause;
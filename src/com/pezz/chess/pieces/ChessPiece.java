@@ -54,6 +54,7 @@ public enum ChessPiece
    {
       iBin = aBooleanValue;
       iStrBin = new String(iBin);
+      iValue = Integer.parseInt(iStrBin, 2);
       iColor = aColor;
       iSimpleChessPiece = aSimpleChessPiece;
       iImageName = aImageName;
@@ -22,8 +22,6 @@ public abstract class Pawn extends ChessBoardPiece
       super(aMoved);
    }
 
-   private boolean iMightBeCapturedEnPassant;
-
    @Override
    public MoveResult validateSpecificPieceMove(Coordinate aToCoordinate, ChessBoard aChessBoard)
    {
@@ -133,7 +131,7 @@ public abstract class Pawn extends ChessBoardPiece
          return new CapturedChessboardPiece(
                new MoveResult(InvalidMoveCause.INVALID_PAWN_MOVE, this.getChessPiece(), aFromX, aFromY, aToX, aToY));
       }
-      if (!((Pawn) vCapturedPiece).getMightBeCapturedEnPassant())
+      if (!Coordinate.valueOf(aToX, aToY).equals(aChessBoard.getEnPassantCoordinate()))
       {
          return new CapturedChessboardPiece(
                new MoveResult(InvalidMoveCause.INVALID_PAWN_MOVE, this.getChessPiece(), aFromX, aFromY, aToX, aToY));
@@ -148,13 +146,13 @@ public abstract class Pawn extends ChessBoardPiece
       {
          return new MoveResult(InvalidMoveCause.INVALID_PAWN_MOVE, this.getChessPiece(), aFromX, aFromY, aToX, aToY);
       }
-      iMightBeCapturedEnPassant = false;
       return null;
    }
 
    private MoveResult validatePlus2(int aFromX, int aFromY, int aToX, int aToY, ChessBoard aChessBoard)
    {
-      if (isMoved())
+      // from the initial row only: the moved flag is lost when an undo rebuilds the pieces from the position
+      if (aFromY != (getYDirection() == 1 ? 1 : 6))
       {
          return new MoveResult(InvalidMoveCause.INVALID_PAWN_MOVE, this.getChessPiece(), aFromX, aFromY, aToX, aToY);
       }
@@ -168,12 +166,6 @@ public abstract class Pawn extends ChessBoardPiece
       {
          return new MoveResult(InvalidMoveCause.INVALID_PAWN_MOVE, this.getChessPiece(), aFromX, aFromY, aToX, aToY);
       }
-      iMightBeCapturedEnPassant = true;
       return null;
    }
-
-   public boolean getMightBeCapturedEnPassant()
-   {
-      return iMightBeCapturedEnPassant;
-   }
 }
@@ -41,6 +41,9 @@ public class PGNFileImportChooser
       GenericFilter vBF = new GenericFilter(ChessResources.RESOURCES.getString("ZIP.or.PGN.Files"));
       vBF.addFileExtension(ChessResources.RESOURCES.getString("Zip.extention"));
       vBF.addFileExtension(ChessResources.RESOURCES.getString("Pgn.extention"));
+      vBF.addFileExtension(ChessResources.RESOURCES.getString("Gz.extention"));
+      vBF.addFileExtension(ChessResources.RESOURCES.getString("Tgz.extention"));
+      vBF.addFileExtension(ChessResources.RESOURCES.getString("Tar.extention"));
       FilteredFileFilter filter = new FilteredFileFilter(vBF);
       vFcMain.setFileFilter(filter);
       vFcMain.setAcceptAllFileFilterUsed(false);
@@ -91,6 +91,7 @@ public class PgnImportDialogUI implements ActionListener
 
    public void setSelectedFilesNumber(int aSelectedFilesNr)
    {
+      iBeginTime = System.currentTimeMillis();
       iPrbFile.setMinimum(0);
       iPrbFile.setMaximum(aSelectedFilesNr);
    }
@@ -105,10 +106,14 @@ public class PgnImportDialogUI implements ActionListener
       iPrbFile.setValue(aGameNr);
    }
 
+   // called again while the import goes on, as the estimate of the total of the games is refined
    public void setCurrentGameData(int aGamesNumber)
    {
-      iBeginTime = System.currentTimeMillis();
-      iLblGames.setText(ChessFormatter.formatNumber(aGamesNumber) + " " + ChessResources.RESOURCES.getString("Games"));
+      if (iPrbGame.getValue() == 0)
+      {
+         iLblGames.setText(
+               ChessFormatter.formatNumber(aGamesNumber) + " " + ChessResources.RESOURCES.getString("Games"));
+      }
       iPrbGame.setMinimum(0);
       iPrbGame.setMaximum(aGamesNumber);
    }
@@ -118,7 +123,8 @@ public class PgnImportDialogUI implements ActionListener
       iPrbGame.setValue(aNum);
       if (aNum % 100 == 0)
       {
-         long vTime = ((System.currentTimeMillis() - iBeginTime) * (iPrbGame.getMaximum() - aNum)) / aNum;
+         long vTime = ((System.currentTimeMillis() - iBeginTime) * Math.max(0, iPrbGame.getMaximum() - aNum))
+               / aNum;
          String vRemaining = ChessFormatter.toHHMMSS(vTime, false);
          String vGameXofY = ChessResources.RESOURCES.getString("Game.X.of.Y", ChessFormatter.formatNumber(aNum),
                ChessFormatter.formatNumber(iPrbGame.getMaximum()));
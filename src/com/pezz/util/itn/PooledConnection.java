@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2025 Gabriele Pezzini
+ * License: Creative Commons Attribution-NonCommercial 4.0 International (CC BY-NC 4.0)
+ * Full License: https://creativecommons.org/licenses/by-nc/4.0/legalcode
+ * SPDX-License-Identifier: CC-BY-NC-4.0
+ * Non-commercial use only. For commercial licensing, contact the author.
+ */
+package com.pezz.util.itn;
+
+import java.sql.Connection;
+
+public class PooledConnection
+{
+   // a physical connection of a SQLConnectionPool with its prepared statements, which live as long as it
+   private Connection iConnection;
+   private PreparedStatementCache iStatementCache;
+   private long iLastUsed;
+
+   PooledConnection(Connection aConnection, int aStatementCacheSize)
+   {
+      iConnection = aConnection;
+      iStatementCache = new PreparedStatementCache(aStatementCacheSize);
+      iLastUsed = System.currentTimeMillis();
+   }
+
+   public Connection getConnection()
+   {
+      return iConnection;
+   }
+
+   public PreparedStatementCache getStatementCache()
+   {
+      return iStatementCache;
+   }
+
+   long getLastUsed()
+   {
+      return iLastUsed;
+   }
+
+   void setLastUsed(long aLastUsed)
+   {
+      iLastUsed = aLastUsed;
+   }
+
+   void close()
+   {
+      iStatementCache.close();
+      try
+      {
+         iConnection.close();
+      }
+      catch (Exception e)
+      {
+      }
+   }
+}
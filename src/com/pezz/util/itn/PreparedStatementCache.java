@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2025 Gabriele Pezzini
+ * License: Creative Commons Attribution-NonCommercial 4.0 International (CC BY-NC 4.0)
+ * Full License: https://creativecommons.org/licenses/by-nc/4.0/legalcode
+ * SPDX-License-Identifier: CC-BY-NC-4.0
+ * Non-commercial use only. For commercial licensing, contact the author.
+ */
+package com.pezz.util.itn;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class PreparedStatementCache
+{
+   // Prepared statements of a connection kept open and reused, keyed by their sql. The callers get a proxy whose
+   // close() gives the statement back to the cache, so the usual try-with-resources blocks do not change. A statement
+   // already in use (nested use of the same sql, another thread on the same connection) is not shared: a new one is
+   // prepared and really closed by its close(). The least recently used statements are closed beyond aMaxSize.
+   private final LinkedHashMap<String, Entry> iStatements;
+   private final int iMaxSize;
+   private long iHits;
+   private long iMisses;
+
+   private class Entry
+   {
+      private PreparedStatement iStatement;
+      private PreparedStatement iProxy;
+      private boolean iInUse;
+      private boolean iEvicted;
+   }
+
+   public PreparedStatementCache(int aMaxSize)
+   {
+      iMaxSize = aMaxSize;
+      iStatements = new LinkedHashMap<>(16, 0.75f, true);
+   }
+
+   public PreparedStatement prepareStatement(Connection aConnection, String aSql, int aAutoGeneratedKeys)
+         throws Exception
+   {
+      String vKey = aAutoGeneratedKeys == Statement.RETURN_GENERATED_KEYS ? "K" + aSql : "N" + aSql;
+      synchronized (this)
+      {
+         Entry vEntry = iStatements.get(vKey);
+         if (vEntry != null)
+         {
+            if (vEntry.iInUse)
+            {
+               iMisses++;
+               return aConnection.prepareStatement(aSql, aAutoGeneratedKeys);
+            }
+            iHits++;
+            vEntry.iInUse = true;
+            return vEntry.iProxy;
+         }
+         iMisses++;
+      }
+      Entry vEntry = new Entry();
+      vEntry.iStatement = aConnection.prepareStatement(aSql, aAutoGeneratedKeys);
+      vEntry.iProxy = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+            new Class<?>[] { PreparedStatement.class }, (aProxy, aMethod, aArgs) -> invoke(vEntry, aMethod, aArgs));
+      vEntry.iInUse = true;
+      synchronized (this)
+      {
+         if (iStatements.putIfAbsent(vKey, vEntry) != null)
+         {
+            // prepared in the meantime by another thread: this one is not cached
+            vEntry.iEvicted = true;
+         }
+         evict();
+      }
+      return vEntry.iProxy;
+   }
+
+   private Object invoke(Entry aEntry, Method aMethod, Object[] aArgs) throws Throwable
+   {
+      if (aMethod.getName().equals("close") && aMethod.getParameterCount() == 0)
+      {
+         release(aEntry);
+         return null;
+      }
+      if (aMethod.getName().equals("isClosed") && aMethod.getParameterCount() == 0)
+      {
+         synchronized (this)
+         {
+            return !aEntry.iInUse || aEntry.iStatement.isClosed();
+         }
+      }
+      try
+      {
+         return aMethod.invoke(aEntry.iStatement, aArgs);
+      }
+      catch (InvocationTargetException e)
+      {
+         throw e.getCause();
+      }
+   }
+
+   private void release(Entry aEntry) throws Exception
+   {
+      boolean vClose;
+      synchronized (this)
+      {
+         if (!aEntry.iInUse)
+         {
+            return;
+         }
+         aEntry.iInUse = false;
+         vClose = aEntry.iEvicted;
+      }
+      if (vClose)
+      {
+         aEntry.iStatement.close();
+         return;
+      }
+      try
+      {
+         aEntry.iStatement.clearParameters();
+         aEntry.iStatement.clearBatch();
+      }
+      catch (Exception e)
+      {
+         // a statement that cannot be reset is not reused
+         synchronized (this)
+         {
+            aEntry.iEvicted = true;
+            iStatements.values().remove(aEntry);
+         }
+         aEntry.iStatement.close();
+      }
+   }
+
+   private void evict() throws Exception
+   {
+      for (Iterator<Map.Entry<String, Entry>> vIter = iStatements.entrySet().iterator(); iStatements.size() > iMaxSize
+            && vIter.hasNext();)
+      {
+         Entry vEntry = vIter.next().getValue();
+         vIter.remove();
+         vEntry.iEvicted = true;
+         if (!vEntry.iInUse)
+         {
+            vEntry.iStatement.close();
+         }
+      }
+   }
+
+   public synchronized long getHits()
+   {
+      return iHits;
+   }
+
+   public synchronized long getMisses()
+   {
+      return iMisses;
+   }
+
+   public synchronized int size()
+   {
+      return iStatements.size();
+   }
+
+   // the statements in use are closed by their close()
+   public synchronized void close()
+   {
+      for (Entry vEntry : iStatements.values())
+      {
+         vEntry.iEvicted = true;
+         if (!vEntry.iInUse)
+         {
+            try
+            {
+               vEntry.iStatement.close();
+            }
+            catch (Exception e)
+            {
+            }
+         }
+      }
+      iStatements.clear();
+   }
+}
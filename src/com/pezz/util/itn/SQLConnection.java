@@ -8,10 +8,10 @@
 package com.pezz.util.itn;
 
 import java.io.File;
-import java.net.URLClassLoader;
 import java.sql.Connection;
 import java.sql.Driver;
-import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -28,6 +28,8 @@ public class SQLConnection implements AutoCloseable
    private String iJDBCJarFiles;
    private int iTransactionIsolation;
    private boolean iAutoCommit;
+   private SQLConnectionPool iPool;
+   private PooledConnection iPooledConnection;
    private static Persistable iPersistable = null;
 
    public SQLConnection(String aUserName, String aPassword, String aJDBCURL, String aJDBCDriverName,
@@ -53,49 +55,36 @@ public class SQLConnection implements AutoCloseable
    {
       if (iConnection == null)
       {
-         loadDrivers(iJDBCJarFiles, iJDBCDriverName);
-         iConnection = DriverManager.getConnection(iJDBCURL, iUserName, iPassword);
-         iConnection.setAutoCommit(iAutoCommit);
-         if (iTransactionIsolation == -1)
-         {
-            try
-            {
-               iConnection.setTransactionIsolation(Connection.TRANSACTION_READ_UNCOMMITTED);
-               iTransactionIsolation = Connection.TRANSACTION_READ_UNCOMMITTED;
-            }
-            catch (Exception e)
-            {
-               iConnection.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
-               iTransactionIsolation = Connection.TRANSACTION_READ_COMMITTED;
-            }
-         }
-         else
-         {
-            try
-            {
-               iConnection.setTransactionIsolation(iTransactionIsolation);
-            }
-            catch (Exception e)
-            {
-               iConnection.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
-               iTransactionIsolation = Connection.TRANSACTION_READ_COMMITTED;
-            }
-         }
+         // the physical connection is borrowed from the pool and given back by close()
          Persistable vPersistable = getDBPersistance(iJDBCJarFiles);
          if (vPersistable == null)
          {
             throw new Exception(ChessResources.RESOURCES.getString("Unsupported.Database.Error", iJDBCDriverName));
          }
+         iPool = SQLConnectionPool.getPool(iUserName, iPassword, iJDBCURL, iJDBCDriverName, iJDBCJarFiles,
+               iTransactionIsolation, iAutoCommit);
+         iPooledConnection = iPool.borrow();
+         iConnection = iPooledConnection.getConnection();
          iPersistable = vPersistable;
       }
       return iConnection;
    }
 
-   private void loadDrivers(String aJDBCJarFiles, String aJDBCDriverName) throws Exception
+   // statements reused until the connection is closed (see PreparedStatementCache), they are closed as usual
+   public PreparedStatement prepareStatement(String aSql) throws Exception
+   {
+      return prepareStatement(aSql, Statement.NO_GENERATED_KEYS);
+   }
+
+   public PreparedStatement prepareStatement(String aSql, int aAutoGeneratedKeys) throws Exception
+   {
+      Connection vConnection = getConnection();
+      return iPooledConnection.getStatementCache().prepareStatement(vConnection, aSql, aAutoGeneratedKeys);
+   }
+
+   public PreparedStatementCache getStatementCache()
    {
-      URLClassLoader ucl = ClassInspector.buildURLClassLoader(aJDBCJarFiles);
-      Driver d = (Driver) Class.forName(aJDBCDriverName, true, ucl).getConstructor().newInstance();
-      DriverManager.registerDriver(new DynamicDriver(d));
+      return iPooledConnection == null ? null : iPooledConnection.getStatementCache();
    }
 
    public static Persistable getDBPersistance(String aJDBCDriversFiles)
@@ -216,13 +205,15 @@ public class SQLConnection implements AutoCloseable
       return iPersistable;
    }
 
+   // nothing to wait for or to fail: the connection is given back to the pool, which closes it when not reusable
    @Override
-   public void close() throws Exception
+   public void close()
    {
       if (iConnection != null)
       {
-         iConnection.close();
          iConnection = null;
+         iPool.release(iPooledConnection);
+         iPooledConnection = null;
       }
    }
 }
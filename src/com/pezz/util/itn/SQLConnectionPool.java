@@ -0,0 +1,392 @@
+/*
+ * Copyright (c) 2025 Gabriele Pezzini
+ * License: Creative Commons Attribution-NonCommercial 4.0 International (CC BY-NC 4.0)
+ * Full License: https://creativecommons.org/licenses/by-nc/4.0/legalcode
+ * SPDX-License-Identifier: CC-BY-NC-4.0
+ * Non-commercial use only. For commercial licensing, contact the author.
+ */
+package com.pezz.util.itn;
+
+import java.net.URLClassLoader;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class SQLConnectionPool
+{
+   // Physical connections shared by the SQLConnection objects with the same url, user, password, driver and
+   // transaction settings: a SQLConnection borrows one on its first getConnection() and gives it back on close().
+   // At most SQLConnectionPoolSize connections are open, a borrower waits up to SQLConnectionPoolWaitTimeout
+   // milliseconds for one to be given back. Idle connections are validated before being lent when not used for a
+   // while, and closed after SQLConnectionPoolIdleTimeout milliseconds. The jdbc driver of a jar is loaded once.
+   public static final String POOL_SIZE = "SQLConnectionPoolSize";
+   public static final String POOL_WAIT_TIMEOUT = "SQLConnectionPoolWaitTimeout";
+   public static final String POOL_IDLE_TIMEOUT = "SQLConnectionPoolIdleTimeout";
+   private static final long VALIDATION_INTERVAL = 30_000;
+   private static final int STATEMENT_CACHE_SIZE = 256;
+   private static final ConcurrentHashMap<String, SQLConnectionPool> iPOOLS = new ConcurrentHashMap<>();
+   private static final ConcurrentHashMap<String, Driver> iDRIVERS = new ConcurrentHashMap<>();
+   private static ScheduledExecutorService iEVICTOR;
+   private final String iUserName;
+   private final String iPassword;
+   private final String iJDBCURL;
+   private final String iJDBCDriverName;
+   private final String iJDBCJarFiles;
+   private final int iTransactionIsolation;
+   private final boolean iAutoCommit;
+   private final int iMaxSize;
+   private final long iWaitTimeout;
+   private final long iIdleTimeout;
+   private final ArrayDeque<PooledConnection> iIdle = new ArrayDeque<>();
+   private boolean iClosed;
+   // connections lent or being opened
+   private int iActive;
+   private int iPeakActive;
+   private long iBorrows;
+   private long iWaits;
+   private long iWaitNanos;
+   private long iMaxWaitNanos;
+   private long iTimeouts;
+   private long iCreated;
+   private long iEvicted;
+   private long iInvalid;
+
+   private SQLConnectionPool(String aUserName, String aPassword, String aJDBCURL, String aJDBCDriverName,
+         String aJDBCJarFiles, int aTransactionIsolation, boolean aAutoCommit)
+   {
+      iUserName = aUserName;
+      iPassword = aPassword;
+      iJDBCURL = aJDBCURL;
+      iJDBCDriverName = aJDBCDriverName;
+      iJDBCJarFiles = aJDBCJarFiles;
+      iTransactionIsolation = aTransactionIsolation;
+      iAutoCommit = aAutoCommit;
+      iMaxSize = (int) getSetting(POOL_SIZE, Math.max(10, Runtime.getRuntime().availableProcessors() + 4), 1);
+      iWaitTimeout = getSetting(POOL_WAIT_TIMEOUT, 60_000, 0);
+      iIdleTimeout = getSetting(POOL_IDLE_TIMEOUT, 300_000, 1000);
+   }
+
+   public static SQLConnectionPool getPool(String aUserName, String aPassword, String aJDBCURL,
+         String aJDBCDriverName, String aJDBCJarFiles, int aTransactionIsolation, boolean aAutoCommit)
+   {
+      String vKey = String.join("|", aJDBCURL, aUserName, aPassword, aJDBCDriverName, aJDBCJarFiles,
+            String.valueOf(aTransactionIsolation), String.valueOf(aAutoCommit));
+      return iPOOLS.computeIfAbsent(vKey, k ->
+      {
+         startEvictor();
+         return new SQLConnectionPool(aUserName, aPassword, aJDBCURL, aJDBCDriverName, aJDBCJarFiles,
+               aTransactionIsolation, aAutoCommit);
+      });
+   }
+
+   public PooledConnection borrow() throws Exception
+   {
+      long vStart = System.nanoTime();
+      long vDeadline = vStart + TimeUnit.MILLISECONDS.toNanos(iWaitTimeout);
+      boolean vWaited = false;
+      while (true)
+      {
+         PooledConnection vPooled = null;
+         synchronized (this)
+         {
+            while (!iClosed && iIdle.isEmpty() && iActive >= iMaxSize)
+            {
+               long vRemaining = vDeadline - System.nanoTime();
+               if (vRemaining <= 0)
+               {
+                  iTimeouts++;
+                  throw new SQLException("No database connection available within " + iWaitTimeout + " ms (pool size "
+                        + iMaxSize + ")");
+               }
+               vWaited = true;
+               TimeUnit.NANOSECONDS.timedWait(this, vRemaining);
+            }
+            if (iClosed)
+            {
+               throw new SQLException("Connection pool closed");
+            }
+            vPooled = iIdle.pollFirst();
+            iActive++;
+            iPeakActive = Math.max(iPeakActive, iActive);
+         }
+         try
+         {
+            if (vPooled == null)
+            {
+               vPooled = new PooledConnection(open(), STATEMENT_CACHE_SIZE);
+               synchronized (this)
+               {
+                  iCreated++;
+               }
+            }
+            else if (System.currentTimeMillis() - vPooled.getLastUsed() > VALIDATION_INTERVAL
+                  && !isValid(vPooled.getConnection()))
+            {
+               vPooled.close();
+               synchronized (this)
+               {
+                  iInvalid++;
+                  iActive--;
+               }
+               continue;
+            }
+         }
+         catch (Exception e)
+         {
+            synchronized (this)
+            {
+               iActive--;
+               notifyAll();
+            }
+            throw e;
+         }
+         long vWait = System.nanoTime() - vStart;
+         synchronized (this)
+         {
+            iBorrows++;
+            if (vWaited)
+            {
+               iWaits++;
+               iWaitNanos += vWait;
+               iMaxWaitNanos = Math.max(iMaxWaitNanos, vWait);
+            }
+         }
+         return vPooled;
+      }
+   }
+
+   // the uncommitted work of the borrower is rolled back, a connection that cannot be reset is closed
+   public void release(PooledConnection aPooled)
+   {
+      boolean vReusable = true;
+      try
+      {
+         if (aPooled.getConnection().isClosed())
+         {
+            vReusable = false;
+         }
+         else if (!iAutoCommit)
+         {
+            aPooled.getConnection().rollback();
+         }
+      }
+      catch (Exception e)
+      {
+         vReusable = false;
+      }
+      synchronized (this)
+      {
+         iActive--;
+         if (vReusable && !iClosed)
+         {
+            aPooled.setLastUsed(System.currentTimeMillis());
+            iIdle.addFirst(aPooled);
+            aPooled = null;
+         }
+         notifyAll();
+      }
+      if (aPooled != null)
+      {
+         aPooled.close();
+      }
+   }
+
+   private Connection open() throws Exception
+   {
+      loadDriver(iJDBCJarFiles, iJDBCDriverName);
+      Connection vConnection = DriverManager.getConnection(iJDBCURL, iUserName, iPassword);
+      try
+      {
+         vConnection.setAutoCommit(iAutoCommit);
+         if (iTransactionIsolation == -1)
+         {
+            try
+            {
+               vConnection.setTransactionIsolation(Connection.TRANSACTION_READ_UNCOMMITTED);
+            }
+            catch (Exception e)
+            {
+               vConnection.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+            }
+         }
+         else
+         {
+            try
+            {
+               vConnection.setTransactionIsolation(iTransactionIsolation);
+            }
+            catch (Exception e)
+            {
+               vConnection.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+            }
+         }
+         return vConnection;
+      }
+      catch (Exception e)
+      {
+         vConnection.close();
+         throw e;
+      }
+   }
+
+   private static boolean isValid(Connection aConnection)
+   {
+      try
+      {
+         return aConnection.isValid(5);
+      }
+      catch (Exception e)
+      {
+         return false;
+      }
+   }
+
+   // the driver class of the jar files is loaded and registered only the first time
+   public static void loadDriver(String aJDBCJarFiles, String aJDBCDriverName) throws Exception
+   {
+      String vKey = aJDBCJarFiles + "|" + aJDBCDriverName;
+      if (iDRIVERS.containsKey(vKey))
+      {
+         return;
+      }
+      synchronized (iDRIVERS)
+      {
+         if (!iDRIVERS.containsKey(vKey))
+         {
+            URLClassLoader ucl = ClassInspector.buildURLClassLoader(aJDBCJarFiles);
+            Driver d = (Driver) Class.forName(aJDBCDriverName, true, ucl).getConstructor().newInstance();
+            DriverManager.registerDriver(new DynamicDriver(d));
+            iDRIVERS.put(vKey, d);
+         }
+      }
+   }
+
+   private static synchronized void startEvictor()
+   {
+      if (iEVICTOR == null)
+      {
+         iEVICTOR = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().factory());
+         iEVICTOR.scheduleAtFixedRate(SQLConnectionPool::evictIdleConnections, 30, 30, TimeUnit.SECONDS);
+      }
+   }
+
+   private static void evictIdleConnections()
+   {
+      for (SQLConnectionPool vPool : iPOOLS.values())
+      {
+         vPool.evictIdle();
+      }
+   }
+
+   private void evictIdle()
+   {
+      long vLimit = System.currentTimeMillis() - iIdleTimeout;
+      synchronized (this)
+      {
+         for (Iterator<PooledConnection> vIter = iIdle.iterator(); vIter.hasNext();)
+         {
+            PooledConnection vPooled = vIter.next();
+            if (vPooled.getLastUsed() < vLimit)
+            {
+               vIter.remove();
+               vPooled.close();
+               iEvicted++;
+            }
+         }
+      }
+   }
+
+   // closes the idle connections of every pool, the lent ones are closed when given back
+   public static void closeAll()
+   {
+      for (Iterator<SQLConnectionPool> vIter = iPOOLS.values().iterator(); vIter.hasNext();)
+      {
+         SQLConnectionPool vPool = vIter.next();
+         vIter.remove();
+         synchronized (vPool)
+         {
+            vPool.iClosed = true;
+            for (PooledConnection vPooled : vPool.iIdle)
+            {
+               vPooled.close();
+            }
+            vPool.iIdle.clear();
+            vPool.notifyAll();
+         }
+      }
+   }
+
+   public synchronized int getActive()
+   {
+      return iActive;
+   }
+
+   public synchronized int getIdle()
+   {
+      return iIdle.size();
+   }
+
+   public int getMaxSize()
+   {
+      return iMaxSize;
+   }
+
+   // connections lent / max size
+   public synchronized double getUtilization()
+   {
+      return (double) iActive / iMaxSize;
+   }
+
+   public synchronized long getTotalWaitMillis()
+   {
+      return TimeUnit.NANOSECONDS.toMillis(iWaitNanos);
+   }
+
+   public synchronized String getMetrics()
+   {
+      return String.format(
+            "%s: active %d, idle %d, max %d, peak %d, borrows %d, waits %d (avg %.1f ms, max %.1f ms), timeouts %d, "
+                  + "opened %d, evicted %d, invalid %d",
+            iJDBCURL, iActive, iIdle.size(), iMaxSize, iPeakActive, iBorrows, iWaits,
+            iWaits == 0 ? 0.0 : iWaitNanos / 1e6 / iWaits, iMaxWaitNanos / 1e6, iTimeouts, iCreated, iEvicted,
+            iInvalid);
+   }
+
+   public static String getAllMetrics()
+   {
+      StringBuilder vBuilder = new StringBuilder("Connection pools");
+      for (SQLConnectionPool vPool : iPOOLS.values())
+      {
+         vBuilder.append("\n   ").append(vPool.getMetrics());
+      }
+      return vBuilder.toString();
+   }
+
+   private static long getSetting(String aName, long aDefault, long aMinValue)
+   {
+      String vValue = System.getProperty(aName);
+      if (vValue == null)
+      {
+         vValue = System.getenv(aName);
+      }
+      if (vValue == null || vValue.trim().isEmpty())
+      {
+         return aDefault;
+      }
+      try
+      {
+         return Math.max(aMinValue, Long.parseLong(vValue.trim()));
+      }
+      catch (NumberFormatException e)
+      {
+         return aDefault;
+      }
+   }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2025 Gabriele Pezzini
+ * License: Creative Commons Attribution-NonCommercial 4.0 International (CC BY-NC 4.0)
+ * Full License: https://creativecommons.org/licenses/by-nc/4.0/legalcode
+ * SPDX-License-Identifier: CC-BY-NC-4.0
+ * Non-commercial use only. For commercial licensing, contact the author.
+ */
+package com.pezz.chess.board;
+
+import java.util.ArrayList;
+
+import com.pezz.chess.base.ChessColor;
+import com.pezz.chess.base.Coordinate;
+import com.pezz.chess.base.InvalidMoveCause;
+import com.pezz.chess.base.MoveResult;
+import com.pezz.chess.pieces.ChessBoardPiece;
+import com.pezz.chess.pieces.ChessPiece;
+import com.pezz.chess.pieces.SimpleChessPiece;
+
+public class Perft
+{
+   // Counts the leaf nodes of the legal move tree of well known positions and compares them with the published
+   // values, then plays the tree of the initial position through ChessBoard and times the check detection on the
+   // bitboards against the walk of the opposite pieces used before. Arguments: maximum depth (default 4), depth of
+   // the ChessBoard tree (default 3). A development tool, not part of the application: it is compiled together with
+   // the sources in src.
+   private static final String[] FENS = { "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+         "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+         "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+         "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+         "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+         "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10" };
+   private static final long[][] NODES = { { 20, 400, 8902, 197281, 4865609, 119060324 },
+         { 48, 2039, 97862, 4085603, 193690690 }, { 14, 191, 2812, 43238, 674624, 11030083 },
+         { 6, 264, 9467, 422333, 15833292 }, { 44, 1486, 62379, 2103487, 89941194 },
+         { 46, 2079, 89890, 3894594, 164075551 } };
+   private static final ChessPiece[] WHITE_PROMOTIONS = { ChessPiece.QUEEN_WHITE, ChessPiece.ROOK_WHITE,
+         ChessPiece.BISHOP_WHITE, ChessPiece.KNIGHT_WHITE };
+   private static final ChessPiece[] BLACK_PROMOTIONS = { ChessPiece.QUEEN_BLACK, ChessPiece.ROOK_BLACK,
+         ChessPiece.BISHOP_BLACK, ChessPiece.KNIGHT_BLACK };
+
+   public static void main(String[] aArgs) throws Exception
+   {
+      int vMaxDepth = aArgs.length > 0 ? Integer.parseInt(aArgs[0]) : 4;
+      int vBoardDepth = aArgs.length > 1 ? Integer.parseInt(aArgs[1]) : 3;
+      boolean vValid = true;
+      BitboardPosition vPosition = new BitboardPosition();
+      int[][] vBuffers = new int[Math.max(vMaxDepth, vBoardDepth)][BitboardPosition.MAX_MOVES];
+      for (int i = 0; i < FENS.length; i++)
+      {
+         System.out.println(FENS[i]);
+         vPosition.setFen(FENS[i]);
+         for (int vDepth = 1; vDepth <= Math.min(vMaxDepth, NODES[i].length); vDepth++)
+         {
+            long vStart = System.nanoTime();
+            long vNodes = vPosition.perft(vDepth, vBuffers);
+            long vNanos = System.nanoTime() - vStart;
+            boolean vOk = vNodes == NODES[i][vDepth - 1];
+            vValid &= vOk;
+            System.out.println(String.format("   depth %d: %,d nodes in %,d ms (%,d nodes/s) %s", vDepth, vNodes,
+                  vNanos / 1_000_000, vNodes * 1_000_000_000L / Math.max(vNanos, 1),
+                  vOk ? "OK" : "expected " + NODES[i][vDepth - 1]));
+         }
+      }
+      ChessBoard vChessBoard = new ChessBoard(null, false);
+      vChessBoard.newGame();
+      long vStart = System.nanoTime();
+      long vNodes = perft(vChessBoard, vBoardDepth);
+      long vNanos = System.nanoTime() - vStart;
+      boolean vOk = vNodes == NODES[0][vBoardDepth - 1];
+      vValid &= vOk;
+      System.out.println(String.format("ChessBoard depth %d: %,d nodes in %,d ms %s", vBoardDepth, vNodes,
+            vNanos / 1_000_000, vOk ? "OK" : "expected " + NODES[0][vBoardDepth - 1]));
+      compareCheckDetection();
+      System.out.println(vValid ? "All node counts match" : "NODE COUNTS DO NOT MATCH");
+   }
+
+   // the moves are found and validated as the user interface does: every square tried for every piece to move
+   private static long perft(ChessBoard aChessBoard, int aDepth)
+   {
+      long vNodes = 0;
+      ChessColor vColor = aChessBoard.getColorToMove();
+      for (int vFrom = 0; vFrom < 64; vFrom++)
+      {
+         ChessBoardPiece vPiece = aChessBoard.getChessBoardPiece(vFrom % 8, vFrom / 8);
+         if (vPiece == null || vPiece.getChessPiece().getColor() != vColor)
+         {
+            continue;
+         }
+         Coordinate vCoordFrom = Coordinate.valueOf(vFrom % 8, vFrom / 8);
+         for (int vTo = 0; vTo < 64; vTo++)
+         {
+            Coordinate vCoordTo = Coordinate.valueOf(vTo % 8, vTo / 8);
+            if (vTo == vFrom || !aChessBoard.validateMove(vCoordFrom, vCoordTo).isValid())
+            {
+               continue;
+            }
+            boolean vPromotion = vPiece.getChessPiece().getSimpleChessPiece() == SimpleChessPiece.PAWN
+                  && (vTo / 8 == 0 || vTo / 8 == 7);
+            ChessPiece[] vPromotions = !vPromotion ? new ChessPiece[] { null }
+                  : vColor == ChessColor.WHITE ? WHITE_PROMOTIONS : BLACK_PROMOTIONS;
+            for (ChessPiece vPromoted : vPromotions)
+            {
+               if (aDepth == 1)
+               {
+                  vNodes++;
+                  continue;
+               }
+               aChessBoard.performMove(vCoordFrom, vCoordTo, vPromoted);
+               vNodes += perft(aChessBoard, aDepth - 1);
+               aChessBoard.performUndo();
+            }
+         }
+      }
+      return vNodes;
+   }
+
+   // the positions of the tree of the initial position three plies deep
+   private static void compareCheckDetection()
+   {
+      BitboardPosition vPosition = new BitboardPosition();
+      vPosition.setInitialPosition();
+      ArrayList<ChessBoard> vBoards = new ArrayList<>();
+      collectBoards(vPosition, 3, new int[3][BitboardPosition.MAX_MOVES], vBoards);
+      int vRounds = 20;
+      long vChecks = 0;
+      long vLegacyNanos = Long.MAX_VALUE;
+      long vBitboardNanos = Long.MAX_VALUE;
+      for (int vRound = 0; vRound < vRounds; vRound++)
+      {
+         long vStart = System.nanoTime();
+         for (ChessBoard vBoard : vBoards)
+         {
+            vChecks += countCheckersByPieces(vBoard, ChessColor.WHITE)
+                  + countCheckersByPieces(vBoard, ChessColor.BLACK);
+         }
+         vLegacyNanos = Math.min(vLegacyNanos, System.nanoTime() - vStart);
+         vStart = System.nanoTime();
+         for (ChessBoard vBoard : vBoards)
+         {
+            vChecks -= vBoard.isKingInCheck(ChessColor.WHITE) + vBoard.isKingInCheck(ChessColor.BLACK);
+         }
+         vBitboardNanos = Math.min(vBitboardNanos, System.nanoTime() - vStart);
+      }
+      System.out.println(String.format("Check detection on %,d positions: pieces %,d ns, bitboards %,d ns (x%.1f)%s",
+            vBoards.size(), vLegacyNanos / vBoards.size() / 2, vBitboardNanos / vBoards.size() / 2,
+            (double) vLegacyNanos / Math.max(vBitboardNanos, 1), vChecks == 0 ? "" : " RESULTS DIFFER"));
+   }
+
+   private static void collectBoards(BitboardPosition aPosition, int aDepth, int[][] aBuffers,
+         ArrayList<ChessBoard> aBoards)
+   {
+      if (aDepth == 0)
+      {
+         ChessBoard vBoard = new ChessBoard(null, false);
+         for (int vSquare = 0; vSquare < 64; vSquare++)
+         {
+            ChessPiece vPiece = aPosition.getBitboards().getPieceAt(vSquare);
+            if (vPiece != null)
+            {
+               vBoard.insertPiece(ChessBoardPiece.valueOf(vPiece), Coordinate.valueOf(vSquare % 8, vSquare / 8));
+            }
+         }
+         aBoards.add(vBoard);
+         return;
+      }
+      int vCount = aPosition.generateLegalMoves(aBuffers[aDepth - 1]);
+      for (int i = 0; i < vCount; i++)
+      {
+         aPosition.makeMove(aBuffers[aDepth - 1][i]);
+         collectBoards(aPosition, aDepth - 1, aBuffers, aBoards);
+         aPosition.unmakeMove();
+      }
+   }
+
+   // as ChessBoard.isKingInCheck did before the bitboards: every opposite piece tries to capture the king
+   private static int countCheckersByPieces(ChessBoard aChessBoard, ChessColor aColor)
+   {
+      Coordinate vKing = null;
+      for (int vSquare = 0; vSquare < 64 && vKing == null; vSquare++)
+      {
+         ChessBoardPiece vPiece = aChessBoard.getChessBoardPiece(vSquare % 8, vSquare / 8);
+         if (vPiece != null && vPiece.getChessPiece().getSimpleChessPiece() == SimpleChessPiece.KING
+               && vPiece.getChessPiece().getColor() == aColor)
+         {
+            vKing = vPiece.getCoordinate();
+         }
+      }
+      int vRet = 0;
+      for (int vSquare = 0; vSquare < 64; vSquare++)
+      {
+         ChessBoardPiece vPiece = aChessBoard.getChessBoardPiece(vSquare % 8, vSquare / 8);
+         if (vPiece != null && vPiece.getChessPiece().getColor() != aColor)
+         {
+            MoveResult vRes = vPiece.validateMove(vKing, aChessBoard);
+            if (!vRes.isValid() && vRes.getInvalidMoveCause() == InvalidMoveCause.CAN_NOT_CAPTURE_KING)
+            {
+               vRet++;
+            }
+         }
+      }
+      return vRet;
+   }
+}
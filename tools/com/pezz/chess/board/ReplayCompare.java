@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2025 Gabriele Pezzini
+ * License: Creative Commons Attribution-NonCommercial 4.0 International (CC BY-NC 4.0)
+ * Full License: https://creativecommons.org/licenses/by-nc/4.0/legalcode
+ * SPDX-License-Identifier: CC-BY-NC-4.0
+ * Non-commercial use only. For commercial licensing, contact the author.
+ */
+package com.pezz.chess.board;
+
+import java.util.Random;
+
+import com.pezz.chess.base.Coordinate;
+import com.pezz.chess.base.MoveResult;
+
+public class ReplayCompare
+{
+   // Plays random games through the ChessBoard, as the user interface does, and through the ReplayBoard used by the
+   // pgn import, and compares the database values of every move and position: the rows written by the two paths must
+   // be the same. Arguments: number of games (default 10000), seed (default 1). A development tool, not part of the
+   // application: it is compiled together with the sources in src.
+   private static final int MAX_PLIES = 300;
+
+   public static void main(String[] aArgs)
+   {
+      int vGames = aArgs.length > 0 ? Integer.parseInt(aArgs[0]) : 10000;
+      Random vRandom = new Random(aArgs.length > 1 ? Long.parseLong(aArgs[1]) : 1);
+      ReplayBoard vReplayBoard = new ReplayBoard();
+      int[] vMoves = new int[BitboardPosition.MAX_MOVES];
+      MoveResult[] vResults = new MoveResult[MAX_PLIES];
+      long vPlies = 0;
+      int vMismatches = 0;
+      for (int g = 0; g < vGames; g++)
+      {
+         ChessBoard vChessBoard = new ChessBoard(null, false);
+         vChessBoard.newGame();
+         vReplayBoard.newGame();
+         int vPly = 0;
+         for (; vPly < MAX_PLIES; vPly++)
+         {
+            int vCount = vReplayBoard.generateLegalMoves(vMoves);
+            if (vCount == 0)
+            {
+               break;
+            }
+            int vMove = vMoves[vRandom.nextInt(vCount)];
+            vResults[vPly] = vChessBoard.performMove(Coordinate.valueOf(BitboardPosition.getFrom(vMove)),
+                  Coordinate.valueOf(BitboardPosition.getTo(vMove)), BitboardPosition.getPiecePromoted(vMove));
+            vReplayBoard.performMove(vMove);
+         }
+         for (int i = 0; i < vPly; i++)
+         {
+            int vExpected = vResults[i].toDatabaseValue();
+            int vActual = vReplayBoard.getMoveValues()[i];
+            if (vExpected != vActual || !vResults[i].getChessBoardDatabaseValue()
+                  .equals(PositionCodec.toBigInteger(vReplayBoard.getPositions(), i * 3)))
+            {
+               if (vMismatches++ < 20)
+               {
+                  System.out.println(String.format("game %d ply %d %s: ChessBoard %s, ReplayBoard %s", g, i,
+                        vResults[i].toPgnFormat(), Integer.toBinaryString(vExpected),
+                        Integer.toBinaryString(vActual)));
+               }
+            }
+         }
+         vPlies += vPly;
+      }
+      System.out.println(String.format("%,d games, %,d plies: %s", vGames, vPlies,
+            vMismatches == 0 ? "the values match" : vMismatches + " VALUES DO NOT MATCH"));
+   }
+}
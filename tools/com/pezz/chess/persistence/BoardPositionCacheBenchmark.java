@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2025 Gabriele Pezzini
+ * License: Creative Commons Attribution-NonCommercial 4.0 International (CC BY-NC 4.0)
+ * Full License: https://creativecommons.org/licenses/by-nc/4.0/legalcode
+ * SPDX-License-Identifier: CC-BY-NC-4.0
+ * Non-commercial use only. For commercial licensing, contact the author.
+ */
+package com.pezz.chess.persistence;
+
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class BoardPositionCacheBenchmark
+{
+   // Heap used per cached position by the ConcurrentHashMap<BigInteger, CacheEntry> used before and by the
+   // BoardPositionCache, and the time of a lookup (best of ROUNDS). Arguments: number of positions (default 100000).
+   // A development tool, not part of the application: it is compiled together with the sources in src.
+   private static final int ROUNDS = 5;
+
+   public static void main(String[] aArgs) throws Exception
+   {
+      int vCount = aArgs.length > 0 ? Integer.parseInt(aArgs[0]) : 100_000;
+      BigInteger[] vPositions = new BigInteger[vCount];
+      Random vRandom = new Random(1);
+      for (int i = 0; i < vCount; i++)
+      {
+         vPositions[i] = new BigInteger(192, vRandom);
+      }
+      long vBase = usedMemory();
+      ConcurrentHashMap<BigInteger, CacheEntry> vMap = new ConcurrentHashMap<>();
+      for (int i = 0; i < vCount; i++)
+      {
+         // the keys are new objects as the values read from the database
+         vMap.put(new BigInteger(vPositions[i].toByteArray()), new CacheEntry(i + 1));
+      }
+      long vMapBytes = usedMemory() - vBase;
+      long vSum = 0;
+      long vMapNanos = Long.MAX_VALUE;
+      for (int vRound = 0; vRound < ROUNDS; vRound++)
+      {
+         long vStart = System.nanoTime();
+         for (int i = 0; i < vCount; i++)
+         {
+            vSum += vMap.get(vPositions[i]).getId();
+         }
+         vMapNanos = Math.min(vMapNanos, System.nanoTime() - vStart);
+      }
+      int vMapSize = vMap.size();
+      vMap = null;
+      vBase = usedMemory();
+      BoardPositionCache vCache = new BoardPositionCache(vCount);
+      for (int i = 0; i < vCount; i++)
+      {
+         vCache.putIfAbsent(vPositions[i], i + 1);
+      }
+      long vCacheBytes = usedMemory() - vBase;
+      long vCacheNanos = Long.MAX_VALUE;
+      for (int vRound = 0; vRound < ROUNDS; vRound++)
+      {
+         long vStart = System.nanoTime();
+         for (int i = 0; i < vCount; i++)
+         {
+            vSum -= vCache.get(vPositions[i]);
+         }
+         vCacheNanos = Math.min(vCacheNanos, System.nanoTime() - vStart);
+      }
+      System.out.println("Positions: " + vCount + (vSum == 0 ? "" : " (lookup mismatch)"));
+      System.out.println("ConcurrentHashMap: " + vMapSize + " entries, " + vMapBytes / vMapSize + " bytes/entry, "
+            + vMapNanos / vCount + " ns/get");
+      System.out.println("BoardPositionCache: " + vCache.size() + " entries, " + vCacheBytes / vCache.size()
+            + " bytes/entry (tables " + vCache.getTableBytes() / vCache.size() + "), " + vCacheNanos / vCount
+            + " ns/get");
+   }
+
+   private static long usedMemory() throws InterruptedException
+   {
+      Runtime vRuntime = Runtime.getRuntime();
+      for (int i = 0; i < 3; i++)
+      {
+         System.gc();
+         Thread.sleep(100);
+      }
+      return vRuntime.totalMemory() - vRuntime.freeMemory();
+   }
+}